@@ -0,0 +1,81 @@
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Strategy for mixing a key's {@code hashCode} before a hash table reduces it
+ * to a bucket index.
+ *
+ * <p>
+ * Weak hash codes (consecutive or strided {@code Integer}s, {@code String}s
+ * sharing long prefixes) differ only in a few bits. When the table reduces the
+ * hash code by masking with a power of 2, or by taking it mod a size that
+ * shares factors with the stride, such keys pile up in a few buckets. A
+ * spreader makes every bit of the hash code affect every bit of the result. A
+ * seeded spreader additionally makes bucket positions unpredictable to anyone
+ * who does not know the seed, so keys cannot be chosen in advance to collide.
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+@FunctionalInterface
+public interface HashSpreader {
+
+	/**
+	 * Leaves hash codes unchanged (the behavior of {@code Map4} before spreaders
+	 * were introduced).
+	 */
+	HashSpreader IDENTITY = h -> h;
+
+	/**
+	 * Mixes hash codes with the MurmurHash3 32-bit finalizer.
+	 */
+	HashSpreader MURMUR = HashSpreader::murmurFinalize;
+
+	/**
+	 * Returns the spread version of {@code hashCode}.
+	 *
+	 * @param hashCode the hash code to spread
+	 * @return the spread hash code
+	 * @ensures [spread is a deterministic function of hashCode]
+	 */
+	int spread(int hashCode);
+
+	/**
+	 * Applies the MurmurHash3 32-bit finalizer (avalanche step) to {@code h}.
+	 *
+	 * @param h the value to mix
+	 * @return the mixed value
+	 * @ensures [murmurFinalize is a bijection on int]
+	 */
+	static int murmurFinalize(int h) {
+		int x = h;
+		x ^= x >>> 16;
+		x *= 0x85ebca6b;
+		x ^= x >>> 13;
+		x *= 0xc2b2ae35;
+		x ^= x >>> 16;
+		return x;
+	}
+
+	/**
+	 * Returns a spreader that mixes hash codes with the MurmurHash3 finalizer
+	 * after combining them with {@code seed}.
+	 *
+	 * @param seed the seed
+	 * @return the seeded spreader
+	 */
+	static HashSpreader seeded(int seed) {
+		return h -> murmurFinalize(h ^ seed);
+	}
+
+	/**
+	 * Returns a spreader that mixes hash codes with the MurmurHash3 finalizer
+	 * after combining them with a randomly chosen seed, so that each map given
+	 * its own {@code randomlySeeded()} spreader places keys differently.
+	 *
+	 * @return the randomly seeded spreader
+	 */
+	static HashSpreader randomlySeeded() {
+		return seeded(ThreadLocalRandom.current().nextInt());
+	}
+
+}
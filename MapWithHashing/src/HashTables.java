@@ -0,0 +1,164 @@
+import java.nio.ByteBuffer;
+
+import components.map.Map;
+
+/**
+ * Helpers shared by the hash-table implementations of {@code Map} in this
+ * project: sizing tables to powers of 2, finding a key's home slot in such a
+ * table, the {@code Map.Pair} they hand out from {@code remove},
+ * {@code removeAny} and their iterators, and comparing a {@code String} key
+ * with UTF-8 bytes stored in a buffer.
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+final class HashTables {
+
+	/**
+	 * No-argument constructor--private to prevent instantiation.
+	 */
+	private HashTables() {
+	}
+
+	/**
+	 * Simple immutable implementation of {@code Map.Pair}.
+	 *
+	 * @param <K> type of key
+	 * @param <V> type of value
+	 */
+	static final class SimplePair<K, V> implements Map.Pair<K, V> {
+
+		/**
+		 * The key.
+		 */
+		private final K key;
+
+		/**
+		 * The value.
+		 */
+		private final V value;
+
+		/**
+		 * Constructor from key and value.
+		 *
+		 * @param key   the key
+		 * @param value the value
+		 */
+		SimplePair(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+
+		@Override
+		public K key() {
+			return this.key;
+		}
+
+		@Override
+		public V value() {
+			return this.value;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			boolean result = false;
+			if (obj instanceof Map.Pair<?, ?>) {
+				Map.Pair<?, ?> p = (Map.Pair<?, ?>) obj;
+				result = this.key.equals(p.key()) && this.value.equals(p.value());
+			}
+			return result;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.key.hashCode() ^ this.value.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return "(" + this.key + "," + this.value + ")";
+		}
+
+	}
+
+	/**
+	 * Returns the smallest power of 2 that is at least {@code n}.
+	 *
+	 * @param n the lower bound
+	 * @return the smallest power of 2 p such that p >= n
+	 * @requires 0 < n <= 2^30
+	 * @ensures powerOfTwoAtLeast >= n and [powerOfTwoAtLeast is a power of 2]
+	 */
+	static int powerOfTwoAtLeast(int n) {
+		int p = 1;
+		while (p < n) {
+			p *= 2;
+		}
+		return p;
+	}
+
+	/**
+	 * Returns the home slot of {@code key} in a table with {@code capacity}
+	 * slots. The high bits of the hash code are folded into the low bits so keys
+	 * that differ only in their high bits do not all share a home slot.
+	 *
+	 * @param key      the key
+	 * @param capacity the number of slots
+	 * @return the home slot of {@code key}
+	 * @requires [capacity is a power of 2]
+	 * @ensures 0 <= home < capacity
+	 */
+	static int home(Object key, int capacity) {
+		int h = key.hashCode();
+		return (h ^ (h >>> 16)) & (capacity - 1);
+	}
+
+	/**
+	 * Reports whether the bytes of {@code buffer} from {@code start} up to, but
+	 * excluding, {@code end} are the UTF-8 encoding of {@code key} (as
+	 * {@code String.getBytes} produces it, with '?' for an unpaired surrogate).
+	 * The key is encoded while comparing, so nothing is allocated.
+	 *
+	 * @param buffer the buffer holding the bytes
+	 * @param start  the index of the first byte
+	 * @param end    the index just past the last byte
+	 * @param key    the key sought
+	 * @return true iff buffer[start, end) = [UTF-8 encoding of key]
+	 * @requires 0 <= start <= end <= buffer.limit()
+	 */
+	static boolean utf8Equals(ByteBuffer buffer, int start, int end, String key) {
+		final int twoByteLimit = 0x800;
+		final int threeByteLimit = 0x10000;
+		int p = start;
+		boolean equal = true;
+		int i = 0;
+		while (equal && i < key.length()) {
+			int c = key.codePointAt(i);
+			i += Character.charCount(c);
+			if (c < threeByteLimit && Character.isSurrogate((char) c)) {
+				c = '?';
+			}
+			if (c < 0x80) {
+				equal = p < end && buffer.get(p) == (byte) c;
+				p++;
+			} else if (c < twoByteLimit) {
+				equal = p + 1 < end && buffer.get(p) == (byte) (0xC0 | (c >> 6))
+						&& buffer.get(p + 1) == (byte) (0x80 | (c & 0x3F));
+				p += 2;
+			} else if (c < threeByteLimit) {
+				equal = p + 2 < end && buffer.get(p) == (byte) (0xE0 | (c >> 12))
+						&& buffer.get(p + 1) == (byte) (0x80 | ((c >> 6) & 0x3F))
+						&& buffer.get(p + 2) == (byte) (0x80 | (c & 0x3F));
+				p += 3;
+			} else {
+				equal = p + 3 < end && buffer.get(p) == (byte) (0xF0 | (c >> 18))
+						&& buffer.get(p + 1) == (byte) (0x80 | ((c >> 12) & 0x3F))
+						&& buffer.get(p + 2) == (byte) (0x80 | ((c >> 6) & 0x3F))
+						&& buffer.get(p + 3) == (byte) (0x80 | (c & 0x3F));
+				p += 4;
+			}
+		}
+		return equal && p == end;
+	}
+
+}
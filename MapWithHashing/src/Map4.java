@@ -1,5 +1,15 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.IntStream;
 
 import components.map.Map;
 import components.map.Map1L;
@@ -9,33 +19,97 @@ import components.map.MapSecondary;
  * {@code Map} represented as a hash table using {@code Map}s for the buckets,
  * with implementations of primary methods.
  *
+ * <p>
+ * The hash table grows (and shrinks) to keep the average bucket length near
+ * the load factor. Rehashing is incremental: while a rehash is in progress the
+ * previous table is kept in {@code oldTable} and every mutating operation moves
+ * a few of its buckets into the new table, so no single call pays for the
+ * whole rehash. Buckets are created lazily and dropped when they become empty,
+ * so an empty bucket costs only a {@code null} slot. A bitmap per table records
+ * which slots hold buckets, so {@code removeAny} and the iterator skip runs of
+ * empty buckets 64 at a time instead of visiting them one by one.
+ *
+ * <p>
+ * Before reducing a hash code to a bucket index, {@code Map4} passes it
+ * through a {@code HashSpreader} (by default {@code HashSpreader.IDENTITY}).
+ * The index is then computed either mod the table size, which is kept prime,
+ * or, if the map was constructed with {@code powerOfTwoTable} true, by masking
+ * with a power-of-2 table size, which is cheaper but should be combined with a
+ * mixing spreader such as {@code HashSpreader.MURMUR}.
+ *
+ * <p>
+ * {@code Map4} also keeps a few counters that are cheap enough to leave on:
+ * the number of lookups, the total number of entries in the buckets they
+ * searched (a measure of bucket occupancy, not of key comparisons, since each
+ * bucket is itself a {@code Map}), and how many times the table has grown and
+ * shrunk. {@code statistics()} combines
+ * them with the current distribution of bucket lengths, so that the initial
+ * table size and load factor can be chosen from measurements.
+ *
  * @param <K> type of {@code Map} domain (key) entries
  * @param <V> type of {@code Map} range (associated value) entries
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * INDEX(
+ *   x: K,
+ *   n: integer
+ *  ): integer is
+ *  [computed result of $this.spreader.spread(x.hashCode())] mod n
+ *                  </pre>
+ *
  * @convention
- * 
+ *
  *             <pre>
- * |$this.hashTable| > 0  and
+ * |$this.hashTable| > 0  and  $this.loadFactor > 0  and
+ * 0 < $this.minTableSize  and  $this.spreader /= null  and
+ * ($this.powerOfTwoTable  implies
+ *   [|$this.hashTable|, |$this.oldTable| and $this.minTableSize are
+ *    powers of 2])  and
  * for all i: integer, pf: PARTIAL_FUNCTION, x: K
  *     where (0 <= i  and  i < |$this.hashTable|  and
  *            <pf> = $this.hashTable[i, i+1)  and
  *            x is in DOMAIN(pf))
- *   ([computed result of x.hashCode()] mod |$this.hashTable| = i))  and
- * for all i: integer
- *     where (0 <= i  and  i < |$this.hashTable|)
- *   ([entry at position i in $this.hashTable is not null])  and
+ *   (INDEX(x, |$this.hashTable|) = i  and
+ *    ($this.oldTable = null  or
+ *     INDEX(x, |$this.oldTable|) < $this.migrateIndex))  and
+ * if $this.oldTable /= null then
+ *   0 <= $this.migrateIndex < |$this.oldTable|  and
+ *   for all i: integer, pf: PARTIAL_FUNCTION, x: K
+ *       where ($this.migrateIndex <= i  and  i < |$this.oldTable|  and
+ *              <pf> = $this.oldTable[i, i+1)  and
+ *              x is in DOMAIN(pf))
+ *     (INDEX(x, |$this.oldTable|) = i)  and
  * $this.size = sum i: integer, pf: PARTIAL_FUNCTION
  *     where (0 <= i  and  i < |$this.hashTable|  and
  *            <pf> = $this.hashTable[i, i+1))
+ *   (|pf|) +
+ *   sum i: integer, pf: PARTIAL_FUNCTION
+ *     where ($this.oldTable /= null  and
+ *            $this.migrateIndex <= i  and  i < |$this.oldTable|  and
+ *            <pf> = $this.oldTable[i, i+1))
  *   (|pf|)
  *             </pre>
- * 
+ *
+ *             [an entry of $this.hashTable or $this.oldTable is null iff the
+ *             bucket it stands for is empty, bit i of $this.occupied is set
+ *             iff $this.hashTable[i] is not null, bit i of $this.oldOccupied
+ *             is set iff $this.oldTable[i] is not null (for i at least
+ *             $this.migrateIndex), 0 <= $this.scanStart < |$this.hashTable|,
+ *             and the entries of $this.oldTable before $this.migrateIndex are
+ *             not used]
  * @correspondence
- * 
+ *
  *                 <pre>
- * this = union i: integer, pf: PARTIAL_FUNCTION
+ * this = (union i: integer, pf: PARTIAL_FUNCTION
  *            where (0 <= i  and  i < |$this.hashTable|  and
  *                   <pf> = $this.hashTable[i, i+1))
- *          (pf)
+ *          (pf))  union
+ *        (union i: integer, pf: PARTIAL_FUNCTION
+ *            where ($this.oldTable /= null  and
+ *                   $this.migrateIndex <= i  and  i < |$this.oldTable|  and
+ *                   <pf> = $this.oldTable[i, i+1))
+ *          (pf))
  *                 </pre>
  *
  * @author Junbo Chen, Brett Emory
@@ -52,16 +126,135 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 	 */
 	private static final int DEFAULT_HASH_TABLE_SIZE = 101;
 
+	/**
+	 * Default load factor (maximum average number of entries per bucket).
+	 */
+	private static final double DEFAULT_LOAD_FACTOR = 0.75;
+
+	/**
+	 * Largest hash table that will be allocated when growing.
+	 */
+	private static final int MAXIMUM_HASH_TABLE_SIZE = 1 << 30;
+
+	/**
+	 * Smallest number of old buckets moved into the new hash table by each
+	 * mutating operation while a rehash is in progress.
+	 */
+	private static final int MIGRATION_STEP = 4;
+
+	/**
+	 * The table shrinks once its load drops below loadFactor / SHRINK_RATIO.
+	 */
+	private static final int SHRINK_RATIO = 4;
+
+	/**
+	 * Number of buckets below which a parallel bulk add fills its buckets in a
+	 * single task (a multiple of {@code Long.SIZE}, so that tasks never share a
+	 * word of the bitmap).
+	 */
+	private static final int BULK_TASK_BUCKETS = 64 * Long.SIZE;
+
+	/**
+	 * Initial number of pairs {@code addAll(Iterable)} makes room for when the
+	 * source does not report its size.
+	 */
+	private static final int BULK_INITIAL_CAPACITY = 16;
+
 	/**
 	 * Buckets for hashing.
 	 */
 	private Map<K, V>[] hashTable;
 
+	/**
+	 * Buckets still being rehashed into {@code hashTable}, or {@code null} if no
+	 * rehash is in progress.
+	 */
+	private Map<K, V>[] oldTable;
+
+	/**
+	 * Index of the next bucket of {@code oldTable} to be rehashed.
+	 */
+	private int migrateIndex;
+
+	/**
+	 * Number of buckets of {@code oldTable} moved by each mutating operation,
+	 * chosen when the rehash starts so that it ends before the table can be
+	 * resized again.
+	 */
+	private int migrationStep;
+
+	/**
+	 * Bitmap of the non-null slots of {@code hashTable}.
+	 */
+	private long[] occupied;
+
+	/**
+	 * Bitmap of the non-null slots of {@code oldTable}, or {@code null} if no
+	 * rehash is in progress.
+	 */
+	private long[] oldOccupied;
+
+	/**
+	 * Slot of {@code hashTable} where {@code removeAny} starts looking for a
+	 * bucket.
+	 */
+	private int scanStart;
+
+	/**
+	 * Maximum average number of entries per bucket before the table grows.
+	 */
+	private double loadFactor;
+
+	/**
+	 * Size below which the hash table never shrinks.
+	 */
+	private int minTableSize;
+
+	/**
+	 * Mixes hash codes before they are reduced to bucket indices.
+	 */
+	private HashSpreader spreader;
+
+	/**
+	 * Whether table sizes are powers of 2 (reduced by masking) rather than primes
+	 * (reduced by {@code mod}).
+	 */
+	private boolean powerOfTwoTable;
+
 	/**
 	 * Total size of abstract {@code this}.
 	 */
 	private int size;
 
+	/**
+	 * Number of structural modifications (entries added or removed, or entries
+	 * moved between buckets) made so far, which lets iterators fail fast.
+	 */
+	private int modCount;
+
+	/**
+	 * Number of lookups (bucket searches for a key) since the statistics were
+	 * last reset.
+	 */
+	private long lookups;
+
+	/**
+	 * Total number of entries in the buckets searched by those lookups.
+	 */
+	private long bucketEntries;
+
+	/**
+	 * Number of times the hash table has grown since the statistics were last
+	 * reset.
+	 */
+	private int growths;
+
+	/**
+	 * Number of times the hash table has shrunk since the statistics were last
+	 * reset.
+	 */
+	private int shrinks;
+
 	/**
 	 * Computes {@code a} mod {@code b} as % should have been defined to work.
 	 *
@@ -70,7 +263,7 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 	 * @return the result of a mod b, which satisfies 0 <= {@code mod} < b
 	 * @requires b > 0
 	 * @ensures
-	 * 
+	 *
 	 *          <pre>
 	 * 0 <= mod  and  mod < b  and
 	 * there exists k: integer (a = k * b + mod)
@@ -93,34 +286,422 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 
 	}
 
+	/**
+	 * Returns the smallest prime number that is at least {@code n}.
+	 *
+	 * @param n the lower bound
+	 * @return the smallest prime p such that p >= n
+	 * @requires n <= MAXIMUM_HASH_TABLE_SIZE
+	 * @ensures nextPrime >= n and [nextPrime is prime]
+	 */
+	private static int nextPrime(int n) {
+		int candidate = Math.max(n, 2);
+		boolean isPrime = false;
+		while (!isPrime) {
+			isPrime = true;
+			for (long d = 2; isPrime && d * d <= candidate; d++) {
+				isPrime = candidate % d != 0;
+			}
+			if (!isPrime) {
+				candidate++;
+			}
+		}
+		return candidate;
+	}
+
+	/**
+	 * Creates a table of {@code tableSize} empty (null) buckets.
+	 *
+	 * @param <K>       type of {@code Map} domain (key) entries
+	 * @param <V>       type of {@code Map} range (associated value) entries
+	 * @param tableSize the number of buckets
+	 * @return the new table
+	 * @requires tableSize > 0
+	 * @ensures |newTable| = tableSize and [every entry of newTable is null]
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K, V> Map<K, V>[] newTable(int tableSize) {
+		/*
+		 * With "new Map<K, V>[...]" in place of "new Map[...]" it does not compile; as
+		 * shown, it results in a warning about an unchecked conversion, though it
+		 * cannot fail.
+		 */
+		return new Map[tableSize];
+	}
+
+	/**
+	 * Creates a bitmap with {@code n} clear bits.
+	 *
+	 * @param n the number of bits
+	 * @return the new bitmap
+	 * @requires n > 0
+	 * @ensures [newBitmap has at least n bits, all clear]
+	 */
+	private static long[] newBitmap(int n) {
+		return new long[(n + Long.SIZE - 1) / Long.SIZE];
+	}
+
+	/**
+	 * Sets or clears bit {@code i} of {@code bits}.
+	 *
+	 * @param bits  the bitmap
+	 * @param i     the index of the bit
+	 * @param value whether the bit is to be set
+	 * @updates bits
+	 * @requires 0 <= i < [number of bits in bits]
+	 * @ensures bits = [#bits with bit i set to value]
+	 */
+	private static void setBit(long[] bits, int i, boolean value) {
+		if (value) {
+			bits[i / Long.SIZE] |= 1L << i;
+		} else {
+			bits[i / Long.SIZE] &= ~(1L << i);
+		}
+	}
+
+	/**
+	 * Returns the index of the first set bit of {@code bits} at or after
+	 * {@code from}, or -1 if there is none. Whole words of clear bits are skipped
+	 * at once.
+	 *
+	 * @param bits the bitmap
+	 * @param from the index to start at
+	 * @return the index of the next set bit, or -1
+	 * @requires 0 <= from
+	 * @ensures
+	 *
+	 *          <pre>
+	 * (nextSetBit = -1  or  (from <= nextSetBit  and  [bit nextSetBit is set]))  and
+	 * [no bit between from and nextSetBit (or the end, if -1) is set]
+	 *          </pre>
+	 */
+	private static int nextSetBit(long[] bits, int from) {
+		int w = from / Long.SIZE;
+		int result = -1;
+		if (w < bits.length) {
+			long word = bits[w] & (-1L << from);
+			while (word == 0 && w + 1 < bits.length) {
+				w++;
+				word = bits[w];
+			}
+			if (word != 0) {
+				result = w * Long.SIZE + Long.numberOfTrailingZeros(word);
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Creator of initial representation.
 	 *
-	 * @param hashTableSize the size of the hash table
-	 * @requires hashTableSize > 0
+	 * @param hashTableSize   the size of the hash table
+	 * @param loadFactor      the load factor
+	 * @param spreader        the hash spreader
+	 * @param powerOfTwoTable whether table sizes are to be powers of 2
+	 * @requires hashTableSize > 0 and loadFactor > 0 and spreader /= null
 	 * @ensures
-	 * 
+	 *
 	 *          <pre>
-	 * |$this.hashTable| = hashTableSize  and
+	 * |$this.hashTable| = [hashTableSize, rounded up to a power of 2 if
+	 *                      powerOfTwoTable]  and
 	 * for all i: integer
 	 *     where (0 <= i  and  i < |$this.hashTable|)
 	 *   ($this.hashTable[i, i+1) = <{}>)  and
-	 * $this.size = 0
+	 * $this.oldTable = null  and  $this.loadFactor = loadFactor  and
+	 * $this.minTableSize = |$this.hashTable|  and  $this.size = 0  and
+	 * $this.spreader = spreader  and  $this.powerOfTwoTable = powerOfTwoTable  and
+	 * $this.lookups = 0  and  $this.bucketEntries = 0  and
+	 * $this.growths = 0  and  $this.shrinks = 0
 	 *          </pre>
 	 */
-	@SuppressWarnings("unchecked")
-	private void createNewRep(int hashTableSize) {
-		/*
-		 * With "new Map<K, V>[...]" in place of "new Map[...]" it does not compile; as
-		 * shown, it results in a warning about an unchecked conversion, though it
-		 * cannot fail.
-		 */
+	private void createNewRep(int hashTableSize, double loadFactor, HashSpreader spreader,
+			boolean powerOfTwoTable) {
+		int tableSize = hashTableSize;
+		if (powerOfTwoTable) {
+			tableSize = HashTables.powerOfTwoAtLeast(hashTableSize);
+		}
 		this.size = 0;
-		this.hashTable = new Map[hashTableSize];
-		for (int i = 0; i < hashTableSize; i++) {
-			this.hashTable[i] = new Map1L<>();
+		this.loadFactor = loadFactor;
+		this.spreader = spreader;
+		this.powerOfTwoTable = powerOfTwoTable;
+		this.minTableSize = tableSize;
+		this.hashTable = newTable(tableSize);
+		this.occupied = newBitmap(tableSize);
+		this.scanStart = 0;
+		this.oldTable = null;
+		this.oldOccupied = null;
+		this.migrateIndex = 0;
+		this.migrationStep = MIGRATION_STEP;
+		this.lookups = 0;
+		this.bucketEntries = 0;
+		this.growths = 0;
+		this.shrinks = 0;
+		// Not reset, so that iterators over the previous contents still fail
+		this.modCount++;
+
+	}
+
+	/**
+	 * Returns the index of the bucket for {@code key} in a table of
+	 * {@code tableSize} buckets.
+	 *
+	 * @param key       the key
+	 * @param tableSize the number of buckets
+	 * @return INDEX(key, tableSize)
+	 * @requires tableSize > 0 and [tableSize is a power of 2 if
+	 *           $this.powerOfTwoTable]
+	 * @ensures indexOf = INDEX(key, tableSize)
+	 */
+	private int indexOf(K key, int tableSize) {
+		int h = this.spreader.spread(key.hashCode());
+		int index;
+		if (this.powerOfTwoTable) {
+			index = h & (tableSize - 1);
+		} else {
+			index = mod(h, tableSize);
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the table (either {@code hashTable} or {@code oldTable}) whose
+	 * bucket for {@code key} holds {@code key} if it is in {@code this}, and into
+	 * which {@code key} should be added otherwise.
+	 *
+	 * @param key the key
+	 * @return the table responsible for {@code key}
+	 */
+	private Map<K, V>[] tableFor(K key) {
+		Map<K, V>[] table = this.hashTable;
+		if (this.oldTable != null && this.indexOf(key, this.oldTable.length) >= this.migrateIndex) {
+			table = this.oldTable;
+		}
+		return table;
+	}
+
+	/**
+	 * Moves the next bucket of {@code oldTable} into {@code hashTable}, and ends
+	 * the rehash if it was the last one. This is a structural modification, since
+	 * an iterator may be visiting the bucket being moved.
+	 *
+	 * @requires $this.oldTable /= null
+	 * @ensures this = #this
+	 */
+	private void migrateBucket() {
+		this.modCount++;
+		Map<K, V> bucket = this.oldTable[this.migrateIndex];
+		this.oldTable[this.migrateIndex] = null;
+		setBit(this.oldOccupied, this.migrateIndex, false);
+		this.migrateIndex++;
+		if (bucket != null) {
+			while (bucket.size() > 0) {
+				Map.Pair<K, V> p = bucket.removeAny();
+				int index = this.indexOf(p.key(), this.hashTable.length);
+				if (this.hashTable[index] == null) {
+					this.hashTable[index] = new Map1L<>();
+					setBit(this.occupied, index, true);
+				}
+				this.hashTable[index].add(p.key(), p.value());
+			}
+		}
+		if (this.migrateIndex == this.oldTable.length) {
+			this.oldTable = null;
+			this.oldOccupied = null;
+			this.migrateIndex = 0;
+		}
+	}
+
+	/**
+	 * Advances an in-progress rehash by at most {@code migrationStep} buckets.
+	 *
+	 * @ensures this = #this
+	 */
+	private void migrateSome() {
+		for (int i = 0; i < this.migrationStep && this.oldTable != null; i++) {
+			this.migrateBucket();
+		}
+	}
+
+	/**
+	 * Starts rehashing into a new table of {@code newSize} buckets, first
+	 * completing any rehash already in progress.
+	 *
+	 * <p>
+	 * The number of buckets moved per operation is chosen so that the rehash
+	 * ends before enough entries can be added or removed to resize the new
+	 * table, so the loop completing an earlier rehash does nothing unless the
+	 * table is resized some other way ({@code ensureCapacity}). Just after a
+	 * shrink, for instance, only about loadFactor * newSize / 4 removals are left
+	 * before the next one, which takes about 8 / loadFactor buckets per removal.
+	 *
+	 * @param newSize the size of the new hash table
+	 * @requires newSize > 0
+	 * @ensures this = #this and |$this.hashTable| = newSize
+	 */
+	private void startRehash(int newSize) {
+		while (this.oldTable != null) {
+			this.migrateBucket();
+		}
+		this.oldTable = this.hashTable;
+		this.oldOccupied = this.occupied;
+		this.migrateIndex = 0;
+		this.hashTable = newTable(newSize);
+		this.occupied = newBitmap(newSize);
+		this.scanStart = 0;
+
+		// Operations before size can reach the grow or shrink threshold of newSize
+		long margin = (long) Math.floor(this.loadFactor * newSize) - this.size + 1;
+		if (newSize > this.minTableSize) {
+			long toShrink = this.size - (long) Math.ceil(this.loadFactor * newSize / SHRINK_RATIO) + 1;
+			margin = Math.min(margin, toShrink);
+		}
+		margin = Math.max(margin, 1);
+		long step = (this.oldTable.length + margin - 1) / margin;
+		this.migrationStep = (int) Math.max(step, MIGRATION_STEP);
+	}
+
+	/**
+	 * Returns bucket {@code index} of {@code table} (possibly null), counting the
+	 * search of that bucket as one lookup and adding its number of entries to
+	 * {@code bucketEntries}.
+	 *
+	 * @param table either {@code hashTable} or {@code oldTable}
+	 * @param index the slot of the bucket
+	 * @return table[index]
+	 * @ensures this = #this
+	 */
+	private Map<K, V> probe(Map<K, V>[] table, int index) {
+		Map<K, V> bucket = table[index];
+		this.lookups++;
+		if (bucket != null) {
+			this.bucketEntries += bucket.size();
+		}
+		return bucket;
+	}
+
+	/**
+	 * Returns the bucket that holds {@code key} if it is in {@code this}, and into
+	 * which {@code key} should be added otherwise, creating the bucket if it does
+	 * not exist yet.
+	 *
+	 * @param key the key
+	 * @return the bucket responsible for {@code key}
+	 * @ensures this = #this
+	 */
+	private Map<K, V> bucketFor(K key) {
+		Map<K, V>[] table = this.tableFor(key);
+		int bucket = this.indexOf(key, table.length);
+		if (this.probe(table, bucket) == null) {
+			table[bucket] = new Map1L<>();
+			setBit(this.bitmapOf(table), bucket, true);
+		}
+		return table[bucket];
+	}
+
+	/**
+	 * Returns the bucket that holds {@code key} if it is in {@code this}, and into
+	 * which {@code key} should be added otherwise, or null if that bucket does
+	 * not exist yet. Unlike {@code bucketFor}, it never creates a bucket.
+	 *
+	 * @param key the key
+	 * @return the bucket responsible for {@code key}, or null
+	 * @ensures this = #this
+	 */
+	private Map<K, V> existingBucketFor(K key) {
+		Map<K, V>[] table = this.tableFor(key);
+		return this.probe(table, this.indexOf(key, table.length));
+	}
+
+	/**
+	 * Adds the pair ({@code key}, {@code value}) to {@code this}: advances an
+	 * in-progress rehash, puts the pair in its bucket (creating the bucket if
+	 * needed), and grows the table if needed. The bucket is located afresh, so
+	 * it does not matter what happened to {@code this} since {@code key} was
+	 * last looked up.
+	 *
+	 * @param key   the key to be added
+	 * @param value the associated value to be added
+	 * @aliases references {@code key, value}
+	 * @updates this
+	 * @requires key is not in DOMAIN(this)
+	 * @ensures this = #this union {(key, value)}
+	 */
+	private void addNew(K key, V value) {
+		this.migrateSome();
+		Map<K, V>[] table = this.tableFor(key);
+		int bucket = this.indexOf(key, table.length);
+		if (table[bucket] == null) {
+			table[bucket] = new Map1L<>();
+			setBit(this.bitmapOf(table), bucket, true);
+		}
+		table[bucket].add(key, value);
+		this.size++;
+		this.modCount++;
+		this.growIfNeeded();
+	}
+
+	/**
+	 * Returns the bitmap of non-null slots of {@code table}.
+	 *
+	 * @param table either {@code hashTable} or {@code oldTable}
+	 * @return {@code occupied} or {@code oldOccupied}, respectively
+	 */
+	private long[] bitmapOf(Map<K, V>[] table) {
+		long[] bits = this.occupied;
+		if (table != this.hashTable) {
+			bits = this.oldOccupied;
+		}
+		return bits;
+	}
+
+	/**
+	 * Drops bucket {@code index} of {@code table} if it has become empty.
+	 *
+	 * @param table either {@code hashTable} or {@code oldTable}
+	 * @param index the slot of the bucket
+	 * @requires table[index] /= null
+	 * @ensures this = #this
+	 */
+	private void releaseIfEmpty(Map<K, V>[] table, int index) {
+		if (table[index].size() == 0) {
+			table[index] = null;
+			setBit(this.bitmapOf(table), index, false);
+		}
+	}
+
+	/**
+	 * Grows the hash table if its load exceeds {@code loadFactor}.
+	 *
+	 * @ensures this = #this
+	 */
+	private void growIfNeeded() {
+		int length = this.hashTable.length;
+		if (this.size > this.loadFactor * length && length < MAXIMUM_HASH_TABLE_SIZE) {
+			this.growths++;
+			if (this.powerOfTwoTable) {
+				this.startRehash(2 * length);
+			} else {
+				this.startRehash(nextPrime(Math.min(2 * length + 1, MAXIMUM_HASH_TABLE_SIZE)));
+			}
 		}
+	}
 
+	/**
+	 * Shrinks the hash table if its load falls below
+	 * {@code loadFactor / SHRINK_RATIO}, never going below {@code minTableSize}.
+	 *
+	 * @ensures this = #this
+	 */
+	private void shrinkIfNeeded() {
+		int length = this.hashTable.length;
+		if (length > this.minTableSize && this.size < this.loadFactor * length / SHRINK_RATIO) {
+			this.shrinks++;
+			if (this.powerOfTwoTable) {
+				this.startRehash(length / 2);
+			} else {
+				this.startRehash(Math.max(this.minTableSize, nextPrime(length / 2)));
+			}
+		}
 	}
 
 	/*
@@ -132,12 +713,13 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 	 */
 	public Map4() {
 
-		this.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+		this.createNewRep(DEFAULT_HASH_TABLE_SIZE, DEFAULT_LOAD_FACTOR, HashSpreader.IDENTITY, false);
 
 	}
 
 	/**
-	 * Constructor resulting in a hash table of size {@code hashTableSize}.
+	 * Constructor resulting in a hash table of initial size
+	 * {@code hashTableSize}.
 	 *
 	 * @param hashTableSize size of hash table
 	 * @requires hashTableSize > 0
@@ -145,7 +727,43 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 	 */
 	public Map4(int hashTableSize) {
 
-		this.createNewRep(hashTableSize);
+		this.createNewRep(hashTableSize, DEFAULT_LOAD_FACTOR, HashSpreader.IDENTITY, false);
+	}
+
+	/**
+	 * Constructor resulting in a hash table of initial size {@code hashTableSize}
+	 * that grows whenever the average bucket length exceeds {@code loadFactor}.
+	 *
+	 * @param hashTableSize initial size of hash table
+	 * @param loadFactor    maximum average number of entries per bucket
+	 * @requires hashTableSize > 0 and loadFactor > 0
+	 * @ensures this = {}
+	 */
+	public Map4(int hashTableSize, double loadFactor) {
+		assert loadFactor > 0 : "Violation of: loadFactor > 0";
+
+		this.createNewRep(hashTableSize, loadFactor, HashSpreader.IDENTITY, false);
+	}
+
+	/**
+	 * Constructor resulting in a hash table of initial size {@code hashTableSize}
+	 * (rounded up to a power of 2 if {@code powerOfTwoTable}) that grows whenever
+	 * the average bucket length exceeds {@code loadFactor}, and that reduces hash
+	 * codes mixed by {@code spreader} to bucket indices by masking (if
+	 * {@code powerOfTwoTable}) or mod a prime table size (otherwise).
+	 *
+	 * @param hashTableSize   initial size of hash table
+	 * @param loadFactor      maximum average number of entries per bucket
+	 * @param spreader        mixes hash codes before they are reduced
+	 * @param powerOfTwoTable whether table sizes are powers of 2
+	 * @requires hashTableSize > 0 and loadFactor > 0 and spreader is not null
+	 * @ensures this = {}
+	 */
+	public Map4(int hashTableSize, double loadFactor, HashSpreader spreader, boolean powerOfTwoTable) {
+		assert loadFactor > 0 : "Violation of: loadFactor > 0";
+		assert spreader != null : "Violation of: spreader is not null";
+
+		this.createNewRep(hashTableSize, loadFactor, spreader, powerOfTwoTable);
 	}
 
 	/*
@@ -164,7 +782,7 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 
 	@Override
 	public final void clear() {
-		this.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+		this.createNewRep(DEFAULT_HASH_TABLE_SIZE, this.loadFactor, this.spreader, this.powerOfTwoTable);
 	}
 
 	@Override
@@ -179,8 +797,24 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 		 */
 		Map4<K, V> localSource = (Map4<K, V>) source;
 		this.hashTable = localSource.hashTable;
+		this.occupied = localSource.occupied;
+		this.scanStart = localSource.scanStart;
+		this.oldTable = localSource.oldTable;
+		this.oldOccupied = localSource.oldOccupied;
+		this.migrateIndex = localSource.migrateIndex;
+		this.migrationStep = localSource.migrationStep;
+		this.loadFactor = localSource.loadFactor;
+		this.minTableSize = localSource.minTableSize;
+		this.spreader = localSource.spreader;
+		this.powerOfTwoTable = localSource.powerOfTwoTable;
 		this.size = localSource.size;
-		localSource.createNewRep(DEFAULT_HASH_TABLE_SIZE);
+		this.lookups = localSource.lookups;
+		this.bucketEntries = localSource.bucketEntries;
+		this.growths = localSource.growths;
+		this.shrinks = localSource.shrinks;
+		this.modCount++;
+		localSource.createNewRep(DEFAULT_HASH_TABLE_SIZE, localSource.loadFactor, localSource.spreader,
+				localSource.powerOfTwoTable);
 	}
 
 	/*
@@ -193,15 +827,16 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 		assert value != null : "Violation of: value is not null";
 		assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
 
-		// First find the correct bucket number for the key
-		int kHash = key.hashCode();
-		int bucket = mod(kHash, this.hashTable.length);
+		this.migrateSome();
 
-		// After finding correct bucket | Add Key and Value to bucket
-		this.hashTable[bucket].add(key, value);
+		// Find the correct bucket for the key | Add Key and Value to bucket
+		this.bucketFor(key).add(key, value);
 
 		// Now update size of object: this in order to keep mod method working
 		this.size++;
+		this.modCount++;
+
+		this.growIfNeeded();
 
 	}
 
@@ -210,16 +845,22 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 		assert key != null : "Violation of: key is not null";
 		assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
 
+		this.migrateSome();
+
 		// First find the correct bucket number for the key
-		int kHash = key.hashCode();
-		int bucket = mod(kHash, this.hashTable.length);
+		Map<K, V>[] table = this.tableFor(key);
+		int bucket = this.indexOf(key, table.length);
 
 		// Remove the pair from the correct bucket
-		Map.Pair<K, V> removedPair = this.hashTable[bucket].remove(key);
+		Map.Pair<K, V> removedPair = this.probe(table, bucket).remove(key);
+		this.releaseIfEmpty(table, bucket);
 
 		// decrease size of map upon removal
 		// Now update size of object: this in order to keep mod method working
 		this.size--;
+		this.modCount++;
+
+		this.shrinkIfNeeded();
 
 		return removedPair;
 	}
@@ -228,17 +869,38 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 	public final Pair<K, V> removeAny() {
 		assert this.size() > 0 : "Violation of: this /= empty_set";
 
-		// Find bucket with: size() > 0
-		int bucketRemove = 0;
-		while (this.hashTable[bucketRemove].size() == 0) {
-			bucketRemove++;
+		this.migrateSome();
+
+		/*
+		 * Find a non-empty bucket, looking at the buckets not yet rehashed first. In
+		 * the current table, resume where the last removeAny stopped: the buckets
+		 * before it were found empty, so draining the map scans the bitmap once.
+		 */
+		Map<K, V>[] table = this.hashTable;
+		int bucket = -1;
+		if (this.oldTable != null) {
+			bucket = nextSetBit(this.oldOccupied, this.migrateIndex);
+			if (bucket >= 0) {
+				table = this.oldTable;
+			}
+		}
+		if (bucket < 0) {
+			bucket = nextSetBit(this.occupied, this.scanStart);
+			if (bucket < 0) {
+				bucket = nextSetBit(this.occupied, 0);
+			}
+			this.scanStart = bucket;
 		}
 
 		// Create and remove map pair from the chosen bucket
-		Map.Pair<K, V> removedPair = this.hashTable[bucketRemove].removeAny();
+		Map.Pair<K, V> removedPair = table[bucket].removeAny();
+		this.releaseIfEmpty(table, bucket);
 
 		// Update the size of this
 		this.size--;
+		this.modCount++;
+
+		this.shrinkIfNeeded();
 
 		// Return the randomly chosen pair
 		return removedPair;
@@ -250,10 +912,10 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 		assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
 
 		// First find the correct bucket number for the key
-		int kHash = key.hashCode();
-		int bucket = mod(kHash, this.hashTable.length);
+		Map<K, V>[] table = this.tableFor(key);
+		int bucket = this.indexOf(key, table.length);
 
-		return this.hashTable[bucket].value(key);
+		return this.probe(table, bucket).value(key);
 	}
 
 	@Override
@@ -261,10 +923,11 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 		assert key != null : "Violation of: key is not null";
 
 		// First find the correct bucket number for the key
-		int kHash = key.hashCode();
-		int bucket = mod(kHash, this.hashTable.length);
+		Map<K, V>[] table = this.tableFor(key);
+		int bucket = this.indexOf(key, table.length);
 
-		return this.hashTable[bucket].hasKey(key);
+		Map<K, V> b = this.probe(table, bucket);
+		return b != null && b.hasKey(key);
 
 	}
 
@@ -274,28 +937,604 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 		return this.size;
 	}
 
+	/*
+	 * Secondary methods ------------------------------------------------------
+	 */
+
+	/*
+	 * Each of these hashes the key and finds its bucket once, instead of once
+	 * per kernel call (hasKey, value, remove, add) a client would otherwise make.
+	 * Like replaceValue, updating the value of a key already present is not a
+	 * structural modification: only adding a new entry advances a rehash.
+	 */
+
 	@Override
-	public final Iterator<Pair<K, V>> iterator() {
-		return new Map4Iterator();
+	public final V replaceValue(K key, V value) {
+		assert key != null : "Violation of: key is not null";
+		assert value != null : "Violation of: value is not null";
+		assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+		return this.bucketFor(key).replaceValue(key, value);
 	}
 
 	/**
-	 * Implementation of {@code Iterator} interface for {@code Map4}.
+	 * Adds the pair ({@code key}, {@code value}) to this if {@code key} is not
+	 * already in {@code DOMAIN(this)}, and reports the value previously associated
+	 * with {@code key}.
+	 *
+	 * @param key   the key to be added
+	 * @param value the associated value to be added
+	 * @return the value associated with {@code key} in {@code #this}, or null if
+	 *         there was none
+	 * @aliases references {@code key, value}
+	 * @updates this
+	 * @requires key is not null and value is not null
+	 * @ensures
+	 *
+	 *          <pre>
+	 * if key is in DOMAIN(#this) then
+	 *   this = #this  and  putIfAbsent = #this(key)
+	 * else
+	 *   this = #this union {(key, value)}  and  putIfAbsent = null
+	 *          </pre>
 	 */
-	private final class Map4Iterator implements Iterator<Pair<K, V>> {
+	public final V putIfAbsent(K key, V value) {
+		assert key != null : "Violation of: key is not null";
+		assert value != null : "Violation of: value is not null";
 
-		/**
-		 * Number of elements seen already (i.e., |~this.seen|).
+		Map<K, V> bucket = this.existingBucketFor(key);
+		V previous = null;
+		if (bucket != null && bucket.hasKey(key)) {
+			previous = bucket.value(key);
+		} else {
+			this.addNew(key, value);
+		}
+		return previous;
+	}
+
+	/**
+	 * Reports the value associated with {@code key}, first adding {@code key}
+	 * with the value computed by {@code mappingFunction} if {@code key} is not in
+	 * {@code DOMAIN(this)}.
+	 *
+	 * @param key             the key
+	 * @param mappingFunction computes the value for an absent key
+	 * @return the value associated with {@code key} in {@code this}
+	 * @aliases reference {@code key}
+	 * @updates this
+	 * @requires
+	 *
+	 *           <pre>
+	 * key is not null  and  mappingFunction is not null  and
+	 * [mappingFunction.apply(key) is not null and does not add key to this]
+	 *           </pre>
+	 *
+	 * @ensures
+	 *
+	 *          <pre>
+	 * if key is in DOMAIN(#this) then
+	 *   this = #this
+	 * else
+	 *   this = #this union {(key, [result of mappingFunction.apply(key)])}  and
+	 * computeIfAbsent = this(key)
+	 *          </pre>
+	 */
+	public final V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		assert key != null : "Violation of: key is not null";
+		assert mappingFunction != null : "Violation of: mappingFunction is not null";
+
+		Map<K, V> bucket = this.existingBucketFor(key);
+		V result;
+		if (bucket != null && bucket.hasKey(key)) {
+			result = bucket.value(key);
+		} else {
+			/*
+			 * Nothing is created before mappingFunction runs, so this is unchanged if it
+			 * throws, and the bucket is found again afterwards in case it changed this
+			 */
+			result = mappingFunction.apply(key);
+			assert result != null : "Violation of: mappingFunction.apply(key) is not null";
+			this.addNew(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Associates {@code key} with {@code value} if {@code key} is not in
+	 * {@code DOMAIN(this)}, and otherwise with the result of combining its current
+	 * value with {@code value} using {@code remappingFunction}; reports the new
+	 * associated value.
+	 *
+	 * @param key               the key
+	 * @param value             the value to add or to combine with the current
+	 *                          value
+	 * @param remappingFunction combines the current value and {@code value}
+	 * @return the value associated with {@code key} in {@code this}
+	 * @aliases references {@code key, value}
+	 * @updates this
+	 * @requires
+	 *
+	 *           <pre>
+	 * key is not null  and  value is not null  and
+	 * remappingFunction is not null  and
+	 * [remappingFunction.apply never returns null]
+	 *           </pre>
+	 *
+	 * @ensures
+	 *
+	 *          <pre>
+	 * if key is in DOMAIN(#this) then
+	 *   this = (#this \ {(key, #this(key))}) union
+	 *     {(key, [result of remappingFunction.apply(#this(key), value)])}
+	 * else
+	 *   this = #this union {(key, value)}  and
+	 * merge = this(key)
+	 *          </pre>
+	 */
+	public final V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		assert key != null : "Violation of: key is not null";
+		assert value != null : "Violation of: value is not null";
+		assert remappingFunction != null : "Violation of: remappingFunction is not null";
+
+		Map<K, V> bucket = this.existingBucketFor(key);
+		V result = value;
+		if (bucket != null && bucket.hasKey(key)) {
+			result = remappingFunction.apply(bucket.value(key), value);
+			assert result != null : "Violation of: remappingFunction.apply never returns null";
+			bucket.replaceValue(key, result);
+		} else {
+			this.addNew(key, value);
+		}
+		return result;
+	}
+
+	/**
+	 * Grows the hash table, if necessary, so that {@code expectedSize} entries
+	 * fit without exceeding the load factor, rehashing all entries at once. Adding
+	 * up to {@code expectedSize} entries afterwards never triggers a rehash.
+	 *
+	 * @param expectedSize the number of entries expected
+	 * @ensures this = #this
+	 */
+	public final void ensureCapacity(int expectedSize) {
+		double needed = Math.ceil(expectedSize / this.loadFactor);
+		if (needed > this.hashTable.length && this.hashTable.length < MAXIMUM_HASH_TABLE_SIZE) {
+			int newSize = (int) Math.min(needed, MAXIMUM_HASH_TABLE_SIZE);
+			if (this.powerOfTwoTable) {
+				newSize = HashTables.powerOfTwoAtLeast(newSize);
+			} else {
+				newSize = nextPrime(newSize);
+			}
+			this.growths++;
+			this.startRehash(newSize);
+		}
+		while (this.oldTable != null) {
+			this.migrateBucket();
+		}
+	}
+
+	/**
+	 * Adds the pairs ({@code keys[i]}, {@code values[i]}) to this, sizing the
+	 * table once and filling each bucket in one go, optionally with the buckets
+	 * divided among the threads of the common fork/join pool.
+	 *
+	 * <p>
+	 * Unlike a loop of {@code add}s, this does not look each key up as it adds
+	 * it; the precondition that the keys are new and distinct is checked in one
+	 * pass over the keys, grouped by bucket, before any is added (when
+	 * assertion checking is enabled).
+	 *
+	 * @param keys     the keys to be added
+	 * @param values   the associated values to be added
+	 * @param parallel whether the buckets may be filled in parallel
+	 * @aliases references {@code keys[i], values[i]}
+	 * @updates this
+	 * @requires
+	 *
+	 *           <pre>
+	 * |keys| = |values|  and  [no entry of keys or values is null]  and
+	 * [the entries of keys are distinct and not in DOMAIN(this)]
+	 *           </pre>
+	 *
+	 * @ensures this = #this union {(keys[i], values[i]) for 0 <= i < |keys|}
+	 */
+	public final void addAll(K[] keys, V[] values, boolean parallel) {
+		assert keys != null : "Violation of: keys is not null";
+		assert values != null : "Violation of: values is not null";
+		assert keys.length == values.length : "Violation of: |keys| = |values|";
+
+		this.bulkAdd(keys, values, keys.length, parallel);
+	}
+
+	/**
+	 * Adds the pairs of {@code pairs} to this, as {@code addAll(K[], V[],
+	 * boolean)} does, without parallelism.
+	 *
+	 * @param pairs the pairs to be added
+	 * @aliases references [keys and values of pairs]
+	 * @updates this
+	 * @requires
+	 *
+	 *           <pre>
+	 * [no key or value of pairs is null]  and
+	 * [the keys of pairs are distinct and not in DOMAIN(this)]
+	 *           </pre>
+	 *
+	 * @ensures this = #this union [the pairs of pairs]
+	 */
+	public final void addAll(Iterable<? extends Map.Pair<K, V>> pairs) {
+		assert pairs != null : "Violation of: pairs is not null";
+
+		// Presize from the source when it knows its size
+		int capacity = BULK_INITIAL_CAPACITY;
+		if (pairs instanceof Collection<?>) {
+			capacity = Math.max(1, ((Collection<?>) pairs).size());
+		} else if (pairs instanceof Map<?, ?>) {
+			capacity = Math.max(1, ((Map<?, ?>) pairs).size());
+		}
+		Object[] keys = new Object[capacity];
+		Object[] values = new Object[keys.length];
+		int n = 0;
+		for (Map.Pair<K, V> p : pairs) {
+			if (n == keys.length) {
+				keys = Arrays.copyOf(keys, 2 * n);
+				values = Arrays.copyOf(values, 2 * n);
+			}
+			keys[n] = p.key();
+			values[n] = p.value();
+			n++;
+		}
+		this.bulkAdd(keys, values, n, false);
+	}
+
+	/**
+	 * Adds the pairs ({@code keys[i]}, {@code values[i]}) for
+	 * {@code 0 <= i < n} to this: presizes the table, sorts the entries by bucket
+	 * index (a counting sort), and then fills the buckets.
+	 *
+	 * @param keys     the keys to be added (each a K)
+	 * @param values   the associated values to be added (each a V)
+	 * @param n        the number of pairs to add
+	 * @param parallel whether the work may be done in parallel
+	 * @updates this
+	 * @requires
+	 *
+	 *           <pre>
+	 * 0 <= n <= |keys|  and  n <= |values|  and
+	 * [keys[0, n) are distinct, not null, and not in DOMAIN(this)]  and
+	 * [values[0, n) are not null]
+	 *           </pre>
+	 *
+	 * @ensures this = #this union {(keys[i], values[i]) for 0 <= i < n}
+	 */
+	@SuppressWarnings("unchecked")
+	private void bulkAdd(Object[] keys, Object[] values, int n, boolean parallel) {
+		this.ensureCapacity(this.size + n);
+		final int tableSize = this.hashTable.length;
+
+		// Bucket index of every entry; hashing is the part worth doing in parallel
+		int[] index = new int[n];
+		IntStream range = IntStream.range(0, n);
+		if (parallel) {
+			range = range.parallel();
+		}
+		range.forEach(i -> index[i] = this.indexOf((K) keys[i], tableSize));
+
+		// starts[b] is where the entries of bucket b begin in order
+		int[] starts = new int[tableSize + 1];
+		for (int i = 0; i < n; i++) {
+			starts[index[i] + 1]++;
+		}
+		for (int b = 0; b < tableSize; b++) {
+			starts[b + 1] += starts[b];
+		}
+		int[] order = new int[n];
+		int[] next = Arrays.copyOf(starts, tableSize);
+		for (int i = 0; i < n; i++) {
+			order[next[index[i]]] = i;
+			next[index[i]]++;
+		}
+
+		assert this.bulkKeysAreNew((K[]) keys, order, starts) : ""
+				+ "Violation of: [keys are distinct and not in DOMAIN(this)]";
+
+		BulkFill fill = new BulkFill((K[]) keys, (V[]) values, order, starts, 0, tableSize);
+		if (parallel) {
+			ForkJoinPool.commonPool().invoke(fill);
+		} else {
+			fill.compute();
+		}
+		this.size += n;
+		this.modCount++;
+		this.growIfNeeded();
+	}
+
+	/**
+	 * Reports whether the keys of a bulk add, grouped by bucket as in
+	 * {@code bulkAdd}, are distinct and not in {@code this}. Equal keys share a
+	 * bucket, so each key is compared only with the others of its bucket.
+	 *
+	 * @param keys   the keys to be added
+	 * @param order  entry indices sorted by bucket
+	 * @param starts where each bucket's entries begin in order
+	 * @return true iff the keys in order are distinct and not in DOMAIN(this)
+	 * @requires
+	 *
+	 *           <pre>
+	 * $this.oldTable = null  and  |starts| = |$this.hashTable| + 1  and
+	 * [order[starts[b], starts[b + 1]) are the indices of the keys whose
+	 *  bucket is b, for every bucket b]
+	 *           </pre>
+	 *
+	 * @ensures this = #this
+	 */
+	private boolean bulkKeysAreNew(K[] keys, int[] order, int[] starts) {
+		boolean ok = true;
+		for (int b = 0; ok && b < this.hashTable.length; b++) {
+			Map<K, V> bucket = this.hashTable[b];
+			for (int j = starts[b]; ok && j < starts[b + 1]; j++) {
+				K key = keys[order[j]];
+				ok = bucket == null || !bucket.hasKey(key);
+				for (int k = starts[b]; ok && k < j; k++) {
+					ok = !key.equals(keys[order[k]]);
+				}
+			}
+		}
+		return ok;
+	}
+
+	/**
+	 * Fork/join task that fills the buckets in a range of slots of
+	 * {@code hashTable} during a bulk add. Ranges are split at multiples of
+	 * {@code Long.SIZE}, so concurrent tasks touch disjoint buckets and disjoint
+	 * words of {@code occupied}.
+	 */
+	private final class BulkFill extends RecursiveAction {
+
+		/**
+		 * Serialization version (required because {@code RecursiveAction} is
+		 * {@code Serializable}).
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Keys being added.
+		 */
+		private final K[] keys;
+
+		/**
+		 * Values being added.
+		 */
+		private final V[] values;
+
+		/**
+		 * Indices into {@code keys} and {@code values}, sorted by bucket.
+		 */
+		private final int[] order;
+
+		/**
+		 * Where the entries of each bucket begin in {@code order}.
+		 */
+		private final int[] starts;
+
+		/**
+		 * First slot of the range.
+		 */
+		private final int from;
+
+		/**
+		 * Slot just past the range.
+		 */
+		private final int to;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param keys   keys being added
+		 * @param values values being added
+		 * @param order  entry indices sorted by bucket
+		 * @param starts where each bucket's entries begin in order
+		 * @param from   first slot of the range
+		 * @param to     slot just past the range
+		 */
+		BulkFill(K[] keys, V[] values, int[] order, int[] starts, int from, int to) {
+			this.keys = keys;
+			this.values = values;
+			this.order = order;
+			this.starts = starts;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from <= BULK_TASK_BUCKETS) {
+				for (int b = this.from; b < this.to; b++) {
+					if (this.starts[b] < this.starts[b + 1]) {
+						if (Map4.this.hashTable[b] == null) {
+							Map4.this.hashTable[b] = new Map1L<>();
+							setBit(Map4.this.occupied, b, true);
+						}
+						Map<K, V> bucket = Map4.this.hashTable[b];
+						for (int j = this.starts[b]; j < this.starts[b + 1]; j++) {
+							bucket.add(this.keys[this.order[j]], this.values[this.order[j]]);
+						}
+					}
+				}
+			} else {
+				int mid = this.from + (this.to - this.from) / 2 / Long.SIZE * Long.SIZE;
+				invokeAll(new BulkFill(this.keys, this.values, this.order, this.starts, this.from, mid),
+						new BulkFill(this.keys, this.values, this.order, this.starts, mid, this.to));
+			}
+		}
+
+	}
+
+	/**
+	 * Returns an immutable copy of {@code this} that answers {@code hasKey} and
+	 * {@code value} with a single probe and may be shared between threads
+	 * without locking. Takes expected time linear in |this|; later changes to
+	 * {@code this} do not affect the copy.
+	 *
+	 * @return a frozen copy of this
+	 * @ensures freeze = this
+	 */
+	public final Map4Frozen<K, V> freeze() {
+		return new Map4Frozen<>(this);
+	}
+
+	/**
+	 * Reports the current shape of the hash table and the counters accumulated
+	 * since construction, the last {@code clear}, or the last
+	 * {@code resetStatistics}. Takes time linear in the number of buckets.
+	 *
+	 * <p>
+	 * Every search of a bucket for a key counts as a lookup. With assertion
+	 * checking enabled, the {@code hasKey} calls made to check preconditions are
+	 * counted too.
+	 *
+	 * @return a snapshot of the statistics of {@code this}
+	 */
+	public final Statistics statistics() {
+		int[] counts = this.bucketLengthCounts(this.hashTable, this.occupied, 0, new int[1]);
+		int buckets = this.hashTable.length;
+		if (this.oldTable != null) {
+			counts = this.bucketLengthCounts(this.oldTable, this.oldOccupied, this.migrateIndex, counts);
+			buckets += this.oldTable.length - this.migrateIndex;
+		}
+		int nonEmpty = 0;
+		for (int length = 1; length < counts.length; length++) {
+			nonEmpty += counts[length];
+		}
+		int empty = buckets - nonEmpty;
+		counts[0] = empty;
+
+		/*
+		 * Smallest length L such that at least 99% of the entries are in buckets of
+		 * length at most L; weighting by entries rather than buckets keeps a few
+		 * huge buckets from hiding behind many empty ones
+		 */
+		long target = (99L * this.size + 99) / 100;
+		int p99 = 0;
+		long atMost = 0;
+		while (atMost < target) {
+			p99++;
+			atMost += (long) p99 * counts[p99];
+		}
+
+		return new Statistics(this.size, buckets, empty, counts.length - 1, p99, this.lookups, this.bucketEntries,
+				this.growths, this.shrinks);
+	}
+
+	/**
+	 * Adds the lengths of the non-empty buckets of {@code table}, from slot
+	 * {@code from} on, to the histogram {@code counts}.
+	 *
+	 * @param table  either {@code hashTable} or {@code oldTable}
+	 * @param bits   the bitmap of non-null slots of {@code table}
+	 * @param from   the first slot to consider
+	 * @param counts the histogram (counts[L] is the number of buckets of length
+	 *               L)
+	 * @return the updated histogram, lengthened to |counts| = [longest bucket
+	 *         length] + 1 if necessary
+	 */
+	private int[] bucketLengthCounts(Map<K, V>[] table, long[] bits, int from, int[] counts) {
+		int[] result = counts;
+		for (int i = nextSetBit(bits, from); i >= 0; i = nextSetBit(bits, i + 1)) {
+			int length = table[i].size();
+			if (length >= result.length) {
+				result = Arrays.copyOf(result, Math.max(length + 1, 2 * result.length));
+			}
+			result[length]++;
+		}
+		// Trim so that the last entry counts the longest buckets
+		int last = result.length - 1;
+		while (last > 0 && result[last] == 0) {
+			last--;
+		}
+		return Arrays.copyOf(result, last + 1);
+	}
+
+	/**
+	 * Resets the lookup, probe, growth, and shrink counters to zero.
+	 *
+	 * @ensures this = #this
+	 */
+	public final void resetStatistics() {
+		this.lookups = 0;
+		this.bucketEntries = 0;
+		this.growths = 0;
+		this.shrinks = 0;
+	}
+
+	@Override
+	public final Iterator<Pair<K, V>> iterator() {
+		return new Map4Iterator();
+	}
+
+	/**
+	 * Returns a {@code Spliterator} over the entries of {@code this} that splits
+	 * by ranges of buckets, so that, e.g.,
+	 * {@code StreamSupport.stream(map.spliterator(), true)} processes the
+	 * entries in parallel. Like the iterator, it throws
+	 * {@code ConcurrentModificationException} if {@code this} is structurally
+	 * modified while it is in use.
+	 *
+	 * @return a spliterator over the entries of {@code this}
+	 */
+	@Override
+	public final Spliterator<Pair<K, V>> spliterator() {
+		int oldBuckets = 0;
+		if (this.oldTable != null) {
+			oldBuckets = this.oldTable.length - this.migrateIndex;
+		}
+		return new Map4Spliterator(oldBuckets);
+	}
+
+	/**
+	 * Throws {@code ConcurrentModificationException} unless {@code this} has
+	 * not been structurally modified since {@code modCount} was
+	 * {@code expectedModCount}.
+	 *
+	 * @param expectedModCount the value of {@code modCount} when iteration
+	 *                         began
+	 */
+	private void checkForComodification(int expectedModCount) {
+		if (this.modCount != expectedModCount) {
+			throw new ConcurrentModificationException();
+		}
+	}
+
+	/**
+	 * Implementation of {@code Iterator} interface for {@code Map4}. It fails
+	 * fast if {@code this} is structurally modified during iteration, and it
+	 * creates a bucket iterator only for non-empty buckets.
+	 */
+	private final class Map4Iterator implements Iterator<Pair<K, V>> {
+
+		/**
+		 * Value of {@code modCount} when the iterator was created.
+		 */
+		private final int expectedModCount;
+
+		/**
+		 * Number of elements seen already (i.e., |~this.seen|).
 		 */
 		private int numberSeen;
 
+		/**
+		 * Table (old or current) containing the current bucket.
+		 */
+		private Map<K, V>[] currentTable;
+
 		/**
 		 * Bucket from which current bucket iterator comes.
 		 */
 		private int currentBucket;
 
 		/**
-		 * Bucket iterator from which next element will come.
+		 * Bucket iterator from which next element will come, or null before the
+		 * first bucket is reached.
 		 */
 		private Iterator<Pair<K, V>> bucketIterator;
 
@@ -303,9 +1542,16 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 		 * No-argument constructor.
 		 */
 		Map4Iterator() {
+			this.expectedModCount = Map4.this.modCount;
 			this.numberSeen = 0;
-			this.currentBucket = 0;
-			this.bucketIterator = Map4.this.hashTable[0].iterator();
+			if (Map4.this.oldTable != null) {
+				this.currentTable = Map4.this.oldTable;
+				this.currentBucket = Map4.this.migrateIndex - 1;
+			} else {
+				this.currentTable = Map4.this.hashTable;
+				this.currentBucket = -1;
+			}
+			this.bucketIterator = null;
 		}
 
 		@Override
@@ -323,10 +1569,17 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 				 */
 				throw new NoSuchElementException();
 			}
+			Map4.this.checkForComodification(this.expectedModCount);
 			this.numberSeen++;
-			while (!this.bucketIterator.hasNext()) {
-				this.currentBucket++;
-				this.bucketIterator = Map4.this.hashTable[this.currentBucket].iterator();
+			while (this.bucketIterator == null || !this.bucketIterator.hasNext()) {
+				// Jump to the next non-null (hence non-empty) bucket
+				this.currentBucket = nextSetBit(Map4.this.bitmapOf(this.currentTable), this.currentBucket + 1);
+				if (this.currentBucket < 0) {
+					// Done with the buckets not yet rehashed; continue in the current table
+					this.currentTable = Map4.this.hashTable;
+					this.currentBucket = nextSetBit(Map4.this.occupied, 0);
+				}
+				this.bucketIterator = this.currentTable[this.currentBucket].iterator();
 			}
 			return this.bucketIterator.next();
 		}
@@ -338,4 +1591,378 @@ public class Map4<K, V> extends MapSecondary<K, V> {
 
 	}
 
+	/**
+	 * Implementation of {@code Spliterator} interface for {@code Map4}. It
+	 * covers a range of buckets, numbered with the buckets of {@code oldTable}
+	 * not yet rehashed first (from {@code migrateIndex} on) and then those of
+	 * {@code hashTable}, and splits by halving that range.
+	 */
+	private final class Map4Spliterator implements Spliterator<Pair<K, V>> {
+
+		/**
+		 * Value of {@code modCount} when the spliterator was created.
+		 */
+		private final int expectedModCount;
+
+		/**
+		 * Number of buckets of {@code oldTable} covered by the numbering.
+		 */
+		private final int oldBuckets;
+
+		/**
+		 * Next bucket to visit.
+		 */
+		private int from;
+
+		/**
+		 * Bucket just past the range.
+		 */
+		private final int to;
+
+		/**
+		 * Estimated number of entries remaining.
+		 */
+		private long estimate;
+
+		/**
+		 * Iterator over the bucket being visited, or null.
+		 */
+		private Iterator<Pair<K, V>> bucketIterator;
+
+		/**
+		 * Constructor for a spliterator over all the buckets.
+		 *
+		 * @param oldBuckets number of buckets of {@code oldTable} not yet rehashed
+		 */
+		Map4Spliterator(int oldBuckets) {
+			this.expectedModCount = Map4.this.modCount;
+			this.oldBuckets = oldBuckets;
+			this.from = 0;
+			this.to = oldBuckets + Map4.this.hashTable.length;
+			this.estimate = Map4.this.size;
+			this.bucketIterator = null;
+		}
+
+		/**
+		 * Constructor for a split-off part of {@code parent}.
+		 *
+		 * @param parent   the spliterator being split
+		 * @param to       bucket just past the range of the new part
+		 * @param estimate estimated number of entries in the new part
+		 */
+		Map4Spliterator(Map4Spliterator parent, int to, long estimate) {
+			this.expectedModCount = parent.expectedModCount;
+			this.oldBuckets = parent.oldBuckets;
+			this.from = parent.from;
+			this.to = to;
+			this.estimate = estimate;
+			this.bucketIterator = null;
+		}
+
+		/**
+		 * Returns the number of the first non-empty bucket at or after {@code b}
+		 * and before {@code to}, or {@code to} if there is none.
+		 *
+		 * @param b the bucket to start at
+		 * @return the next non-empty bucket, or {@code to}
+		 */
+		private int nextBucket(int b) {
+			int result = -1;
+			int start = b;
+			if (start < this.oldBuckets) {
+				int i = nextSetBit(Map4.this.oldOccupied, Map4.this.migrateIndex + start);
+				if (i >= 0) {
+					result = i - Map4.this.migrateIndex;
+				} else {
+					start = this.oldBuckets;
+				}
+			}
+			if (result < 0) {
+				int i = nextSetBit(Map4.this.occupied, start - this.oldBuckets);
+				if (i >= 0) {
+					result = i + this.oldBuckets;
+				}
+			}
+			if (result < 0 || result > this.to) {
+				result = this.to;
+			}
+			return result;
+		}
+
+		/**
+		 * Returns bucket number {@code b}.
+		 *
+		 * @param b the bucket number
+		 * @return the bucket
+		 */
+		private Map<K, V> bucketAt(int b) {
+			Map<K, V> bucket;
+			if (b < this.oldBuckets) {
+				bucket = Map4.this.oldTable[Map4.this.migrateIndex + b];
+			} else {
+				bucket = Map4.this.hashTable[b - this.oldBuckets];
+			}
+			return bucket;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Pair<K, V>> action) {
+			Map4.this.checkForComodification(this.expectedModCount);
+			while ((this.bucketIterator == null || !this.bucketIterator.hasNext()) && this.from < this.to) {
+				int b = this.nextBucket(this.from);
+				if (b < this.to) {
+					this.bucketIterator = this.bucketAt(b).iterator();
+					this.from = b + 1;
+				} else {
+					this.from = this.to;
+				}
+			}
+			boolean advanced = this.bucketIterator != null && this.bucketIterator.hasNext();
+			if (advanced) {
+				action.accept(this.bucketIterator.next());
+				if (this.estimate > 0) {
+					this.estimate--;
+				}
+			}
+			return advanced;
+		}
+
+		@Override
+		public Spliterator<Pair<K, V>> trySplit() {
+			Map4Spliterator prefix = null;
+			int mid = (this.from + this.to) >>> 1;
+			if (mid > this.from) {
+				long half = this.estimate / 2;
+				prefix = new Map4Spliterator(this, mid, half);
+				this.from = mid;
+				this.estimate -= half;
+			}
+			return prefix;
+		}
+
+		@Override
+		public long estimateSize() {
+			return this.estimate;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.DISTINCT | Spliterator.NONNULL;
+		}
+
+	}
+
+	/**
+	 * Snapshot of the bucket-length distribution and lookup counters of a
+	 * {@code Map4}, as reported by {@code statistics()}.
+	 */
+	public static final class Statistics {
+
+		/**
+		 * Number of entries.
+		 */
+		private final int size;
+
+		/**
+		 * Number of buckets (including those of a table still being rehashed).
+		 */
+		private final int buckets;
+
+		/**
+		 * Number of empty buckets.
+		 */
+		private final int emptyBuckets;
+
+		/**
+		 * Length of the longest bucket.
+		 */
+		private final int maxBucketLength;
+
+		/**
+		 * Smallest length such that at least 99% of the entries are in buckets no
+		 * longer than it.
+		 */
+		private final int p99BucketLength;
+
+		/**
+		 * Number of lookups.
+		 */
+		private final long lookups;
+
+		/**
+		 * Total number of entries in the buckets searched by the lookups.
+		 */
+		private final long bucketEntries;
+
+		/**
+		 * Number of times the table grew.
+		 */
+		private final int growths;
+
+		/**
+		 * Number of times the table shrank.
+		 */
+		private final int shrinks;
+
+		/**
+		 * Constructor from the values reported.
+		 *
+		 * @param size            number of entries
+		 * @param buckets         number of buckets
+		 * @param emptyBuckets    number of empty buckets
+		 * @param maxBucketLength length of the longest bucket
+		 * @param p99BucketLength 99th percentile of bucket length, weighted by
+		 *                        entries
+		 * @param lookups         number of lookups
+		 * @param bucketEntries   total number of entries in the buckets searched
+		 *                        by the lookups
+		 * @param growths         number of times the table grew
+		 * @param shrinks         number of times the table shrank
+		 */
+		Statistics(int size, int buckets, int emptyBuckets, int maxBucketLength, int p99BucketLength, long lookups,
+				long bucketEntries, int growths, int shrinks) {
+			this.size = size;
+			this.buckets = buckets;
+			this.emptyBuckets = emptyBuckets;
+			this.maxBucketLength = maxBucketLength;
+			this.p99BucketLength = p99BucketLength;
+			this.lookups = lookups;
+			this.bucketEntries = bucketEntries;
+			this.growths = growths;
+			this.shrinks = shrinks;
+		}
+
+		/**
+		 * Reports the number of entries.
+		 *
+		 * @return the number of entries
+		 */
+		public int size() {
+			return this.size;
+		}
+
+		/**
+		 * Reports the number of buckets.
+		 *
+		 * @return the number of buckets
+		 */
+		public int buckets() {
+			return this.buckets;
+		}
+
+		/**
+		 * Reports the load factor actually reached (entries per bucket).
+		 *
+		 * @return size / buckets
+		 */
+		public double load() {
+			return (double) this.size / this.buckets;
+		}
+
+		/**
+		 * Reports the number of empty buckets.
+		 *
+		 * @return the number of empty buckets
+		 */
+		public int emptyBuckets() {
+			return this.emptyBuckets;
+		}
+
+		/**
+		 * Reports the length of the longest bucket.
+		 *
+		 * @return the longest bucket length
+		 */
+		public int maxBucketLength() {
+			return this.maxBucketLength;
+		}
+
+		/**
+		 * Reports the mean length of the non-empty buckets.
+		 *
+		 * @return the mean non-empty bucket length (0 if all are empty)
+		 */
+		public double meanBucketLength() {
+			double mean = 0;
+			if (this.buckets > this.emptyBuckets) {
+				mean = (double) this.size / (this.buckets - this.emptyBuckets);
+			}
+			return mean;
+		}
+
+		/**
+		 * Reports the smallest length such that at least 99% of the entries are in
+		 * buckets no longer than it, i.e., the bucket length that 99% of
+		 * successful lookups do not exceed.
+		 *
+		 * @return the 99th percentile of bucket length, weighted by entries
+		 */
+		public int p99BucketLength() {
+			return this.p99BucketLength;
+		}
+
+		/**
+		 * Reports the number of lookups.
+		 *
+		 * @return the number of lookups
+		 */
+		public long lookups() {
+			return this.lookups;
+		}
+
+		/**
+		 * Reports the total number of entries in the buckets searched by the
+		 * lookups. Buckets are searched by hashing, so this measures how full
+		 * the searched buckets were, not how many keys were compared.
+		 *
+		 * @return the number of entries in searched buckets
+		 */
+		public long bucketEntries() {
+			return this.bucketEntries;
+		}
+
+		/**
+		 * Reports the average number of entries in the bucket searched by a
+		 * lookup.
+		 *
+		 * @return bucketEntries / lookups (0 if there were no lookups)
+		 */
+		public double entriesPerLookup() {
+			double ratio = 0;
+			if (this.lookups > 0) {
+				ratio = (double) this.bucketEntries / this.lookups;
+			}
+			return ratio;
+		}
+
+		/**
+		 * Reports the number of times the table grew.
+		 *
+		 * @return the number of growths
+		 */
+		public int growths() {
+			return this.growths;
+		}
+
+		/**
+		 * Reports the number of times the table shrank.
+		 *
+		 * @return the number of shrinks
+		 */
+		public int shrinks() {
+			return this.shrinks;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"size=%d buckets=%d load=%.3f empty=%d max=%d mean=%.3f p99=%d lookups=%d entries/lookup=%.3f"
+							+ " growths=%d shrinks=%d",
+					this.size, this.buckets, this.load(), this.emptyBuckets, this.maxBucketLength,
+					this.meanBucketLength(), this.p99BucketLength, this.lookups, this.entriesPerLookup(), this.growths,
+					this.shrinks);
+		}
+
+	}
+
 }
@@ -0,0 +1,470 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as an array of independent {@code Map4} segments,
+ * each guarded by its own lock, with implementations of primary methods that
+ * may be called concurrently from multiple threads.
+ *
+ * <p>
+ * A key always lives in the segment chosen by the high bits of its (spread)
+ * hash code, so operations on keys in different segments never wait for each
+ * other. The kernel methods {@code add}, {@code remove}, {@code removeAny},
+ * {@code value}, {@code hasKey}, and {@code size}, as well as {@code merge}
+ * (which, e.g., as {@code merge(word, 1, Integer::sum)}, atomically increments
+ * a counter), are thread-safe. {@code size} is kept in a {@code LongAdder} so
+ * concurrent updates do not contend on a single counter. The standard methods
+ * ({@code clear}, {@code newInstance}, {@code transferFrom}) and the secondary
+ * methods inherited from {@code MapSecondary} are not thread-safe, and the
+ * iterator is weakly consistent: it reports each segment as it was when the
+ * iterator reached it.
+ *
+ * @param <K> type of {@code Map} domain (key) entries
+ * @param <V> type of {@code Map} range (associated value) entries
+ * @convention
+ *
+ *             <pre>
+ * |$this.segments| = |$this.locks|  and
+ * [|$this.segments| is a power of 2]  and
+ * for all i: integer, x: K
+ *     where (0 <= i  and  i < |$this.segments|  and
+ *            x is in DOMAIN($this.segments[i]))
+ *   (SEGMENT(x, |$this.segments|) = i)  and
+ * [when no operation is in progress]
+ *   $this.count = sum i: integer
+ *       where (0 <= i  and  i < |$this.segments|)
+ *     (|$this.segments[i]|)
+ *             </pre>
+ *
+ *             [SEGMENT(x, n) is the segment index computed by method
+ *             segmentIndex]
+ * @correspondence
+ *
+ *                 <pre>
+ * this = union i: integer
+ *            where (0 <= i  and  i < |$this.segments|)
+ *          ($this.segments[i])
+ *                 </pre>
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Map4Concurrent<K, V> extends MapSecondary<K, V> {
+
+	/*
+	 * Private members --------------------------------------------------------
+	 */
+
+	/**
+	 * Number of segments per available processor used by the no-argument
+	 * constructor.
+	 */
+	private static final int SEGMENTS_PER_PROCESSOR = 4;
+
+	/**
+	 * Largest number of segments.
+	 */
+	private static final int MAXIMUM_SEGMENTS = 1 << 16;
+
+	/**
+	 * Independently locked segments.
+	 */
+	private Map4<K, V>[] segments;
+
+	/**
+	 * Lock guarding each segment (parallel to {@code segments}).
+	 */
+	private ReentrantLock[] locks;
+
+	/**
+	 * Total size of abstract {@code this}.
+	 */
+	private LongAdder count;
+
+	/**
+	 * Returns the index of the segment in which {@code key} is stored, using the
+	 * high bits of the spread hash code so that the keys of one segment are still
+	 * spread across that segment's buckets.
+	 *
+	 * @param key          the key
+	 * @param segmentCount the number of segments
+	 * @return the segment index
+	 * @requires [segmentCount is a power of 2]
+	 * @ensures 0 <= segmentIndex < segmentCount
+	 */
+	private static int segmentIndex(Object key, int segmentCount) {
+		// Every bit of the hash code affects the high bits of the mixed value
+		int h = HashSpreader.murmurFinalize(key.hashCode());
+		return (int) ((h & 0xFFFFFFFFL) * segmentCount >>> 32);
+	}
+
+	/**
+	 * Creator of initial representation.
+	 *
+	 * @param segmentCount the number of segments
+	 * @requires [segmentCount is a power of 2]
+	 * @ensures
+	 *
+	 *          <pre>
+	 * |$this.segments| = segmentCount  and
+	 * [every segment is empty]  and  $this.count = 0
+	 *          </pre>
+	 */
+	@SuppressWarnings("unchecked")
+	private void createNewRep(int segmentCount) {
+		/*
+		 * With "new Map4<K, V>[...]" in place of "new Map4[...]" it does not compile;
+		 * as shown, it results in a warning about an unchecked conversion, though it
+		 * cannot fail.
+		 */
+		this.segments = new Map4[segmentCount];
+		this.locks = new ReentrantLock[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			this.segments[i] = new Map4<>();
+			this.locks[i] = new ReentrantLock();
+		}
+		this.count = new LongAdder();
+	}
+
+	/*
+	 * Constructors -----------------------------------------------------------
+	 */
+
+	/**
+	 * No-argument constructor, using a few segments per available processor.
+	 */
+	public Map4Concurrent() {
+
+		this(SEGMENTS_PER_PROCESSOR * Runtime.getRuntime().availableProcessors());
+
+	}
+
+	/**
+	 * Constructor resulting in at least {@code concurrencyLevel} segments, so that
+	 * up to about that many threads can update {@code this} without waiting for
+	 * each other.
+	 *
+	 * @param concurrencyLevel the expected number of concurrently updating threads
+	 * @requires concurrencyLevel > 0
+	 * @ensures this = {}
+	 */
+	public Map4Concurrent(int concurrencyLevel) {
+		assert concurrencyLevel > 0 : "Violation of: concurrencyLevel > 0";
+
+		int segmentCount = 1;
+		while (segmentCount < concurrencyLevel && segmentCount < MAXIMUM_SEGMENTS) {
+			segmentCount *= 2;
+		}
+		this.createNewRep(segmentCount);
+	}
+
+	/*
+	 * Standard methods -------------------------------------------------------
+	 */
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public final Map<K, V> newInstance() {
+		try {
+			return this.getClass().getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError("Cannot construct object of type " + this.getClass());
+		}
+	}
+
+	@Override
+	public final void clear() {
+		this.createNewRep(this.segments.length);
+	}
+
+	@Override
+	public final void transferFrom(Map<K, V> source) {
+		assert source != null : "Violation of: source is not null";
+		assert source != this : "Violation of: source is not this";
+		assert source instanceof Map4Concurrent<?, ?> : ""
+				+ "Violation of: source is of dynamic type Map4Concurrent<?,?>";
+		/*
+		 * This cast cannot fail since the assert above would have stopped execution in
+		 * that case: source must be of dynamic type Map4Concurrent<?,?>, and the ?,?
+		 * must be K,V or the call would not have compiled.
+		 */
+		Map4Concurrent<K, V> localSource = (Map4Concurrent<K, V>) source;
+		this.segments = localSource.segments;
+		this.locks = localSource.locks;
+		this.count = localSource.count;
+		localSource.createNewRep(localSource.segments.length);
+	}
+
+	/*
+	 * Kernel methods ---------------------------------------------------------
+	 */
+
+	@Override
+	public final void add(K key, V value) {
+		assert key != null : "Violation of: key is not null";
+		assert value != null : "Violation of: value is not null";
+
+		int i = segmentIndex(key, this.segments.length);
+		this.locks[i].lock();
+		try {
+			assert !this.segments[i].hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+			this.segments[i].add(key, value);
+		} finally {
+			this.locks[i].unlock();
+		}
+		this.count.increment();
+	}
+
+	@Override
+	public final Pair<K, V> remove(K key) {
+		assert key != null : "Violation of: key is not null";
+
+		int i = segmentIndex(key, this.segments.length);
+		Map.Pair<K, V> removedPair;
+		this.locks[i].lock();
+		try {
+			assert this.segments[i].hasKey(key) : "Violation of: key is in DOMAIN(this)";
+			removedPair = this.segments[i].remove(key);
+		} finally {
+			this.locks[i].unlock();
+		}
+		this.count.decrement();
+		return removedPair;
+	}
+
+	@Override
+	public final Pair<K, V> removeAny() {
+		assert this.size() > 0 : "Violation of: this /= empty_set";
+
+		/*
+		 * Start at a segment that depends on the calling thread so that concurrent
+		 * callers mostly lock different segments.
+		 */
+		int n = this.segments.length;
+		int start = (int) (Thread.currentThread().getId() & (n - 1));
+		Map.Pair<K, V> removedPair = null;
+		for (int k = 0; removedPair == null && k < n; k++) {
+			int i = (start + k) & (n - 1);
+			this.locks[i].lock();
+			try {
+				if (this.segments[i].size() > 0) {
+					removedPair = this.segments[i].removeAny();
+				}
+			} finally {
+				this.locks[i].unlock();
+			}
+		}
+		if (removedPair == null) {
+			/*
+			 * Only possible if other threads emptied this concurrently, which violates
+			 * the precondition.
+			 */
+			throw new NoSuchElementException();
+		}
+		this.count.decrement();
+		return removedPair;
+	}
+
+	@Override
+	public final V value(K key) {
+		assert key != null : "Violation of: key is not null";
+
+		int i = segmentIndex(key, this.segments.length);
+		this.locks[i].lock();
+		try {
+			assert this.segments[i].hasKey(key) : "Violation of: key is in DOMAIN(this)";
+			return this.segments[i].value(key);
+		} finally {
+			this.locks[i].unlock();
+		}
+	}
+
+	@Override
+	public final boolean hasKey(K key) {
+		assert key != null : "Violation of: key is not null";
+
+		int i = segmentIndex(key, this.segments.length);
+		this.locks[i].lock();
+		try {
+			return this.segments[i].hasKey(key);
+		} finally {
+			this.locks[i].unlock();
+		}
+	}
+
+	@Override
+	public final int size() {
+
+		return this.count.intValue();
+	}
+
+	/*
+	 * Secondary methods ------------------------------------------------------
+	 */
+
+	@Override
+	public final V replaceValue(K key, V value) {
+		assert key != null : "Violation of: key is not null";
+		assert value != null : "Violation of: value is not null";
+
+		int i = segmentIndex(key, this.segments.length);
+		this.locks[i].lock();
+		try {
+			assert this.segments[i].hasKey(key) : "Violation of: key is in DOMAIN(this)";
+			return this.segments[i].replaceValue(key, value);
+		} finally {
+			this.locks[i].unlock();
+		}
+	}
+
+	/**
+	 * Atomically associates {@code key} with {@code value} if {@code key} is not
+	 * in {@code DOMAIN(this)}, and otherwise with the result of combining its
+	 * current value with {@code value} using {@code remappingFunction}; reports
+	 * the new associated value. With {@code Integer::sum} as
+	 * {@code remappingFunction} this is an atomic counter increment.
+	 *
+	 * @param key               the key
+	 * @param value             the value to add or to combine with the current
+	 *                          value
+	 * @param remappingFunction combines the current value and {@code value}; it
+	 *                          is called while the key's segment is locked
+	 * @return the value associated with {@code key} in {@code this}
+	 * @aliases references {@code key, value}
+	 * @updates this
+	 * @requires
+	 *
+	 *           <pre>
+	 * key is not null  and  value is not null  and
+	 * remappingFunction is not null  and
+	 * [remappingFunction.apply never returns null]
+	 *           </pre>
+	 *
+	 * @ensures
+	 *
+	 *          <pre>
+	 * if key is in DOMAIN(#this) then
+	 *   this = (#this \ {(key, #this(key))}) union
+	 *     {(key, [result of remappingFunction.apply(#this(key), value)])}
+	 * else
+	 *   this = #this union {(key, value)}  and
+	 * merge = this(key)
+	 *          </pre>
+	 */
+	public final V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		assert key != null : "Violation of: key is not null";
+		assert value != null : "Violation of: value is not null";
+		assert remappingFunction != null : "Violation of: remappingFunction is not null";
+
+		int i = segmentIndex(key, this.segments.length);
+		V result;
+		boolean added;
+		this.locks[i].lock();
+		try {
+			int oldSize = this.segments[i].size();
+			result = this.segments[i].merge(key, value, remappingFunction);
+			added = this.segments[i].size() > oldSize;
+		} finally {
+			this.locks[i].unlock();
+		}
+		if (added) {
+			this.count.increment();
+		}
+		return result;
+	}
+
+	@Override
+	public final Iterator<Pair<K, V>> iterator() {
+		return new Map4ConcurrentIterator();
+	}
+
+	/**
+	 * Weakly consistent implementation of {@code Iterator} interface for
+	 * {@code Map4Concurrent}: each segment is copied, under its lock, when the
+	 * iterator reaches it.
+	 */
+	private final class Map4ConcurrentIterator implements Iterator<Pair<K, V>> {
+
+		/**
+		 * Index of the next segment to be copied.
+		 */
+		private int nextSegment;
+
+		/**
+		 * Copy of the entries of the current segment.
+		 */
+		private List<Pair<K, V>> current;
+
+		/**
+		 * Position in {@code current} of the next element.
+		 */
+		private int position;
+
+		/**
+		 * No-argument constructor.
+		 */
+		Map4ConcurrentIterator() {
+			this.nextSegment = 0;
+			this.current = new ArrayList<>();
+			this.position = 0;
+			this.advance();
+		}
+
+		/**
+		 * Copies segments until one with entries is found or all have been seen.
+		 */
+		private void advance() {
+			int n = Map4Concurrent.this.segments.length;
+			while (this.position == this.current.size() && this.nextSegment < n) {
+				int i = this.nextSegment;
+				this.nextSegment++;
+				this.current.clear();
+				this.position = 0;
+				Map4Concurrent.this.locks[i].lock();
+				try {
+					for (Pair<K, V> p : Map4Concurrent.this.segments[i]) {
+						this.current.add(p);
+					}
+				} finally {
+					Map4Concurrent.this.locks[i].unlock();
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.position < this.current.size();
+		}
+
+		@Override
+		public Pair<K, V> next() {
+			assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+			if (!this.hasNext()) {
+				/*
+				 * Exception is supposed to be thrown in this case, but with assertion-checking
+				 * enabled it cannot happen because of assert above.
+				 */
+				throw new NoSuchElementException();
+			}
+			Pair<K, V> next = this.current.get(this.position);
+			this.position++;
+			this.advance();
+			return next;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("remove operation not supported");
+		}
+
+	}
+
+}
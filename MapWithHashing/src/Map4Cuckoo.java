@@ -0,0 +1,712 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.Map1L;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented with cuckoo hashing, with implementations of primary
+ * methods.
+ *
+ * <p>
+ * There are two tables of equal size, each with its own randomly seeded hash
+ * function, plus a small stash. A key is always in one of exactly two slots
+ * (one per table) or in the stash, so {@code hasKey}, {@code value} and
+ * {@code remove} compare the key with at most {@code 2 + STASH_SIZE} entries,
+ * unless many keys share a hash code (see below). Adding a key puts it in its
+ * slot of the first table, evicting the occupant to its slot in the other
+ * table, and so on, for at most {@code MAX_KICKS} moves; a key still left over
+ * goes to the stash, and if the stash is full, everything is rehashed with new
+ * seeds (and, after repeated failures, into larger tables). The tables are
+ * kept at most half full, where such rehashes are rare.
+ *
+ * <p>
+ * Both hash functions are computed from {@code hashCode}, so keys with equal
+ * hash codes always compete for the same two slots, and no choice of seeds
+ * separates them. A key that finds the stash full and both of its slots held
+ * by keys with its hash code goes instead to an overflow bucket, as does any
+ * key still left over after {@code MAX_REBUILDS} rehashes. The overflow
+ * bucket is an ordinary {@code Map} with no bound on its size, searched only
+ * when it is not empty, so every set of distinct keys can be added.
+ *
+ * @param <K> type of {@code Map} domain (key) entries
+ * @param <V> type of {@code Map} range (associated value) entries
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * SLOT1(
+ *   x: K,
+ *   n: integer
+ *  ): integer is
+ *  [$this.first.spread(x.hashCode())] mod n
+ *
+ * SLOT2(
+ *   x: K,
+ *   n: integer
+ *  ): integer is
+ *  n + [$this.second.spread(x.hashCode())] mod n
+ *                  </pre>
+ *
+ * @convention
+ *
+ *             <pre>
+ * [$this.capacity is a power of 2]  and
+ * |$this.keys| = |$this.values| = 2 * $this.capacity + STASH_SIZE  and
+ * 0 < $this.minCapacity <= $this.capacity  and
+ * [number of non-null entries in $this.keys] <= $this.capacity + STASH_SIZE  and
+ * 0 <= $this.stashSize <= STASH_SIZE  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|)
+ *   (($this.keys[i] = null  iff  $this.values[i] = null)  and
+ *    ($this.keys[i] /= null  implies
+ *       (i = SLOT1($this.keys[i], $this.capacity)  or
+ *        i = SLOT2($this.keys[i], $this.capacity)  or
+ *        2 * $this.capacity <= i < 2 * $this.capacity + $this.stashSize))  and
+ *    (2 * $this.capacity <= i < 2 * $this.capacity + $this.stashSize  iff
+ *       [i is at least 2 * $this.capacity and $this.keys[i] /= null]))  and
+ * $this.size = [number of non-null entries in $this.keys] +
+ *   |$this.overflow|  and
+ * [the non-null entries of $this.keys and DOMAIN($this.overflow) are
+ *  pairwise distinct]  and
+ * 0 <= $this.scanStart < 2 * $this.capacity
+ *             </pre>
+ *
+ * @correspondence
+ *
+ *                 <pre>
+ * this = {(x, y): (K, V)
+ *           where (there exists i: integer
+ *                    ($this.keys[i] = x  and  $this.values[i] = y))}  union
+ *        $this.overflow
+ *                 </pre>
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Map4Cuckoo<K, V> extends MapSecondary<K, V> {
+
+	/*
+	 * Private members --------------------------------------------------------
+	 */
+
+	/**
+	 * Default capacity (number of slots) of each table.
+	 */
+	private static final int DEFAULT_CAPACITY = 64;
+
+	/**
+	 * Largest capacity of each table.
+	 */
+	private static final int MAXIMUM_CAPACITY = 1 << 29;
+
+	/**
+	 * Number of entries the stash can hold.
+	 */
+	private static final int STASH_SIZE = 4;
+
+	/**
+	 * Maximum number of moves made to add one key before it goes to the stash.
+	 */
+	private static final int MAX_KICKS = 32;
+
+	/**
+	 * Number of rehashes with new seeds tried at one capacity before the tables
+	 * are doubled.
+	 */
+	private static final int REHASH_ATTEMPTS = 4;
+
+	/**
+	 * Number of rehashes after which entries that still find no slot go to the
+	 * overflow bucket.
+	 */
+	private static final int MAX_REBUILDS = 4 * REHASH_ATTEMPTS;
+
+	/**
+	 * The tables shrink once fewer than 1 / SHRINK_RATIO of their slots are
+	 * used.
+	 */
+	private static final int SHRINK_RATIO = 8;
+
+	/**
+	 * Keys: the first table, then the second, then the stash; null marks an
+	 * empty slot.
+	 */
+	private K[] keys;
+
+	/**
+	 * Values, indexed by slot (parallel to {@code keys}).
+	 */
+	private V[] values;
+
+	/**
+	 * Number of slots in each table.
+	 */
+	private int capacity;
+
+	/**
+	 * Hash function of the first table.
+	 */
+	private HashSpreader first;
+
+	/**
+	 * Hash function of the second table.
+	 */
+	private HashSpreader second;
+
+	/**
+	 * Number of entries in the stash.
+	 */
+	private int stashSize;
+
+	/**
+	 * Entries that could not be placed in the tables or the stash.
+	 */
+	private Map<K, V> overflow;
+
+	/**
+	 * Capacity below which the tables never shrink.
+	 */
+	private int minCapacity;
+
+	/**
+	 * Slot where {@code removeAny} starts looking for an entry in the tables.
+	 */
+	private int scanStart;
+
+	/**
+	 * Total size of abstract {@code this}.
+	 */
+	private int size;
+
+	/**
+	 * Creator of initial representation.
+	 *
+	 * @param capacity the number of slots of each table
+	 * @requires [capacity is a power of 2]
+	 * @ensures
+	 *
+	 *          <pre>
+	 * $this.capacity = capacity  and  $this.minCapacity = capacity  and
+	 * $this.size = 0  and  $this.stashSize = 0  and  $this.overflow = {}  and
+	 * [all entries of $this.keys and $this.values are null]
+	 *          </pre>
+	 */
+	private void createNewRep(int capacity) {
+		this.size = 0;
+		this.overflow = new Map1L<>();
+		this.minCapacity = capacity;
+		this.allocate(capacity);
+	}
+
+	/**
+	 * Replaces the tables and stash with empty ones, each table having
+	 * {@code capacity} slots, and chooses new hash functions.
+	 *
+	 * @param capacity the number of slots of each table
+	 * @requires [capacity is a power of 2]
+	 * @ensures
+	 *
+	 *          <pre>
+	 * $this.capacity = capacity  and  $this.stashSize = 0  and
+	 * [all entries of $this.keys and $this.values are null]
+	 *          </pre>
+	 */
+	@SuppressWarnings("unchecked")
+	private void allocate(int capacity) {
+		/*
+		 * With "new K[...]" in place of "new Object[...]" it does not compile; as
+		 * shown, it results in a warning about an unchecked cast, though it cannot
+		 * fail.
+		 */
+		this.keys = (K[]) new Object[2 * capacity + STASH_SIZE];
+		this.values = (V[]) new Object[2 * capacity + STASH_SIZE];
+		this.capacity = capacity;
+		this.first = HashSpreader.randomlySeeded();
+		this.second = HashSpreader.randomlySeeded();
+		this.stashSize = 0;
+		this.scanStart = 0;
+	}
+
+	/**
+	 * Returns the slot of {@code key} in the first table.
+	 *
+	 * @param key the key
+	 * @return SLOT1(key, $this.capacity)
+	 */
+	private int slot1(K key) {
+		return this.first.spread(key.hashCode()) & (this.capacity - 1);
+	}
+
+	/**
+	 * Returns the slot of {@code key} in the second table.
+	 *
+	 * @param key the key
+	 * @return SLOT2(key, $this.capacity)
+	 */
+	private int slot2(K key) {
+		return this.capacity + (this.second.spread(key.hashCode()) & (this.capacity - 1));
+	}
+
+	/**
+	 * Returns the slot holding {@code key}, or -1 if {@code key} is not in the
+	 * tables or the stash. Compares {@code key} with at most
+	 * {@code 2 + STASH_SIZE} entries.
+	 *
+	 * @param key the key
+	 * @return the slot of key, or -1
+	 * @ensures
+	 *
+	 *          <pre>
+	 * (locate = -1  and  [key is not in $this.keys])  or
+	 * $this.keys[locate] = key
+	 *          </pre>
+	 */
+	private int locate(K key) {
+		int slot = this.slot1(key);
+		if (!key.equals(this.keys[slot])) {
+			slot = this.slot2(key);
+			if (!key.equals(this.keys[slot])) {
+				slot = -1;
+				int stash = 2 * this.capacity;
+				for (int i = stash; slot < 0 && i < stash + this.stashSize; i++) {
+					if (key.equals(this.keys[i])) {
+						slot = i;
+					}
+				}
+			}
+		}
+		return slot;
+	}
+
+	/**
+	 * Puts {@code key} and {@code value} into the tables, moving other entries
+	 * between their two slots as needed, or else into the stash. If both fail,
+	 * the moves are undone and the entry is reported back.
+	 *
+	 * @param key   the key
+	 * @param value the value
+	 * @return null if the entry was added, or the entry (key, value) otherwise
+	 * @requires key is not in DOMAIN(this)
+	 * @ensures
+	 *
+	 *          <pre>
+	 * if place = null then
+	 *   this = #this union {(key, value)}
+	 * else
+	 *   this = #this
+	 *          </pre>
+	 */
+	private Map.Pair<K, V> place(K key, V value) {
+		K k = key;
+		V v = value;
+		int[] path = new int[MAX_KICKS];
+		int slot = this.slot1(k);
+		if (this.keys[slot] != null && this.keys[this.slot2(k)] == null) {
+			slot = this.slot2(k);
+		}
+		int kicks = 0;
+		while (k != null && kicks < MAX_KICKS) {
+			path[kicks] = slot;
+			K evictedKey = this.keys[slot];
+			V evictedValue = this.values[slot];
+			this.keys[slot] = k;
+			this.values[slot] = v;
+			k = evictedKey;
+			v = evictedValue;
+			if (k != null) {
+				// The evicted entry moves to its slot in the other table
+				if (slot < this.capacity) {
+					slot = this.slot2(k);
+				} else {
+					slot = this.slot1(k);
+				}
+			}
+			kicks++;
+		}
+		Map.Pair<K, V> homeless = null;
+		if (k != null) {
+			if (this.stashSize < STASH_SIZE) {
+				this.keys[2 * this.capacity + this.stashSize] = k;
+				this.values[2 * this.capacity + this.stashSize] = v;
+				this.stashSize++;
+			} else {
+				// Undo the moves in reverse order, which leaves (key, value) in hand
+				for (int j = kicks - 1; j >= 0; j--) {
+					K movedKey = this.keys[path[j]];
+					V movedValue = this.values[path[j]];
+					this.keys[path[j]] = k;
+					this.values[path[j]] = v;
+					k = movedKey;
+					v = movedValue;
+				}
+				homeless = new HashTables.SimplePair<>(k, v);
+			}
+		}
+		return homeless;
+	}
+
+	/**
+	 * Reports whether both slots of {@code key} hold keys with the same hash
+	 * code as {@code key}. Those keys can only ever be in these two slots, so
+	 * no rehash can make room there for {@code key}.
+	 *
+	 * @param key the key
+	 * @return true iff the keys in SLOT1(key) and SLOT2(key) have key's hash
+	 *         code
+	 */
+	private boolean slotsTakenByCollisions(K key) {
+		int h = key.hashCode();
+		K k1 = this.keys[this.slot1(key)];
+		K k2 = this.keys[this.slot2(key)];
+		return k1 != null && k1.hashCode() == h && k2 != null && k2.hashCode() == h;
+	}
+
+	/**
+	 * Moves every entry of the tables and stash, and {@code extra} if it is not
+	 * null, into new tables of at least {@code newCapacity} slots each, choosing
+	 * new hash functions until every entry finds a slot. After
+	 * {@code MAX_REBUILDS} attempts, entries that still find no slot go to the
+	 * overflow bucket.
+	 *
+	 * @param newCapacity the minimum number of slots of each new table
+	 * @param extra       an entry to be added, or null
+	 * @requires
+	 *
+	 *           <pre>
+	 * [newCapacity is a power of 2]  and
+	 * [number of non-null entries in $this.keys] <= newCapacity + STASH_SIZE  and
+	 * (extra = null  or  extra.key() is not in DOMAIN(this))
+	 *           </pre>
+	 *
+	 * @ensures
+	 *
+	 *          <pre>
+	 * $this.capacity >= newCapacity  and
+	 * if extra = null then this = #this
+	 * else this = #this union {(extra.key(), extra.value())}
+	 *          </pre>
+	 */
+	private void rebuild(int newCapacity, Map.Pair<K, V> extra) {
+		K[] oldKeys = this.keys;
+		V[] oldValues = this.values;
+		int cap = newCapacity;
+		int attempts = 0;
+		boolean placed = false;
+		while (!placed) {
+			this.allocate(cap);
+			attempts++;
+			// On the last attempt, whatever does not fit overflows instead
+			boolean last = attempts == MAX_REBUILDS;
+			placed = extra == null || this.placeOrOverflow(extra.key(), extra.value(), last);
+			for (int i = 0; placed && i < oldKeys.length; i++) {
+				if (oldKeys[i] != null) {
+					placed = this.placeOrOverflow(oldKeys[i], oldValues[i], last);
+				}
+			}
+			if (attempts % REHASH_ATTEMPTS == 0 && cap < MAXIMUM_CAPACITY) {
+				cap *= 2;
+			}
+		}
+	}
+
+	/**
+	 * Places {@code key} and {@code value} as {@code place} does, and if that
+	 * fails and {@code overflowIfHomeless}, adds them to the overflow bucket
+	 * instead.
+	 *
+	 * @param key                the key
+	 * @param value              the value
+	 * @param overflowIfHomeless whether an entry that finds no slot overflows
+	 * @return true iff (key, value) was added
+	 * @requires key is not in DOMAIN(this)
+	 * @ensures
+	 *
+	 *          <pre>
+	 * if placeOrOverflow then
+	 *   this = #this union {(key, value)}
+	 * else
+	 *   this = #this
+	 *          </pre>
+	 */
+	private boolean placeOrOverflow(K key, V value, boolean overflowIfHomeless) {
+		Map.Pair<K, V> homeless = this.place(key, value);
+		if (homeless != null && overflowIfHomeless) {
+			this.overflow.add(homeless.key(), homeless.value());
+			homeless = null;
+		}
+		return homeless == null;
+	}
+
+	/**
+	 * Empties slot {@code slot}, keeping the stash contiguous, and shrinks the
+	 * tables if they become sparse.
+	 *
+	 * @param slot the slot to empty
+	 * @requires $this.keys[slot] /= null
+	 * @ensures this = #this \ {(#$this.keys[slot], #$this.values[slot])}
+	 */
+	private void deleteSlot(int slot) {
+		int lastStash = 2 * this.capacity + this.stashSize - 1;
+		if (slot >= 2 * this.capacity) {
+			this.keys[slot] = this.keys[lastStash];
+			this.values[slot] = this.values[lastStash];
+			this.keys[lastStash] = null;
+			this.values[lastStash] = null;
+			this.stashSize--;
+		} else {
+			this.keys[slot] = null;
+			this.values[slot] = null;
+		}
+		this.size--;
+
+		if (this.capacity > this.minCapacity && SHRINK_RATIO * this.size < this.capacity) {
+			this.rebuild(this.capacity / 2, null);
+		}
+	}
+
+	/*
+	 * Constructors -----------------------------------------------------------
+	 */
+
+	/**
+	 * No-argument constructor.
+	 */
+	public Map4Cuckoo() {
+
+		this.createNewRep(DEFAULT_CAPACITY);
+
+	}
+
+	/**
+	 * Constructor resulting in tables of at least {@code capacity} slots each.
+	 *
+	 * @param capacity minimum number of slots in each table
+	 * @requires 0 < capacity <= 2^29
+	 * @ensures this = {}
+	 */
+	public Map4Cuckoo(int capacity) {
+		assert capacity > 0 : "Violation of: capacity > 0";
+		assert capacity <= MAXIMUM_CAPACITY : "Violation of: capacity <= 2^29";
+
+		this.createNewRep(HashTables.powerOfTwoAtLeast(capacity));
+	}
+
+	/*
+	 * Standard methods -------------------------------------------------------
+	 */
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public final Map<K, V> newInstance() {
+		try {
+			return this.getClass().getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError("Cannot construct object of type " + this.getClass());
+		}
+	}
+
+	@Override
+	public final void clear() {
+		this.createNewRep(DEFAULT_CAPACITY);
+	}
+
+	@Override
+	public final void transferFrom(Map<K, V> source) {
+		assert source != null : "Violation of: source is not null";
+		assert source != this : "Violation of: source is not this";
+		assert source instanceof Map4Cuckoo<?, ?> : "" + "Violation of: source is of dynamic type Map4Cuckoo<?,?>";
+		/*
+		 * This cast cannot fail since the assert above would have stopped execution in
+		 * that case: source must be of dynamic type Map4Cuckoo<?,?>, and the ?,? must
+		 * be K,V or the call would not have compiled.
+		 */
+		Map4Cuckoo<K, V> localSource = (Map4Cuckoo<K, V>) source;
+		this.keys = localSource.keys;
+		this.values = localSource.values;
+		this.capacity = localSource.capacity;
+		this.first = localSource.first;
+		this.second = localSource.second;
+		this.stashSize = localSource.stashSize;
+		this.overflow = localSource.overflow;
+		this.minCapacity = localSource.minCapacity;
+		this.scanStart = localSource.scanStart;
+		this.size = localSource.size;
+		localSource.createNewRep(DEFAULT_CAPACITY);
+	}
+
+	/*
+	 * Kernel methods ---------------------------------------------------------
+	 */
+
+	@Override
+	public final void add(K key, V value) {
+		assert key != null : "Violation of: key is not null";
+		assert value != null : "Violation of: value is not null";
+		assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+		// Keep the tables at most half full, where placing rarely fails
+		int inTables = this.size - this.overflow.size();
+		if (inTables + 1 > this.capacity && this.capacity < MAXIMUM_CAPACITY) {
+			this.rebuild(2 * this.capacity, new HashTables.SimplePair<>(key, value));
+		} else {
+			Map.Pair<K, V> homeless = this.place(key, value);
+			if (homeless != null) {
+				if (this.slotsTakenByCollisions(key)) {
+					// A rehash cannot help: the stash is full and so are key's slots
+					this.overflow.add(key, value);
+				} else {
+					this.rebuild(this.capacity, homeless);
+				}
+			}
+		}
+		this.size++;
+	}
+
+	@Override
+	public final Pair<K, V> remove(K key) {
+		assert key != null : "Violation of: key is not null";
+		assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+		int slot = this.locate(key);
+		Map.Pair<K, V> removedPair;
+		if (slot >= 0) {
+			removedPair = new HashTables.SimplePair<>(this.keys[slot], this.values[slot]);
+			this.deleteSlot(slot);
+		} else {
+			removedPair = this.overflow.remove(key);
+			this.size--;
+		}
+		return removedPair;
+	}
+
+	@Override
+	public final Pair<K, V> removeAny() {
+		assert this.size() > 0 : "Violation of: this /= empty_set";
+
+		Map.Pair<K, V> removedPair;
+		if (this.overflow.size() > 0) {
+			removedPair = this.overflow.removeAny();
+			this.size--;
+		} else {
+			int slot;
+			if (this.stashSize > 0) {
+				slot = 2 * this.capacity + this.stashSize - 1;
+			} else {
+				// Resume scanning where the last removeAny stopped (see Map4a.removeAny)
+				int mask = 2 * this.capacity - 1;
+				slot = this.scanStart;
+				while (this.keys[slot] == null) {
+					slot = (slot + 1) & mask;
+				}
+				this.scanStart = slot;
+			}
+			removedPair = new HashTables.SimplePair<>(this.keys[slot], this.values[slot]);
+			this.deleteSlot(slot);
+		}
+		return removedPair;
+	}
+
+	@Override
+	public final V value(K key) {
+		assert key != null : "Violation of: key is not null";
+		assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+		int slot = this.locate(key);
+		V result;
+		if (slot >= 0) {
+			result = this.values[slot];
+		} else {
+			result = this.overflow.value(key);
+		}
+		return result;
+	}
+
+	@Override
+	public final boolean hasKey(K key) {
+		assert key != null : "Violation of: key is not null";
+
+		return this.locate(key) >= 0 || (this.overflow.size() > 0 && this.overflow.hasKey(key));
+	}
+
+	@Override
+	public final int size() {
+
+		return this.size;
+	}
+
+	@Override
+	public final Iterator<Pair<K, V>> iterator() {
+		return new Map4CuckooIterator();
+	}
+
+	/**
+	 * Implementation of {@code Iterator} interface for {@code Map4Cuckoo}.
+	 */
+	private final class Map4CuckooIterator implements Iterator<Pair<K, V>> {
+
+		/**
+		 * Number of elements seen already (i.e., |~this.seen|).
+		 */
+		private int numberSeen;
+
+		/**
+		 * Slot from which the next element will come (or before it).
+		 */
+		private int currentSlot;
+
+		/**
+		 * Iterator over the overflow bucket, once the slots are exhausted.
+		 */
+		private Iterator<Pair<K, V>> overflowIterator;
+
+		/**
+		 * No-argument constructor.
+		 */
+		Map4CuckooIterator() {
+			this.numberSeen = 0;
+			this.currentSlot = 0;
+			this.overflowIterator = null;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.numberSeen < Map4Cuckoo.this.size;
+		}
+
+		@Override
+		public Pair<K, V> next() {
+			assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+			if (!this.hasNext()) {
+				/*
+				 * Exception is supposed to be thrown in this case, but with assertion-checking
+				 * enabled it cannot happen because of assert above.
+				 */
+				throw new NoSuchElementException();
+			}
+			this.numberSeen++;
+			Pair<K, V> next;
+			if (this.numberSeen <= Map4Cuckoo.this.size - Map4Cuckoo.this.overflow.size()) {
+				while (Map4Cuckoo.this.keys[this.currentSlot] == null) {
+					this.currentSlot++;
+				}
+				next = new HashTables.SimplePair<>(Map4Cuckoo.this.keys[this.currentSlot],
+						Map4Cuckoo.this.values[this.currentSlot]);
+				this.currentSlot++;
+			} else {
+				if (this.overflowIterator == null) {
+					this.overflowIterator = Map4Cuckoo.this.overflow.iterator();
+				}
+				next = this.overflowIterator.next();
+			}
+			return next;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("remove operation not supported");
+		}
+
+	}
+
+}
@@ -0,0 +1,192 @@
+import java.util.Arrays;
+import java.util.Random;
+
+import components.map.Map;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Compares the latency distribution of successful {@code value} lookups in
+ * {@code Map4} and {@code Map4Cuckoo}.
+ *
+ * <p>
+ * The keys are the distinct words of the novels bundled with the tag cloud
+ * generator. After warming up, the lookups are timed in small batches in a
+ * random order, and the report gives the median, 99th and 99.9th percentile,
+ * and maximum time per lookup, together with the number of entries the worst
+ * lookup has to compare with (the longest {@code Map4} bucket, and
+ * {@code 2 + STASH_SIZE} for {@code Map4Cuckoo}). Run without assertion
+ * checking, which adds a {@code hasKey} to every {@code value}.
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public final class Map4CuckooBenchmark {
+
+	/**
+	 * Private constructor so this utility class cannot be instantiated.
+	 */
+	private Map4CuckooBenchmark() {
+	}
+
+	/**
+	 * Input files used when no command-line arguments are given.
+	 */
+	private static final String[] DEFAULT_FILES = { "../TagCloudGenerator/data/importance.txt",
+			"../TagCloudGenerator/data/doriangray.txt", "../TagCloudGenerator/data/tomsawyer.txt",
+			"../TagCloudGenerator/data/lesmiz.txt" };
+
+	/**
+	 * Number of lookups timed together.
+	 */
+	private static final int BATCH = 16;
+
+	/**
+	 * Number of passes over the keys used to warm up.
+	 */
+	private static final int WARM_UP_ROUNDS = 5;
+
+	/**
+	 * Number of timed passes over the keys.
+	 */
+	private static final int TIMED_ROUNDS = 20;
+
+	/**
+	 * Worst-case number of entries compared by a {@code Map4Cuckoo} lookup.
+	 */
+	private static final int CUCKOO_WORST_CASE = 6;
+
+	/**
+	 * Keeps lookup results observable so they are not optimized away.
+	 */
+	private static long sink;
+
+	/**
+	 * Returns the distinct words (maximal runs of letters and apostrophes,
+	 * lowercased) in the files named in {@code fileNames}.
+	 *
+	 * @param fileNames the names of the files to read
+	 * @return the distinct words in the files
+	 */
+	private static String[] words(String[] fileNames) {
+		Map4<String, Integer> words = new Map4<>();
+		for (String fileName : fileNames) {
+			SimpleReader in = new SimpleReader1L(fileName);
+			while (!in.atEOS()) {
+				for (String word : in.nextLine().toLowerCase().split("[^a-z']+")) {
+					if (word.length() > 0) {
+						words.putIfAbsent(word, words.size());
+					}
+				}
+			}
+			in.close();
+		}
+		String[] keys = new String[words.size()];
+		for (Map.Pair<String, Integer> p : words) {
+			keys[p.value()] = p.key();
+		}
+		return keys;
+	}
+
+	/**
+	 * Times lookups of {@code keys} (in batches of {@code BATCH}) in {@code map}
+	 * and returns the sorted times per lookup in nanoseconds.
+	 *
+	 * @param map  the map
+	 * @param keys the keys, all in DOMAIN(map)
+	 * @param rnd  source of the random lookup order
+	 * @return the sorted times per lookup, one per batch
+	 */
+	private static double[] time(Map<String, Integer> map, String[] keys, Random rnd) {
+		int batches = keys.length / BATCH;
+		double[] times = new double[batches * TIMED_ROUNDS];
+		String[] order = keys.clone();
+		for (int round = 0; round < WARM_UP_ROUNDS + TIMED_ROUNDS; round++) {
+			// Shuffle so that lookups do not follow the insertion order
+			for (int i = order.length - 1; i > 0; i--) {
+				int j = rnd.nextInt(i + 1);
+				String tmp = order[i];
+				order[i] = order[j];
+				order[j] = tmp;
+			}
+			for (int b = 0; b < batches; b++) {
+				long start = System.nanoTime();
+				for (int i = b * BATCH; i < (b + 1) * BATCH; i++) {
+					sink += map.value(order[i]);
+				}
+				long elapsed = System.nanoTime() - start;
+				if (round >= WARM_UP_ROUNDS) {
+					times[(round - WARM_UP_ROUNDS) * batches + b] = (double) elapsed / BATCH;
+				}
+			}
+		}
+		Arrays.sort(times);
+		return times;
+	}
+
+	/**
+	 * Returns the {@code q} quantile of the sorted array {@code sorted}.
+	 *
+	 * @param sorted the sorted values
+	 * @param q      the quantile, between 0 and 1
+	 * @return the quantile
+	 * @requires |sorted| > 0
+	 */
+	private static double quantile(double[] sorted, double q) {
+		return sorted[(int) Math.min(sorted.length - 1, Math.floor(q * sorted.length))];
+	}
+
+	/**
+	 * Outputs one line of the report.
+	 *
+	 * @param out       the output stream
+	 * @param name      name of the map
+	 * @param worstCase number of entries compared by the worst lookup
+	 * @param times     the sorted times per lookup
+	 * @updates out
+	 */
+	private static void report(SimpleWriter out, String name, int worstCase, double[] times) {
+		final double p50 = 0.5;
+		final double p99 = 0.99;
+		final double p999 = 0.999;
+		out.println(String.format("%-11s %6d %8.1f %8.1f %8.1f %9.1f", name, worstCase, quantile(times, p50),
+				quantile(times, p99), quantile(times, p999), times[times.length - 1]));
+	}
+
+	/**
+	 * Main method.
+	 *
+	 * @param args the names of the text files to read (the bundled novels if
+	 *             none)
+	 */
+	public static void main(String[] args) {
+		SimpleWriter out = new SimpleWriter1L();
+		String[] files = DEFAULT_FILES;
+		if (args.length > 0) {
+			files = args;
+		}
+		String[] keys = words(files);
+
+		Map4<String, Integer> chained = new Map4<>();
+		Map4Cuckoo<String, Integer> cuckoo = new Map4Cuckoo<>();
+		for (int i = 0; i < keys.length; i++) {
+			chained.add(keys[i], i);
+			cuckoo.add(keys[i], i);
+		}
+
+		Random rnd = new Random(1);
+		out.println(keys.length + " keys; nanoseconds per value() lookup, timed in batches of " + BATCH);
+		out.println(String.format("%-11s %6s %8s %8s %8s %9s", "map", "worst", "p50", "p99", "p99.9", "max"));
+		// Alternate the maps so that neither always runs on a warmer JIT
+		for (int trial = 0; trial < 2; trial++) {
+			report(out, "Map4", chained.statistics().maxBucketLength(), time(chained, keys, rnd));
+			report(out, "Map4Cuckoo", CUCKOO_WORST_CASE, time(cuckoo, keys, rnd));
+		}
+		out.println("(checksum " + sink + ")");
+
+		out.close();
+	}
+
+}
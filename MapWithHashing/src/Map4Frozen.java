@@ -0,0 +1,487 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+
+/**
+ * Immutable, read-optimized copy of a {@code Map}, as returned by
+ * {@code Map4.freeze()}, that finds a key with a single probe.
+ *
+ * <p>
+ * The keys and values are kept in two arrays, placed by a perfect hash
+ * function built with the "hash and displace" method: the keys are first
+ * split into small groups by one hash function, and then, largest group
+ * first, each group is given the smallest displacement {@code d} such that
+ * the slot function {@code SLOT(h, d)} sends every key of the group to a
+ * different free slot. A lookup reads the displacement of the key's group and
+ * then compares the key with the one entry in its slot. The arrays are about
+ * 25% larger than the number of entries, and there are no bucket objects.
+ *
+ * <p>
+ * Keys with equal hash codes cannot be separated by any function of the hash
+ * code, so all but one key of each such set is kept in a small overflow list
+ * that is searched only when the slot holds a different key with the same
+ * hash code.
+ *
+ * <p>
+ * A {@code Map4Frozen} never changes after construction, so it may be shared
+ * between threads without locking.
+ *
+ * @param <K> type of domain (key) entries
+ * @param <V> type of range (associated value) entries
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public final class Map4Frozen<K, V> implements Iterable<Map.Pair<K, V>> {
+
+	/*
+	 * Private members --------------------------------------------------------
+	 */
+
+	/**
+	 * Target ratio of entries to slots.
+	 */
+	private static final double LOAD = 0.8;
+
+	/**
+	 * Average number of keys per group.
+	 */
+	private static final int GROUP_SIZE = 4;
+
+	/**
+	 * Seed of the hash function that assigns keys to groups.
+	 */
+	private static final int GROUP_SEED = 0x2545F491;
+
+	/**
+	 * Multiplier that turns a displacement into a seed of the slot function.
+	 */
+	private static final int DISPLACEMENT_STEP = 0x9E3779B9;
+
+	/**
+	 * Largest displacement tried for a group before the table is enlarged.
+	 */
+	private static final int MAX_DISPLACEMENT = 1 << 16;
+
+	/**
+	 * Keys, indexed by slot; null marks an empty slot.
+	 */
+	private final K[] keys;
+
+	/**
+	 * Values, indexed by slot (parallel to {@code keys}).
+	 */
+	private final V[] values;
+
+	/**
+	 * Displacement of each group.
+	 */
+	private final int[] displacements;
+
+	/**
+	 * Keys whose hash code equals that of a key in {@code keys}.
+	 */
+	private final K[] overflowKeys;
+
+	/**
+	 * Values of the keys in {@code overflowKeys}.
+	 */
+	private final V[] overflowValues;
+
+	/**
+	 * Number of entries.
+	 */
+	private final int size;
+
+	/**
+	 * Returns {@code x} reduced to the range [0, n), treating {@code x} as
+	 * unsigned.
+	 *
+	 * @param x the value to reduce
+	 * @param n the size of the range
+	 * @return x mod n, with x unsigned
+	 * @requires n > 0
+	 */
+	private static int reduce(int x, int n) {
+		return (int) ((x & 0xFFFFFFFFL) % n);
+	}
+
+	/**
+	 * Returns the group of a key with hash code {@code h}.
+	 *
+	 * @param h      the hash code
+	 * @param groups the number of groups
+	 * @return the group
+	 */
+	private static int group(int h, int groups) {
+		return reduce(HashSpreader.murmurFinalize(h ^ GROUP_SEED), groups);
+	}
+
+	/**
+	 * Returns the slot of a key with hash code {@code h} under displacement
+	 * {@code d}.
+	 *
+	 * @param h     the hash code
+	 * @param d     the displacement
+	 * @param slots the number of slots
+	 * @return SLOT(h, d)
+	 */
+	private static int slot(int h, int d, int slots) {
+		return reduce(HashSpreader.murmurFinalize(h ^ (d * DISPLACEMENT_STEP)), slots);
+	}
+
+	/**
+	 * Constructor from the entries of {@code map}.
+	 *
+	 * @param map the map to copy
+	 * @requires map is not null
+	 * @ensures this = map
+	 */
+	@SuppressWarnings("unchecked")
+	Map4Frozen(Map<K, V> map) {
+		int n = map.size();
+		Object[] inKeys = new Object[n];
+		Object[] inValues = new Object[n];
+		int[] hashes = new int[n];
+		int i = 0;
+		for (Map.Pair<K, V> p : map) {
+			inKeys[i] = p.key();
+			inValues[i] = p.value();
+			hashes[i] = p.key().hashCode();
+			i++;
+		}
+
+		// Sort entry indices by hash code so that equal hash codes are adjacent
+		int[] byHash = sortByHash(hashes);
+		int[] unique = new int[n];
+		int uniqueCount = 0;
+		int[] overflow = new int[n];
+		int overflowCount = 0;
+		for (i = 0; i < n; i++) {
+			if (i > 0 && hashes[byHash[i]] == hashes[byHash[i - 1]]) {
+				overflow[overflowCount] = byHash[i];
+				overflowCount++;
+			} else {
+				unique[uniqueCount] = byHash[i];
+				uniqueCount++;
+			}
+		}
+
+		int groups = Math.max(1, (uniqueCount + GROUP_SIZE - 1) / GROUP_SIZE);
+		int slots = Math.max(1, (int) Math.ceil(uniqueCount / LOAD));
+		int[] slotOf = new int[n];
+		int[] chosen = null;
+		while (chosen == null) {
+			chosen = displace(unique, uniqueCount, hashes, groups, slots, slotOf);
+			if (chosen == null) {
+				slots += slots / 4 + 1;
+			}
+		}
+
+		this.keys = (K[]) new Object[slots];
+		this.values = (V[]) new Object[slots];
+		for (i = 0; i < uniqueCount; i++) {
+			int e = unique[i];
+			this.keys[slotOf[e]] = (K) inKeys[e];
+			this.values[slotOf[e]] = (V) inValues[e];
+		}
+		this.displacements = chosen;
+		this.overflowKeys = (K[]) new Object[overflowCount];
+		this.overflowValues = (V[]) new Object[overflowCount];
+		for (i = 0; i < overflowCount; i++) {
+			this.overflowKeys[i] = (K) inKeys[overflow[i]];
+			this.overflowValues[i] = (V) inValues[overflow[i]];
+		}
+		this.size = n;
+	}
+
+	/**
+	 * Returns the indices of {@code hashes} in increasing order of their
+	 * entries, compared as unsigned integers. Uses a radix sort, one byte at a
+	 * time, so takes time linear in |hashes|.
+	 *
+	 * @param hashes the hash codes
+	 * @return the indices of hashes, sorted by hash code
+	 * @ensures
+	 *
+	 *          <pre>
+	 * [sortByHash is a permutation of 0, 1, ..., |hashes| - 1]  and
+	 * [hashes[sortByHash[i]] <= hashes[sortByHash[i + 1]] as unsigned
+	 *  integers, for all 0 <= i < |hashes| - 1]
+	 *          </pre>
+	 */
+	private static int[] sortByHash(int[] hashes) {
+		final int radix = 256;
+		int n = hashes.length;
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		int[] buffer = new int[n];
+		int[] starts = new int[radix];
+		for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+			Arrays.fill(starts, 0);
+			for (int i = 0; i < n; i++) {
+				starts[(hashes[i] >>> shift) & (radix - 1)]++;
+			}
+			int sum = 0;
+			for (int b = 0; b < radix; b++) {
+				int c = starts[b];
+				starts[b] = sum;
+				sum += c;
+			}
+			// A stable pass keeps the order of the lower bytes within each digit
+			for (int i = 0; i < n; i++) {
+				int e = order[i];
+				int b = (hashes[e] >>> shift) & (radix - 1);
+				buffer[starts[b]] = e;
+				starts[b]++;
+			}
+			int[] t = order;
+			order = buffer;
+			buffer = t;
+		}
+		return order;
+	}
+
+	/**
+	 * Chooses a displacement for every group such that the entries
+	 * {@code entries[0, count)} (which have distinct hash codes) go to distinct
+	 * slots, and records each entry's slot in {@code slotOf}.
+	 *
+	 * @param entries the indices of the entries to place
+	 * @param count   the number of entries to place
+	 * @param hashes  the hash codes of the entries, by index
+	 * @param groups  the number of groups
+	 * @param slots   the number of slots
+	 * @param slotOf  the slot of each entry, by index
+	 * @return the displacement of each group, or null if some group found no
+	 *         displacement up to {@code MAX_DISPLACEMENT}
+	 * @updates slotOf
+	 */
+	private static int[] displace(int[] entries, int count, int[] hashes, int groups, int slots, int[] slotOf) {
+		// Bucket the entries by group (a counting sort)
+		int[] starts = new int[groups + 1];
+		for (int i = 0; i < count; i++) {
+			starts[group(hashes[entries[i]], groups) + 1]++;
+		}
+		for (int g = 0; g < groups; g++) {
+			starts[g + 1] += starts[g];
+		}
+		int[] members = new int[count];
+		int[] next = Arrays.copyOf(starts, groups);
+		for (int i = 0; i < count; i++) {
+			int g = group(hashes[entries[i]], groups);
+			members[next[g]] = entries[i];
+			next[g]++;
+		}
+
+		// Place the largest groups first, while most slots are still free;
+		// groups have at most count members, so they are ordered by another
+		// counting sort
+		int[] bySize = new int[count + 2];
+		for (int g = 0; g < groups; g++) {
+			bySize[count - (starts[g + 1] - starts[g]) + 1]++;
+		}
+		for (int k = 0; k <= count; k++) {
+			bySize[k + 1] += bySize[k];
+		}
+		int[] order = new int[groups];
+		for (int g = 0; g < groups; g++) {
+			int k = count - (starts[g + 1] - starts[g]);
+			order[bySize[k]] = g;
+			bySize[k]++;
+		}
+
+		int[] displacements = new int[groups];
+		boolean[] taken = new boolean[slots];
+		boolean ok = true;
+		for (int k = 0; ok && k < groups; k++) {
+			int g = order[k];
+			int d = 0;
+			boolean placed = false;
+			while (!placed && d < MAX_DISPLACEMENT) {
+				placed = true;
+				int j = starts[g];
+				while (placed && j < starts[g + 1]) {
+					int s = slot(hashes[members[j]], d, slots);
+					if (taken[s]) {
+						placed = false;
+					} else {
+						taken[s] = true;
+						slotOf[members[j]] = s;
+						j++;
+					}
+				}
+				if (!placed) {
+					// Release the slots taken by this attempt
+					for (int u = starts[g]; u < j; u++) {
+						taken[slotOf[members[u]]] = false;
+					}
+					d++;
+				}
+			}
+			displacements[g] = d;
+			ok = placed;
+		}
+		int[] result = null;
+		if (ok) {
+			result = displacements;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the slot of {@code key} in {@code keys}, whether or not the key
+	 * is there.
+	 *
+	 * @param h the hash code of the key
+	 * @return the slot
+	 */
+	private int slotFor(int h) {
+		int d = this.displacements[group(h, this.displacements.length)];
+		return slot(h, d, this.keys.length);
+	}
+
+	/**
+	 * Returns the index in {@code overflowKeys} of {@code key}, or -1 if it is
+	 * not there.
+	 *
+	 * @param key the key
+	 * @return the index of key in overflowKeys, or -1
+	 */
+	private int overflowIndex(K key) {
+		int result = -1;
+		for (int i = 0; result < 0 && i < this.overflowKeys.length; i++) {
+			if (this.overflowKeys[i].equals(key)) {
+				result = i;
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Queries ----------------------------------------------------------------
+	 */
+
+	/**
+	 * Reports the number of entries.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Reports whether {@code key} is in {@code this}.
+	 *
+	 * @param key the key
+	 * @return true iff key is in DOMAIN(this)
+	 * @requires key is not null
+	 */
+	public boolean hasKey(K key) {
+		assert key != null : "Violation of: key is not null";
+
+		int h = key.hashCode();
+		K found = this.keys[this.slotFor(h)];
+		boolean result = found != null && found.equals(key);
+		if (!result && found != null && found.hashCode() == h) {
+			result = this.overflowIndex(key) >= 0;
+		}
+		return result;
+	}
+
+	/**
+	 * Reports the value associated with {@code key}.
+	 *
+	 * @param key the key
+	 * @return the value associated with key
+	 * @requires key is not null and key is in DOMAIN(this)
+	 * @ensures value = this(key)
+	 */
+	public V value(K key) {
+		assert key != null : "Violation of: key is not null";
+		assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+		int s = this.slotFor(key.hashCode());
+		V result;
+		if (this.keys[s].equals(key)) {
+			result = this.values[s];
+		} else {
+			result = this.overflowValues[this.overflowIndex(key)];
+		}
+		return result;
+	}
+
+	@Override
+	public Iterator<Map.Pair<K, V>> iterator() {
+		return new Map4FrozenIterator();
+	}
+
+	/**
+	 * Implementation of {@code Iterator} interface for {@code Map4Frozen}.
+	 */
+	private final class Map4FrozenIterator implements Iterator<Map.Pair<K, V>> {
+
+		/**
+		 * Number of elements seen already (i.e., |~this.seen|).
+		 */
+		private int numberSeen;
+
+		/**
+		 * Slot (or, past the slots, overflow position) from which the next
+		 * element will come (or before it).
+		 */
+		private int current;
+
+		/**
+		 * No-argument constructor.
+		 */
+		Map4FrozenIterator() {
+			this.numberSeen = 0;
+			this.current = 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.numberSeen < Map4Frozen.this.size;
+		}
+
+		@Override
+		public Map.Pair<K, V> next() {
+			assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+			if (!this.hasNext()) {
+				/*
+				 * Exception is supposed to be thrown in this case, but with assertion-checking
+				 * enabled it cannot happen because of assert above.
+				 */
+				throw new NoSuchElementException();
+			}
+			this.numberSeen++;
+			int slots = Map4Frozen.this.keys.length;
+			while (this.current < slots && Map4Frozen.this.keys[this.current] == null) {
+				this.current++;
+			}
+			Map.Pair<K, V> next;
+			if (this.current < slots) {
+				next = new HashTables.SimplePair<>(Map4Frozen.this.keys[this.current],
+						Map4Frozen.this.values[this.current]);
+			} else {
+				int i = this.current - slots;
+				next = new HashTables.SimplePair<>(Map4Frozen.this.overflowKeys[i], Map4Frozen.this.overflowValues[i]);
+			}
+			this.current++;
+			return next;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("remove operation not supported");
+		}
+
+	}
+
+}
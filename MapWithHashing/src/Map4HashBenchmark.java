@@ -0,0 +1,167 @@
+import components.map.Map;
+import components.simplereader.SimpleReader;
+import components.simplereader.SimpleReader1L;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Reports how evenly the keys of a {@code Map4} would be spread over its
+ * buckets for each combination of {@code HashSpreader} and table-size policy
+ * (prime sizes reduced with mod, or power-of-2 sizes reduced by masking).
+ *
+ * <p>
+ * The keys are the distinct words of the novels bundled with the tag cloud
+ * generator, plus a set of strided {@code Integer}s (multiples of 1024), which
+ * are a worst case for masking without spreading. For each key set and
+ * configuration, the keys are added to a {@code Map4} with the default initial
+ * size and load factor and then each looked up once, and the report gives the
+ * map's {@code statistics()}: the fraction of empty buckets, the longest bucket,
+ * the 99th percentile of bucket length, and the average number of entries in
+ * the bucket searched by a successful lookup (1.0 is ideal).
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public final class Map4HashBenchmark {
+
+	/**
+	 * Private constructor so this utility class cannot be instantiated.
+	 */
+	private Map4HashBenchmark() {
+	}
+
+	/**
+	 * Input files used when no command-line arguments are given.
+	 */
+	private static final String[] DEFAULT_FILES = { "../TagCloudGenerator/data/importance.txt",
+			"../TagCloudGenerator/data/doriangray.txt", "../TagCloudGenerator/data/tomsawyer.txt",
+			"../TagCloudGenerator/data/lesmiz.txt" };
+
+	/**
+	 * Number of strided {@code Integer} keys.
+	 */
+	private static final int STRIDED_KEYS = 10000;
+
+	/**
+	 * Stride between consecutive {@code Integer} keys.
+	 */
+	private static final int STRIDE = 1024;
+
+	/**
+	 * Initial table size matching {@code Map4}'s default.
+	 */
+	private static final int INITIAL_SIZE = 101;
+
+	/**
+	 * Load factor matching {@code Map4}'s default.
+	 */
+	private static final double LOAD_FACTOR = 0.75;
+
+	/**
+	 * Names of the spreaders compared.
+	 */
+	private static final String[] SPREADER_NAMES = { "identity", "murmur", "seeded" };
+
+	/**
+	 * Spreaders compared (parallel to {@code SPREADER_NAMES}).
+	 */
+	private static final HashSpreader[] SPREADERS = { HashSpreader.IDENTITY, HashSpreader.MURMUR,
+			HashSpreader.randomlySeeded() };
+
+	/**
+	 * Returns the distinct words (maximal runs of letters and apostrophes,
+	 * lowercased) in the file named {@code fileName}.
+	 *
+	 * @param fileName the name of the file to read
+	 * @return the distinct words in the file
+	 */
+	private static Object[] words(String fileName) {
+		Map4<String, Integer> words = new Map4<>();
+		SimpleReader in = new SimpleReader1L(fileName);
+		while (!in.atEOS()) {
+			for (String word : in.nextLine().toLowerCase().split("[^a-z']+")) {
+				if (word.length() > 0) {
+					words.putIfAbsent(word, words.size());
+				}
+			}
+		}
+		in.close();
+		Object[] keys = new Object[words.size()];
+		int i = 0;
+		for (Map.Pair<String, Integer> p : words) {
+			keys[i] = p.key();
+			i++;
+		}
+		return keys;
+	}
+
+	/**
+	 * Outputs the statistics of a {@code Map4} with the given spreader and
+	 * table-size policy after adding {@code keys} and then looking each of them
+	 * up once.
+	 *
+	 * @param out        the output stream
+	 * @param label      name of the key set
+	 * @param name       name of the spreader
+	 * @param spreader   the spreader
+	 * @param powerOfTwo whether table sizes are powers of 2
+	 * @param keys       the keys
+	 * @updates out
+	 */
+	private static void report(SimpleWriter out, String label, String name, HashSpreader spreader,
+			boolean powerOfTwo, Object[] keys) {
+		Map4<Object, Integer> map = new Map4<>(INITIAL_SIZE, LOAD_FACTOR, spreader, powerOfTwo);
+		for (int i = 0; i < keys.length; i++) {
+			map.add(keys[i], i);
+		}
+		map.resetStatistics();
+		for (Object key : keys) {
+			map.hasKey(key);
+		}
+		Map4.Statistics stats = map.statistics();
+		String policy = "prime/mod";
+		if (powerOfTwo) {
+			policy = "pow2/mask";
+		}
+		out.println(String.format("%-14s %-9s %-10s %8d %8d %7.1f%% %5d %5d %8.3f", label, name, policy, stats.size(),
+				stats.buckets(), 100.0 * stats.emptyBuckets() / stats.buckets(), stats.maxBucketLength(),
+				stats.p99BucketLength(), stats.entriesPerLookup()));
+	}
+
+	/**
+	 * Main method.
+	 *
+	 * @param args the names of the text files to read (the bundled novels if
+	 *             none)
+	 */
+	public static void main(String[] args) {
+		SimpleWriter out = new SimpleWriter1L();
+		String[] files = DEFAULT_FILES;
+		if (args.length > 0) {
+			files = args;
+		}
+
+		out.println(String.format("%-14s %-9s %-10s %8s %8s %8s %5s %5s %8s", "keys", "spreader", "table", "n",
+				"buckets", "empty", "max", "p99", "entries"));
+		for (String file : files) {
+			Object[] keys = words(file);
+			String label = file.substring(file.lastIndexOf('/') + 1);
+			for (int s = 0; s < SPREADERS.length; s++) {
+				report(out, label, SPREADER_NAMES[s], SPREADERS[s], false, keys);
+				report(out, label, SPREADER_NAMES[s], SPREADERS[s], true, keys);
+			}
+		}
+
+		Object[] strided = new Object[STRIDED_KEYS];
+		for (int i = 0; i < STRIDED_KEYS; i++) {
+			strided[i] = i * STRIDE;
+		}
+		for (int s = 0; s < SPREADERS.length; s++) {
+			report(out, "Integer*1024", SPREADER_NAMES[s], SPREADERS[s], false, strided);
+			report(out, "Integer*1024", SPREADER_NAMES[s], SPREADERS[s], true, strided);
+		}
+
+		out.close();
+	}
+
+}
@@ -0,0 +1,502 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} from {@code K} to {@code Integer} represented as an
+ * open-addressing hash table with linear probing (as in {@code Map4a}), keeping
+ * the values unboxed in an {@code int} array, with implementations of primary
+ * methods and of the counting operations {@code addTo} and
+ * {@code getOrDefault}.
+ *
+ * <p>
+ * {@code addTo} and {@code getOrDefault} work on {@code int}s directly and find
+ * the key's slot only once, so a counting loop such as
+ * {@code counts.addTo(word, 1)} allocates nothing once {@code word} is in the
+ * map. The kernel methods box and unbox values at the {@code Map} interface.
+ *
+ * @param <K> type of {@code Map} domain (key) entries
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * HOME(
+ *   x: K,
+ *   n: integer
+ *  ): integer is
+ *  [computed result of x.hashCode(), spread as in HashTables.home] mod n
+ *
+ * PROBE_OK(
+ *   keys: string of K,
+ *   i: integer
+ *  ): boolean is
+ *  [no slot from HOME(keys[i], |keys|) up to, but excluding, slot i
+ *   (wrapping around the end of keys) holds null]
+ *                  </pre>
+ *
+ * @convention
+ *
+ *             <pre>
+ * |$this.keys| = |$this.values|  and
+ * [|$this.keys| is a power of 2]  and
+ * 0 < $this.minCapacity <= |$this.keys|  and
+ * 2 * $this.size <= |$this.keys|  and
+ * $this.size = [number of non-null entries in $this.keys]  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|)
+ *   (($this.keys[i] = null  implies  $this.values[i] = 0)  and
+ *    ($this.keys[i] /= null  implies  PROBE_OK($this.keys, i)))  and
+ * [the non-null entries of $this.keys are pairwise distinct]  and
+ * 0 <= $this.scanStart < |$this.keys|
+ *             </pre>
+ *
+ * @correspondence
+ *
+ *                 <pre>
+ * this = {(x, y): (K, Integer)
+ *           where (there exists i: integer
+ *                    ($this.keys[i] = x  and  $this.values[i] = y))}
+ *                 </pre>
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Map4Int<K> extends MapSecondary<K, Integer> {
+
+	/*
+	 * Private members --------------------------------------------------------
+	 */
+
+	/**
+	 * Default capacity (number of slots) of the table.
+	 */
+	private static final int DEFAULT_CAPACITY = 128;
+
+	/**
+	 * Largest capacity that will be allocated when growing.
+	 */
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	/**
+	 * The table shrinks once fewer than 1 / SHRINK_RATIO of its slots are used.
+	 */
+	private static final int SHRINK_RATIO = 8;
+
+	/**
+	 * Keys, indexed by slot; null marks an empty slot.
+	 */
+	private K[] keys;
+
+	/**
+	 * Values, indexed by slot (parallel to {@code keys}).
+	 */
+	private int[] values;
+
+	/**
+	 * Capacity below which the table never shrinks.
+	 */
+	private int minCapacity;
+
+	/**
+	 * Slot where {@code removeAny} starts looking for an entry.
+	 */
+	private int scanStart;
+
+	/**
+	 * Total size of abstract {@code this}.
+	 */
+	private int size;
+
+	/**
+	 * Creator of initial representation.
+	 *
+	 * @param capacity the number of slots
+	 * @requires [capacity is a power of 2]
+	 * @ensures
+	 *
+	 *          <pre>
+	 * |$this.keys| = capacity  and  $this.minCapacity = capacity  and
+	 * $this.size = 0  and  [all entries of $this.keys are null]  and
+	 * [all entries of $this.values are 0]
+	 *          </pre>
+	 */
+	private void createNewRep(int capacity) {
+		this.size = 0;
+		this.minCapacity = capacity;
+		this.scanStart = 0;
+		this.allocate(capacity);
+	}
+
+	/**
+	 * Replaces {@code keys} and {@code values} with empty arrays of length
+	 * {@code capacity}.
+	 *
+	 * @param capacity the number of slots
+	 * @requires [capacity is a power of 2]
+	 * @ensures |$this.keys| = capacity and [all entries are null or 0]
+	 */
+	@SuppressWarnings("unchecked")
+	private void allocate(int capacity) {
+		/*
+		 * With "new K[...]" in place of "new Object[...]" it does not compile; as
+		 * shown, it results in a warning about an unchecked cast, though it cannot
+		 * fail.
+		 */
+		this.keys = (K[]) new Object[capacity];
+		this.values = new int[capacity];
+	}
+
+	/**
+	 * Returns the slot holding {@code key}, or the empty slot that ends its probe
+	 * sequence if {@code key} is not in {@code this}.
+	 *
+	 * @param key the key
+	 * @return the slot for {@code key}
+	 * @ensures
+	 *
+	 *          <pre>
+	 * $this.keys[slotOf] = key  or
+	 * ($this.keys[slotOf] = null  and  key is not in DOMAIN(this))
+	 *          </pre>
+	 */
+	private int slotOf(K key) {
+		int mask = this.keys.length - 1;
+		int i = HashTables.home(key, this.keys.length);
+		while (this.keys[i] != null && !this.keys[i].equals(key)) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * Stores {@code key} and {@code value} in the empty slot {@code i}, growing
+	 * the table if it becomes more than half full.
+	 *
+	 * @param i     the slot
+	 * @param key   the key
+	 * @param value the value
+	 * @requires $this.keys[i] = null and i = slotOf(key)
+	 * @ensures this = #this union {(key, value)}
+	 */
+	private void insertAt(int i, K key, int value) {
+		this.keys[i] = key;
+		this.values[i] = value;
+		this.size++;
+
+		// Keep at most half of the slots in use so probe runs stay short
+		if (2 * this.size > this.keys.length && this.keys.length < MAXIMUM_CAPACITY) {
+			this.resize(2 * this.keys.length);
+		}
+	}
+
+	/**
+	 * Empties slot {@code i}, shifting back later entries of the same probe run
+	 * so that every remaining entry is still reachable from its home slot, and
+	 * shrinks the table if it becomes sparse.
+	 *
+	 * @param i the slot to empty
+	 * @requires $this.keys[i] /= null
+	 * @ensures this = #this \ {(#$this.keys[i], #$this.values[i])}
+	 */
+	private void deleteSlot(int i) {
+		int mask = this.keys.length - 1;
+		int hole = i;
+		int j = (i + 1) & mask;
+		while (this.keys[j] != null) {
+			int distanceFromHome = (j - HashTables.home(this.keys[j], this.keys.length)) & mask;
+			int distanceFromHole = (j - hole) & mask;
+			// The entry may fill the hole only if its home is not after the hole
+			if (distanceFromHome >= distanceFromHole) {
+				this.keys[hole] = this.keys[j];
+				this.values[hole] = this.values[j];
+				hole = j;
+			}
+			j = (j + 1) & mask;
+		}
+		this.keys[hole] = null;
+		this.values[hole] = 0;
+		this.size--;
+
+		if (this.keys.length > this.minCapacity && SHRINK_RATIO * this.size < this.keys.length) {
+			this.resize(this.keys.length / 2);
+		}
+	}
+
+	/**
+	 * Moves every entry into a new table of {@code capacity} slots.
+	 *
+	 * @param capacity the new number of slots
+	 * @requires [capacity is a power of 2] and 2 * $this.size <= capacity
+	 * @ensures this = #this and |$this.keys| = capacity
+	 */
+	private void resize(int capacity) {
+		K[] oldKeys = this.keys;
+		int[] oldValues = this.values;
+		this.allocate(capacity);
+		this.scanStart = 0;
+		int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int j = HashTables.home(oldKeys[i], capacity);
+				while (this.keys[j] != null) {
+					j = (j + 1) & mask;
+				}
+				this.keys[j] = oldKeys[i];
+				this.values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/*
+	 * Constructors -----------------------------------------------------------
+	 */
+
+	/**
+	 * No-argument constructor.
+	 */
+	public Map4Int() {
+
+		this.createNewRep(DEFAULT_CAPACITY);
+
+	}
+
+	/**
+	 * Constructor resulting in a table with at least {@code capacity} slots.
+	 *
+	 * @param capacity minimum number of slots in the table
+	 * @requires 0 < capacity <= 2^30
+	 * @ensures this = {}
+	 */
+	public Map4Int(int capacity) {
+		assert capacity > 0 : "Violation of: capacity > 0";
+		assert capacity <= MAXIMUM_CAPACITY : "Violation of: capacity <= 2^30";
+
+		this.createNewRep(HashTables.powerOfTwoAtLeast(capacity));
+	}
+
+	/*
+	 * Standard methods -------------------------------------------------------
+	 */
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public final Map<K, Integer> newInstance() {
+		try {
+			return this.getClass().getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError("Cannot construct object of type " + this.getClass());
+		}
+	}
+
+	@Override
+	public final void clear() {
+		this.createNewRep(DEFAULT_CAPACITY);
+	}
+
+	@Override
+	public final void transferFrom(Map<K, Integer> source) {
+		assert source != null : "Violation of: source is not null";
+		assert source != this : "Violation of: source is not this";
+		assert source instanceof Map4Int<?> : "" + "Violation of: source is of dynamic type Map4Int<?>";
+		/*
+		 * This cast cannot fail since the assert above would have stopped execution in
+		 * that case: source must be of dynamic type Map4Int<?>, and the ? must be K or
+		 * the call would not have compiled.
+		 */
+		Map4Int<K> localSource = (Map4Int<K>) source;
+		this.keys = localSource.keys;
+		this.values = localSource.values;
+		this.minCapacity = localSource.minCapacity;
+		this.scanStart = localSource.scanStart;
+		this.size = localSource.size;
+		localSource.createNewRep(DEFAULT_CAPACITY);
+	}
+
+	/*
+	 * Kernel methods ---------------------------------------------------------
+	 */
+
+	@Override
+	public final void add(K key, Integer value) {
+		assert key != null : "Violation of: key is not null";
+		assert value != null : "Violation of: value is not null";
+		assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+		this.insertAt(this.slotOf(key), key, value);
+	}
+
+	@Override
+	public final Pair<K, Integer> remove(K key) {
+		assert key != null : "Violation of: key is not null";
+		assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+		int i = this.slotOf(key);
+		Map.Pair<K, Integer> removedPair = new HashTables.SimplePair<>(this.keys[i], this.values[i]);
+		this.deleteSlot(i);
+		return removedPair;
+	}
+
+	@Override
+	public final Pair<K, Integer> removeAny() {
+		assert this.size() > 0 : "Violation of: this /= empty_set";
+
+		// Resume scanning where the last removeAny stopped (see Map4a.removeAny)
+		int mask = this.keys.length - 1;
+		int i = this.scanStart;
+		while (this.keys[i] == null) {
+			i = (i + 1) & mask;
+		}
+		this.scanStart = i;
+		Map.Pair<K, Integer> removedPair = new HashTables.SimplePair<>(this.keys[i], this.values[i]);
+		this.deleteSlot(i);
+		return removedPair;
+	}
+
+	@Override
+	public final Integer value(K key) {
+		assert key != null : "Violation of: key is not null";
+		assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+		return this.values[this.slotOf(key)];
+	}
+
+	@Override
+	public final boolean hasKey(K key) {
+		assert key != null : "Violation of: key is not null";
+
+		return this.keys[this.slotOf(key)] != null;
+	}
+
+	@Override
+	public final int size() {
+
+		return this.size;
+	}
+
+	/*
+	 * Other methods ----------------------------------------------------------
+	 */
+
+	/**
+	 * Adds {@code delta} to the value associated with {@code key}, first adding
+	 * {@code key} with value 0 if it is not in {@code DOMAIN(this)}, and returns
+	 * the new value.
+	 *
+	 * @param key   the key whose value is to be updated
+	 * @param delta the amount to add
+	 * @return the value now associated with {@code key}
+	 * @aliases reference {@code key}
+	 * @updates this
+	 * @requires key is not null
+	 * @ensures
+	 *
+	 *          <pre>
+	 * if key is in DOMAIN(#this) then
+	 *   addTo = #this(key) + delta  and
+	 *   this = (#this \ {(key, #this(key))}) union {(key, addTo)}
+	 * else
+	 *   addTo = delta  and  this = #this union {(key, delta)}
+	 *          </pre>
+	 */
+	public final int addTo(K key, int delta) {
+		assert key != null : "Violation of: key is not null";
+
+		int i = this.slotOf(key);
+		int newValue = delta;
+		if (this.keys[i] != null) {
+			newValue += this.values[i];
+			this.values[i] = newValue;
+		} else {
+			this.insertAt(i, key, newValue);
+		}
+		return newValue;
+	}
+
+	/**
+	 * Reports the value associated with {@code key}, or {@code defaultValue} if
+	 * {@code key} is not in {@code DOMAIN(this)}.
+	 *
+	 * @param key          the key whose associated value is to be reported
+	 * @param defaultValue the value to report if {@code key} is absent
+	 * @return the value associated with {@code key}, or {@code defaultValue}
+	 * @requires key is not null
+	 * @ensures
+	 *
+	 *          <pre>
+	 * if key is in DOMAIN(this) then getOrDefault = this(key)
+	 * else getOrDefault = defaultValue
+	 *          </pre>
+	 */
+	public final int getOrDefault(K key, int defaultValue) {
+		assert key != null : "Violation of: key is not null";
+
+		int i = this.slotOf(key);
+		int result = defaultValue;
+		if (this.keys[i] != null) {
+			result = this.values[i];
+		}
+		return result;
+	}
+
+	@Override
+	public final Iterator<Pair<K, Integer>> iterator() {
+		return new Map4IntIterator();
+	}
+
+	/**
+	 * Implementation of {@code Iterator} interface for {@code Map4Int}.
+	 */
+	private final class Map4IntIterator implements Iterator<Pair<K, Integer>> {
+
+		/**
+		 * Number of elements seen already (i.e., |~this.seen|).
+		 */
+		private int numberSeen;
+
+		/**
+		 * Slot from which the next element will come (or before it).
+		 */
+		private int currentSlot;
+
+		/**
+		 * No-argument constructor.
+		 */
+		Map4IntIterator() {
+			this.numberSeen = 0;
+			this.currentSlot = 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.numberSeen < Map4Int.this.size;
+		}
+
+		@Override
+		public Pair<K, Integer> next() {
+			assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+			if (!this.hasNext()) {
+				/*
+				 * Exception is supposed to be thrown in this case, but with assertion-checking
+				 * enabled it cannot happen because of assert above.
+				 */
+				throw new NoSuchElementException();
+			}
+			this.numberSeen++;
+			while (Map4Int.this.keys[this.currentSlot] == null) {
+				this.currentSlot++;
+			}
+			Pair<K, Integer> next = new HashTables.SimplePair<>(Map4Int.this.keys[this.currentSlot],
+					Map4Int.this.values[this.currentSlot]);
+			this.currentSlot++;
+			return next;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("remove operation not supported");
+		}
+
+	}
+
+}
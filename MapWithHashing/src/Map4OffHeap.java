@@ -0,0 +1,712 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} from {@code String} to {@code Integer} that keeps its keys and
+ * values outside the Java heap, with implementations of primary methods and of
+ * the counting operations {@code addTo} and {@code getOrDefault}.
+ *
+ * <p>
+ * The representation is two direct {@code ByteBuffer}s. The index is an
+ * open-addressing table with linear probing (as in {@code Map4Int}) whose
+ * slots hold a key's spread hash code, the offset of its key in the arena, and
+ * its value. The arena holds each key as its length followed by its UTF-8
+ * bytes. The heap therefore holds only a handful of objects however many
+ * entries there are, and the garbage collector never has to trace them.
+ * Lookups compare the key sought with the arena bytes as they encode it, so
+ * {@code hasKey}, {@code getOrDefault} and {@code addTo} on a present key
+ * allocate nothing; the kernel methods box values and create {@code String}s
+ * and pairs only where the {@code Map} interface returns them.
+ *
+ * <p>
+ * Removing an entry leaves its key bytes in the arena as garbage; the arena is
+ * compacted when it would otherwise have to grow while at least half of it is
+ * garbage. The arena holds at most {@code Integer.MAX_VALUE} bytes, and the
+ * index, which is never more than half full, at most 2^26 entries; adding an
+ * entry beyond either limit throws {@code IllegalStateException}. Keys must
+ * be well-formed UTF-16: as with {@code String.getBytes}, an unpaired
+ * surrogate is stored as '?'.
+ *
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * HASH(
+ *   x: string of character
+ *  ): integer is
+ *  [HashSpreader.murmurFinalize(x.hashCode())]
+ *
+ * KEY(
+ *   arena: string of byte,
+ *   offset: integer
+ *  ): string of character is
+ *  [the string whose UTF-8 encoding is the length-prefixed byte string at
+ *   offset in arena]
+ *                  </pre>
+ *
+ * @convention
+ *
+ *             <pre>
+ * [|$this.index| = $this.capacity * SLOT_BYTES, and $this.capacity is a
+ *  power of 2]  and
+ * 0 < $this.minCapacity <= $this.capacity  and
+ * 2 * $this.size <= $this.capacity  and
+ * 0 < $this.arenaEnd <= |$this.arena|  and
+ * 0 <= $this.garbage < $this.arenaEnd  and
+ * [$this.size slots of $this.index have a non-zero offset, the offsets of
+ *  different slots are different, and the keys KEY($this.arena, offset) at
+ *  those offsets are distinct]  and
+ * [each such slot holds HASH of its key, and no slot from HASH(key) mod
+ *  $this.capacity up to it (wrapping around) has offset 0]  and
+ * [the bytes in [1, $this.arenaEnd) of $this.arena not used by any slot's key
+ *  number $this.garbage]  and
+ * 0 <= $this.scanStart < $this.capacity
+ *             </pre>
+ *
+ * @correspondence
+ *
+ *                 <pre>
+ * this = {(x, y): (string of character, integer)
+ *           where (there exists i: integer
+ *                    ([slot i of $this.index has offset o /= 0 and value y]  and
+ *                     x = KEY($this.arena, o)))}
+ *                 </pre>
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Map4OffHeap extends MapSecondary<String, Integer> {
+
+	/*
+	 * Private members --------------------------------------------------------
+	 */
+
+	/**
+	 * Default capacity (number of slots) of the index.
+	 */
+	private static final int DEFAULT_CAPACITY = 128;
+
+	/**
+	 * Largest capacity that will be allocated when growing.
+	 */
+	private static final int MAXIMUM_CAPACITY = 1 << 27;
+
+	/**
+	 * The index shrinks once fewer than 1 / SHRINK_RATIO of its slots are used.
+	 */
+	private static final int SHRINK_RATIO = 8;
+
+	/**
+	 * Average number of arena bytes per slot allocated initially.
+	 */
+	private static final int INITIAL_ARENA_BYTES_PER_SLOT = 8;
+
+	/**
+	 * Size in bytes of an index slot: hash, key offset, value.
+	 */
+	private static final int SLOT_BYTES = 3 * Integer.BYTES;
+
+	/**
+	 * Position of the key offset within a slot.
+	 */
+	private static final int OFFSET_FIELD = Integer.BYTES;
+
+	/**
+	 * Position of the value within a slot.
+	 */
+	private static final int VALUE_FIELD = 2 * Integer.BYTES;
+
+	/**
+	 * Number of slots in the index.
+	 */
+	private int capacity;
+
+	/**
+	 * The index.
+	 */
+	private ByteBuffer index;
+
+	/**
+	 * The arena of keys; offset 0 is never used, so that it can mark an empty
+	 * slot.
+	 */
+	private ByteBuffer arena;
+
+	/**
+	 * Arena offset at which the next key will be stored.
+	 */
+	private int arenaEnd;
+
+	/**
+	 * Number of arena bytes before {@code arenaEnd} that belong to removed
+	 * keys.
+	 */
+	private int garbage;
+
+	/**
+	 * Capacity below which the index never shrinks.
+	 */
+	private int minCapacity;
+
+	/**
+	 * Slot where {@code removeAny} starts looking for an entry.
+	 */
+	private int scanStart;
+
+	/**
+	 * Total size of abstract {@code this}.
+	 */
+	private int size;
+
+	/**
+	 * Returns the hash of {@code key} stored in the index.
+	 *
+	 * @param key the key
+	 * @return HASH(key)
+	 */
+	private static int hash(String key) {
+		return HashSpreader.murmurFinalize(key.hashCode());
+	}
+
+	/**
+	 * Creator of initial representation.
+	 *
+	 * @param capacity the number of slots
+	 * @requires [capacity is a power of 2]
+	 * @ensures
+	 *
+	 *          <pre>
+	 * $this.capacity = capacity  and  $this.minCapacity = capacity  and
+	 * $this.size = 0  and  $this.arenaEnd = 1  and  $this.garbage = 0  and
+	 * [every slot of $this.index has offset 0]
+	 *          </pre>
+	 */
+	private void createNewRep(int capacity) {
+		this.size = 0;
+		this.minCapacity = capacity;
+		this.scanStart = 0;
+		this.capacity = capacity;
+		// allocateDirect zero-fills, so every slot starts with offset 0
+		this.index = ByteBuffer.allocateDirect(capacity * SLOT_BYTES);
+		this.arena = ByteBuffer.allocateDirect(capacity * INITIAL_ARENA_BYTES_PER_SLOT);
+		this.arenaEnd = 1;
+		this.garbage = 0;
+	}
+
+	/**
+	 * Returns the arena offset of the key in slot {@code i}, or 0 if slot
+	 * {@code i} is empty.
+	 *
+	 * @param i the slot
+	 * @return the key offset of slot i
+	 */
+	private int offsetAt(int i) {
+		return this.index.getInt(i * SLOT_BYTES + OFFSET_FIELD);
+	}
+
+	/**
+	 * Returns the hash stored in slot {@code i}.
+	 *
+	 * @param i the slot
+	 * @return the hash of slot i
+	 */
+	private int hashAt(int i) {
+		return this.index.getInt(i * SLOT_BYTES);
+	}
+
+	/**
+	 * Returns the value stored in slot {@code i}.
+	 *
+	 * @param i the slot
+	 * @return the value of slot i
+	 */
+	private int valueAt(int i) {
+		return this.index.getInt(i * SLOT_BYTES + VALUE_FIELD);
+	}
+
+	/**
+	 * Stores {@code hash}, {@code offset}, and {@code value} in slot {@code i}.
+	 *
+	 * @param i      the slot
+	 * @param hash   the hash
+	 * @param offset the key offset (0 to empty the slot)
+	 * @param value  the value
+	 * @updates $this.index
+	 */
+	private void setSlot(int i, int hash, int offset, int value) {
+		int p = i * SLOT_BYTES;
+		this.index.putInt(p, hash);
+		this.index.putInt(p + OFFSET_FIELD, offset);
+		this.index.putInt(p + VALUE_FIELD, value);
+	}
+
+	/**
+	 * Reports whether the arena key at {@code offset} is {@code key}, encoding
+	 * {@code key} as UTF-8 while comparing instead of allocating its bytes.
+	 *
+	 * @param offset the arena offset of a key
+	 * @param key    the key sought
+	 * @return true iff KEY($this.arena, offset) = key
+	 */
+	private boolean keyEquals(int offset, String key) {
+		int start = offset + Integer.BYTES;
+		return HashTables.utf8Equals(this.arena, start, start + this.arena.getInt(offset), key);
+	}
+
+	/**
+	 * Returns the arena key at {@code offset}.
+	 *
+	 * @param offset the arena offset of a key
+	 * @return KEY($this.arena, offset)
+	 */
+	private String keyAt(int offset) {
+		byte[] bytes = new byte[this.arena.getInt(offset)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = this.arena.get(offset + Integer.BYTES + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the slot holding {@code key}, or the empty slot that ends its probe
+	 * sequence if {@code key} is not in {@code this}.
+	 *
+	 * @param key the key
+	 * @param h   HASH(key)
+	 * @return the slot for {@code key}
+	 */
+	private int slotOf(String key, int h) {
+		int mask = this.capacity - 1;
+		int i = h & mask;
+		int offset = this.offsetAt(i);
+		while (offset != 0 && !(this.hashAt(i) == h && this.keyEquals(offset, key))) {
+			i = (i + 1) & mask;
+			offset = this.offsetAt(i);
+		}
+		return i;
+	}
+
+	/**
+	 * Copies {@code key} into the arena and returns its offset, first making
+	 * room by compacting or growing the arena if necessary.
+	 *
+	 * @param key the key
+	 * @return the arena offset of the copy
+	 * @updates $this.arena, $this.arenaEnd, $this.garbage
+	 */
+	private int store(String key) {
+		byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+		int needed = Integer.BYTES + bytes.length;
+		if ((long) this.arenaEnd + needed > this.arena.capacity()) {
+			long live = (long) this.arenaEnd - this.garbage + needed;
+			long newCapacity = this.arena.capacity();
+			if (2 * this.garbage < this.arenaEnd) {
+				newCapacity *= 2;
+			}
+			while (newCapacity < live) {
+				newCapacity *= 2;
+			}
+			if (live > Integer.MAX_VALUE) {
+				throw new IllegalStateException("Map4OffHeap arena is full");
+			}
+			this.compact((int) Math.min(newCapacity, Integer.MAX_VALUE));
+		}
+		int offset = this.arenaEnd;
+		this.arena.putInt(offset, bytes.length);
+		this.arena.position(offset + Integer.BYTES);
+		this.arena.put(bytes);
+		this.arenaEnd += needed;
+		return offset;
+	}
+
+	/**
+	 * Copies the keys of all entries, without the garbage between them, into a
+	 * new arena of {@code arenaCapacity} bytes.
+	 *
+	 * @param arenaCapacity the size of the new arena
+	 * @requires arenaCapacity >= $this.arenaEnd - $this.garbage
+	 * @ensures this = #this and $this.garbage = 0
+	 */
+	private void compact(int arenaCapacity) {
+		ByteBuffer oldArena = this.arena;
+		this.arena = ByteBuffer.allocateDirect(arenaCapacity);
+		int end = 1;
+		for (int i = 0; i < this.capacity; i++) {
+			int offset = this.offsetAt(i);
+			if (offset != 0) {
+				int length = Integer.BYTES + oldArena.getInt(offset);
+				ByteBuffer key = oldArena.duplicate();
+				key.limit(offset + length).position(offset);
+				this.arena.position(end);
+				this.arena.put(key);
+				this.index.putInt(i * SLOT_BYTES + OFFSET_FIELD, end);
+				end += length;
+			}
+		}
+		this.arenaEnd = end;
+		this.garbage = 0;
+	}
+
+	/**
+	 * Stores {@code key} and {@code value} in the empty slot {@code i}, growing
+	 * the index if it becomes more than half full.
+	 *
+	 * @param i     the slot
+	 * @param h     HASH(key)
+	 * @param key   the key
+	 * @param value the value
+	 * @throws IllegalStateException if the index already holds 2^26 entries or
+	 *                               the arena has no room for key
+	 * @requires [slot i is empty] and i = slotOf(key, h)
+	 * @ensures this = #this union {(key, value)}
+	 */
+	private void insertAt(int i, int h, String key, int value) {
+		/*
+		 * The index cannot grow past MAXIMUM_CAPACITY, and once full it would leave
+		 * slotOf no empty slot to stop at, so stay at most half full there too
+		 */
+		if (2 * (this.size + 1) > MAXIMUM_CAPACITY) {
+			throw new IllegalStateException("Map4OffHeap index is full");
+		}
+		// Store the key first: compacting the arena rewrites offsets in place
+		int offset = this.store(key);
+		this.setSlot(i, h, offset, value);
+		this.size++;
+
+		// Keep at most half of the slots in use so probe runs stay short
+		if (2 * this.size > this.capacity && this.capacity < MAXIMUM_CAPACITY) {
+			this.resize(2 * this.capacity);
+		}
+	}
+
+	/**
+	 * Empties slot {@code i}, shifting back later entries of the same probe run
+	 * so that every remaining entry is still reachable from its home slot, and
+	 * shrinks the index if it becomes sparse.
+	 *
+	 * @param i the slot to empty
+	 * @requires [slot i is not empty]
+	 * @ensures this = #this \ {(key and value of #slot i)}
+	 */
+	private void deleteSlot(int i) {
+		this.garbage += Integer.BYTES + this.arena.getInt(this.offsetAt(i));
+		int mask = this.capacity - 1;
+		int hole = i;
+		int j = (i + 1) & mask;
+		while (this.offsetAt(j) != 0) {
+			int distanceFromHome = (j - this.hashAt(j)) & mask;
+			int distanceFromHole = (j - hole) & mask;
+			// The entry may fill the hole only if its home is not after the hole
+			if (distanceFromHome >= distanceFromHole) {
+				this.setSlot(hole, this.hashAt(j), this.offsetAt(j), this.valueAt(j));
+				hole = j;
+			}
+			j = (j + 1) & mask;
+		}
+		this.setSlot(hole, 0, 0, 0);
+		this.size--;
+
+		if (this.capacity > this.minCapacity && SHRINK_RATIO * this.size < this.capacity) {
+			this.resize(this.capacity / 2);
+		}
+	}
+
+	/**
+	 * Moves every slot into a new index of {@code capacity} slots, using the
+	 * stored hashes (the arena is not touched).
+	 *
+	 * @param newCapacity the new number of slots
+	 * @requires [newCapacity is a power of 2] and 2 * $this.size <= newCapacity
+	 * @ensures this = #this and $this.capacity = newCapacity
+	 */
+	private void resize(int newCapacity) {
+		ByteBuffer oldIndex = this.index;
+		int oldCapacity = this.capacity;
+		this.index = ByteBuffer.allocateDirect(newCapacity * SLOT_BYTES);
+		this.capacity = newCapacity;
+		this.scanStart = 0;
+		int mask = newCapacity - 1;
+		for (int i = 0; i < oldCapacity; i++) {
+			int p = i * SLOT_BYTES;
+			int offset = oldIndex.getInt(p + OFFSET_FIELD);
+			if (offset != 0) {
+				int h = oldIndex.getInt(p);
+				int j = h & mask;
+				while (this.offsetAt(j) != 0) {
+					j = (j + 1) & mask;
+				}
+				this.setSlot(j, h, offset, oldIndex.getInt(p + VALUE_FIELD));
+			}
+		}
+	}
+
+	/*
+	 * Constructors -----------------------------------------------------------
+	 */
+
+	/**
+	 * No-argument constructor.
+	 */
+	public Map4OffHeap() {
+
+		this.createNewRep(DEFAULT_CAPACITY);
+
+	}
+
+	/**
+	 * Constructor resulting in an index with at least {@code capacity} slots.
+	 *
+	 * @param capacity minimum number of slots in the index
+	 * @requires 0 < capacity <= 2^27
+	 * @ensures this = {}
+	 */
+	public Map4OffHeap(int capacity) {
+		assert capacity > 0 : "Violation of: capacity > 0";
+		assert capacity <= MAXIMUM_CAPACITY : "Violation of: capacity <= 2^27";
+
+		this.createNewRep(HashTables.powerOfTwoAtLeast(capacity));
+	}
+
+	/*
+	 * Standard methods -------------------------------------------------------
+	 */
+
+	@Override
+	public final Map<String, Integer> newInstance() {
+		try {
+			return this.getClass().getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError("Cannot construct object of type " + this.getClass());
+		}
+	}
+
+	@Override
+	public final void clear() {
+		this.createNewRep(DEFAULT_CAPACITY);
+	}
+
+	@Override
+	public final void transferFrom(Map<String, Integer> source) {
+		assert source != null : "Violation of: source is not null";
+		assert source != this : "Violation of: source is not this";
+		assert source instanceof Map4OffHeap : "" + "Violation of: source is of dynamic type Map4OffHeap";
+		/*
+		 * This cast cannot fail since the assert above would have stopped execution in
+		 * that case.
+		 */
+		Map4OffHeap localSource = (Map4OffHeap) source;
+		this.capacity = localSource.capacity;
+		this.index = localSource.index;
+		this.arena = localSource.arena;
+		this.arenaEnd = localSource.arenaEnd;
+		this.garbage = localSource.garbage;
+		this.minCapacity = localSource.minCapacity;
+		this.scanStart = localSource.scanStart;
+		this.size = localSource.size;
+		localSource.createNewRep(DEFAULT_CAPACITY);
+	}
+
+	/*
+	 * Kernel methods ---------------------------------------------------------
+	 */
+
+	@Override
+	public final void add(String key, Integer value) {
+		assert key != null : "Violation of: key is not null";
+		assert value != null : "Violation of: value is not null";
+		assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+		int h = hash(key);
+		this.insertAt(this.slotOf(key, h), h, key, value);
+	}
+
+	@Override
+	public final Pair<String, Integer> remove(String key) {
+		assert key != null : "Violation of: key is not null";
+		assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+		int i = this.slotOf(key, hash(key));
+		Map.Pair<String, Integer> removedPair = new HashTables.SimplePair<>(key, this.valueAt(i));
+		this.deleteSlot(i);
+		return removedPair;
+	}
+
+	@Override
+	public final Pair<String, Integer> removeAny() {
+		assert this.size() > 0 : "Violation of: this /= empty_set";
+
+		// Resume scanning where the last removeAny stopped (see Map4a.removeAny)
+		int mask = this.capacity - 1;
+		int i = this.scanStart;
+		while (this.offsetAt(i) == 0) {
+			i = (i + 1) & mask;
+		}
+		this.scanStart = i;
+		Map.Pair<String, Integer> removedPair = new HashTables.SimplePair<>(this.keyAt(this.offsetAt(i)),
+				this.valueAt(i));
+		this.deleteSlot(i);
+		return removedPair;
+	}
+
+	@Override
+	public final Integer value(String key) {
+		assert key != null : "Violation of: key is not null";
+		assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+		return this.valueAt(this.slotOf(key, hash(key)));
+	}
+
+	@Override
+	public final boolean hasKey(String key) {
+		assert key != null : "Violation of: key is not null";
+
+		return this.offsetAt(this.slotOf(key, hash(key))) != 0;
+	}
+
+	@Override
+	public final int size() {
+
+		return this.size;
+	}
+
+	/*
+	 * Other methods ----------------------------------------------------------
+	 */
+
+	/**
+	 * Adds {@code delta} to the value associated with {@code key}, first adding
+	 * {@code key} with value 0 if it is not in {@code DOMAIN(this)}, and returns
+	 * the new value.
+	 *
+	 * @param key   the key whose value is to be updated
+	 * @param delta the amount to add
+	 * @return the value now associated with {@code key}
+	 * @updates this
+	 * @requires key is not null
+	 * @ensures
+	 *
+	 *          <pre>
+	 * if key is in DOMAIN(#this) then
+	 *   addTo = #this(key) + delta  and
+	 *   this = (#this \ {(key, #this(key))}) union {(key, addTo)}
+	 * else
+	 *   addTo = delta  and  this = #this union {(key, delta)}
+	 *          </pre>
+	 */
+	public final int addTo(String key, int delta) {
+		assert key != null : "Violation of: key is not null";
+
+		int h = hash(key);
+		int i = this.slotOf(key, h);
+		int newValue = delta;
+		if (this.offsetAt(i) != 0) {
+			newValue += this.valueAt(i);
+			this.index.putInt(i * SLOT_BYTES + VALUE_FIELD, newValue);
+		} else {
+			this.insertAt(i, h, key, newValue);
+		}
+		return newValue;
+	}
+
+	/**
+	 * Reports the value associated with {@code key}, or {@code defaultValue} if
+	 * {@code key} is not in {@code DOMAIN(this)}.
+	 *
+	 * @param key          the key whose associated value is to be reported
+	 * @param defaultValue the value to report if {@code key} is absent
+	 * @return the value associated with {@code key}, or {@code defaultValue}
+	 * @requires key is not null
+	 * @ensures
+	 *
+	 *          <pre>
+	 * if key is in DOMAIN(this) then getOrDefault = this(key)
+	 * else getOrDefault = defaultValue
+	 *          </pre>
+	 */
+	public final int getOrDefault(String key, int defaultValue) {
+		assert key != null : "Violation of: key is not null";
+
+		int i = this.slotOf(key, hash(key));
+		int result = defaultValue;
+		if (this.offsetAt(i) != 0) {
+			result = this.valueAt(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Reports the number of bytes of memory outside the Java heap that
+	 * {@code this} currently holds (index plus arena).
+	 *
+	 * @return the number of off-heap bytes
+	 */
+	public final long offHeapBytes() {
+		return (long) this.index.capacity() + this.arena.capacity();
+	}
+
+	@Override
+	public final Iterator<Pair<String, Integer>> iterator() {
+		return new Map4OffHeapIterator();
+	}
+
+	/**
+	 * Implementation of {@code Iterator} interface for {@code Map4OffHeap}.
+	 */
+	private final class Map4OffHeapIterator implements Iterator<Pair<String, Integer>> {
+
+		/**
+		 * Number of elements seen already (i.e., |~this.seen|).
+		 */
+		private int numberSeen;
+
+		/**
+		 * Slot from which the next element will come (or before it).
+		 */
+		private int currentSlot;
+
+		/**
+		 * No-argument constructor.
+		 */
+		Map4OffHeapIterator() {
+			this.numberSeen = 0;
+			this.currentSlot = 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.numberSeen < Map4OffHeap.this.size;
+		}
+
+		@Override
+		public Pair<String, Integer> next() {
+			assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+			if (!this.hasNext()) {
+				/*
+				 * Exception is supposed to be thrown in this case, but with assertion-checking
+				 * enabled it cannot happen because of assert above.
+				 */
+				throw new NoSuchElementException();
+			}
+			this.numberSeen++;
+			while (Map4OffHeap.this.offsetAt(this.currentSlot) == 0) {
+				this.currentSlot++;
+			}
+			Pair<String, Integer> next = new HashTables.SimplePair<>(
+					Map4OffHeap.this.keyAt(Map4OffHeap.this.offsetAt(this.currentSlot)),
+					Map4OffHeap.this.valueAt(this.currentSlot));
+			this.currentSlot++;
+			return next;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("remove operation not supported");
+		}
+
+	}
+
+}
@@ -0,0 +1,417 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import components.map.Map;
+
+/**
+ * Read-only {@code String} to {@code Integer} map (such as a word-frequency
+ * map) stored in a compact binary file and served directly out of a
+ * memory-mapped region of that file.
+ *
+ * <p>
+ * {@code save} writes a map to a file once; {@code open} maps the file with
+ * {@code FileChannel.map} and checks that the header and every index slot
+ * point inside the file, reading only the index and the fixed-size entry
+ * headers, since nothing is deserialized. Each lookup hashes the key, probes
+ * an open-addressing index stored in the file, and compares the key with the
+ * UTF-8 bytes in place without encoding it into a new array, so a lookup
+ * allocates nothing. {@code toMap4} copies the entries into a mutable
+ * {@code Map4} when one is needed.
+ *
+ * <p>
+ * File layout (all {@code int}s big-endian):
+ *
+ * <pre>
+ * header:  MAGIC, size, capacity
+ * index:   capacity slots of (hash, offset); offset 0 marks an empty slot
+ * entries: for each entry, value, key length in bytes, UTF-8 key bytes
+ * </pre>
+ *
+ * The slot of a key is {@code HashSpreader.murmurFinalize(key.hashCode())}
+ * masked by {@code capacity - 1}, probing linearly; {@code String.hashCode} is
+ * specified exactly, so files can be shared between JVMs. A file holds at most
+ * {@code Integer.MAX_VALUE} bytes, which is millions of entries for typical
+ * vocabularies.
+ *
+ * <p>
+ * A {@code Map4Snapshot} is immutable, so it may be shared between threads.
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public final class Map4Snapshot {
+
+	/*
+	 * Private members --------------------------------------------------------
+	 */
+
+	/**
+	 * First {@code int} of every snapshot file ("M4S1").
+	 */
+	private static final int MAGIC = 0x4D345331;
+
+	/**
+	 * Size in bytes of the header.
+	 */
+	private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+	/**
+	 * Size in bytes of an index slot.
+	 */
+	private static final int SLOT_BYTES = 2 * Integer.BYTES;
+
+	/**
+	 * Size in bytes of the fixed part (value and key length) of an entry.
+	 */
+	private static final int ENTRY_HEADER_BYTES = 2 * Integer.BYTES;
+
+	/**
+	 * Largest capacity of the index.
+	 */
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	/**
+	 * The mapped file.
+	 */
+	private final ByteBuffer buffer;
+
+	/**
+	 * Number of entries.
+	 */
+	private final int size;
+
+	/**
+	 * Number of index slots (a power of 2).
+	 */
+	private final int capacity;
+
+	/**
+	 * Constructor from a mapped file whose header has been validated.
+	 *
+	 * @param buffer   the mapped file
+	 * @param size     the number of entries
+	 * @param capacity the number of index slots
+	 */
+	private Map4Snapshot(ByteBuffer buffer, int size, int capacity) {
+		this.buffer = buffer;
+		this.size = size;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Returns the hash of {@code key} stored in the index.
+	 *
+	 * @param key the key
+	 * @return the spread hash code of key
+	 */
+	private static int hash(String key) {
+		return HashSpreader.murmurFinalize(key.hashCode());
+	}
+
+	/**
+	 * Returns the number of index slots used for a map of {@code size} entries:
+	 * the smallest power of 2 that is at least twice {@code size}, so that
+	 * probe sequences stay short.
+	 *
+	 * @param size the number of entries
+	 * @return the capacity
+	 * @requires 0 <= size <= MAXIMUM_CAPACITY / 2
+	 */
+	private static int capacityFor(int size) {
+		int c = 2;
+		while (c < 2 * size) {
+			c *= 2;
+		}
+		return c;
+	}
+
+	/**
+	 * Returns the file offset of the entry for {@code key}, or 0 if
+	 * {@code key} is not in the snapshot.
+	 *
+	 * @param key the key
+	 * @return the offset of the entry, or 0
+	 */
+	private int find(String key) {
+		int h = hash(key);
+		int mask = this.capacity - 1;
+		int slot = h & mask;
+		int result = -1;
+		while (result < 0) {
+			int slotPosition = HEADER_BYTES + slot * SLOT_BYTES;
+			int offset = this.buffer.getInt(slotPosition + Integer.BYTES);
+			if (offset == 0) {
+				result = 0;
+			} else if (this.buffer.getInt(slotPosition) == h && this.keyEquals(offset, key)) {
+				result = offset;
+			} else {
+				slot = (slot + 1) & mask;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reports whether the key of the entry at {@code offset} is {@code key},
+	 * comparing its UTF-8 bytes in place.
+	 *
+	 * @param offset the offset of the entry
+	 * @param key    the key sought
+	 * @return true iff the entry's key is key
+	 */
+	private boolean keyEquals(int offset, String key) {
+		int start = offset + ENTRY_HEADER_BYTES;
+		int end = start + this.buffer.getInt(offset + Integer.BYTES);
+		return HashTables.utf8Equals(this.buffer, start, end, key);
+	}
+
+	/**
+	 * Returns the key of the entry at {@code offset}.
+	 *
+	 * @param offset the offset of the entry
+	 * @return the key
+	 */
+	private String keyAt(int offset) {
+		byte[] bytes = new byte[this.buffer.getInt(offset + Integer.BYTES)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = this.buffer.get(offset + ENTRY_HEADER_BYTES + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * Saving and opening -----------------------------------------------------
+	 */
+
+	/**
+	 * Writes {@code map} to the file named {@code fileName} in snapshot format,
+	 * replacing the file if it exists.
+	 *
+	 * @param map      the map to save
+	 * @param fileName the name of the file to write
+	 * @throws IOException if the file cannot be written, or the snapshot would
+	 *                     exceed {@code Integer.MAX_VALUE} bytes
+	 * @requires map is not null and fileName is not null
+	 * @ensures [file fileName holds the snapshot of map]
+	 */
+	public static void save(Map<String, Integer> map, String fileName) throws IOException {
+		assert map != null : "Violation of: map is not null";
+		assert fileName != null : "Violation of: fileName is not null";
+
+		int n = map.size();
+		if (n > MAXIMUM_CAPACITY / 2) {
+			throw new IOException("Too many entries for a snapshot: " + n);
+		}
+		String[] keys = new String[n];
+		byte[][] keyBytes = new byte[n][];
+		int[] values = new int[n];
+		int capacity = capacityFor(n);
+		long total = HEADER_BYTES + (long) capacity * SLOT_BYTES;
+		int i = 0;
+		for (Map.Pair<String, Integer> p : map) {
+			keys[i] = p.key();
+			keyBytes[i] = p.key().getBytes(StandardCharsets.UTF_8);
+			values[i] = p.value();
+			total += ENTRY_HEADER_BYTES + keyBytes[i].length;
+			i++;
+		}
+		if (total > Integer.MAX_VALUE) {
+			throw new IOException("Snapshot would exceed " + Integer.MAX_VALUE + " bytes");
+		}
+
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+				FileChannel channel = file.getChannel()) {
+			file.setLength(total);
+			MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, total);
+			out.putInt(0, MAGIC);
+			out.putInt(Integer.BYTES, n);
+			out.putInt(2 * Integer.BYTES, capacity);
+			// Mark every slot empty (a replaced file may have left other bytes)
+			int mask = capacity - 1;
+			for (int slot = 0; slot < capacity; slot++) {
+				out.putInt(HEADER_BYTES + slot * SLOT_BYTES + Integer.BYTES, 0);
+			}
+			int offset = HEADER_BYTES + capacity * SLOT_BYTES;
+			for (i = 0; i < n; i++) {
+				int h = hash(keys[i]);
+				int slot = h & mask;
+				while (out.getInt(HEADER_BYTES + slot * SLOT_BYTES + Integer.BYTES) != 0) {
+					slot = (slot + 1) & mask;
+				}
+				out.putInt(HEADER_BYTES + slot * SLOT_BYTES, h);
+				out.putInt(HEADER_BYTES + slot * SLOT_BYTES + Integer.BYTES, offset);
+				out.putInt(offset, values[i]);
+				out.putInt(offset + Integer.BYTES, keyBytes[i].length);
+				out.position(offset + ENTRY_HEADER_BYTES);
+				out.put(keyBytes[i]);
+				offset += ENTRY_HEADER_BYTES + keyBytes[i].length;
+			}
+			out.force();
+		}
+	}
+
+	/**
+	 * Opens the snapshot in the file named {@code fileName} by mapping it
+	 * read-only into memory. Takes time linear in the capacity of the index, to
+	 * check that every slot refers to an entry that lies inside the file, so
+	 * that lookups on a corrupt or truncated file cannot read past its end or
+	 * probe forever.
+	 *
+	 * @param fileName the name of the file to open
+	 * @return the snapshot
+	 * @throws IOException if the file cannot be read or is not a well-formed
+	 *                     snapshot
+	 * @requires fileName is not null
+	 * @ensures open = [the map saved in file fileName]
+	 */
+	public static Map4Snapshot open(String fileName) throws IOException {
+		assert fileName != null : "Violation of: fileName is not null";
+
+		// The mapping stays valid after the channel is closed
+		MappedByteBuffer in;
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "r");
+				FileChannel channel = file.getChannel()) {
+			long length = channel.size();
+			if (length < HEADER_BYTES || length > Integer.MAX_VALUE) {
+				throw new IOException(fileName + " is not a Map4 snapshot");
+			}
+			in = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+		}
+		int size = in.getInt(Integer.BYTES);
+		int capacity = in.getInt(2 * Integer.BYTES);
+		if (in.getInt(0) != MAGIC || size < 0 || capacity < 2 || capacity > MAXIMUM_CAPACITY
+				|| Integer.bitCount(capacity) != 1 || size > capacity / 2
+				|| HEADER_BYTES + (long) capacity * SLOT_BYTES > in.capacity()) {
+			throw new IOException(fileName + " is not a Map4 snapshot");
+		}
+		checkIndex(in, size, capacity, fileName);
+		return new Map4Snapshot(in, size, capacity);
+	}
+
+	/**
+	 * Checks that the index of the snapshot in {@code in} has exactly
+	 * {@code size} occupied slots, so every probe sequence reaches an empty
+	 * slot, and that each refers to an entry, key bytes included, lying between
+	 * the end of the index and the end of the file.
+	 *
+	 * @param in       the mapped file, whose header has been validated
+	 * @param size     the number of entries given by the header
+	 * @param capacity the number of index slots given by the header
+	 * @param fileName the name of the file, for the exception message
+	 * @throws IOException if the index is not well formed
+	 */
+	private static void checkIndex(ByteBuffer in, int size, int capacity, String fileName) throws IOException {
+		long firstEntry = HEADER_BYTES + (long) capacity * SLOT_BYTES;
+		long length = in.capacity();
+		int occupied = 0;
+		for (int slot = 0; slot < capacity; slot++) {
+			int offset = in.getInt(HEADER_BYTES + slot * SLOT_BYTES + Integer.BYTES);
+			if (offset != 0) {
+				occupied++;
+				if (offset < firstEntry || offset + (long) ENTRY_HEADER_BYTES > length) {
+					throw new IOException(fileName + ": index slot " + slot + " points outside the entries");
+				}
+				int keyLength = in.getInt(offset + Integer.BYTES);
+				if (keyLength < 0 || offset + (long) ENTRY_HEADER_BYTES + keyLength > length) {
+					throw new IOException(fileName + ": entry at " + offset + " runs past the end of the file");
+				}
+			}
+		}
+		if (occupied != size) {
+			throw new IOException(fileName + ": index holds " + occupied + " entries, header says " + size);
+		}
+	}
+
+	/*
+	 * Queries ----------------------------------------------------------------
+	 */
+
+	/**
+	 * Reports the number of entries.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Reports whether {@code key} is in the snapshot.
+	 *
+	 * @param key the key
+	 * @return true iff key is in DOMAIN(this)
+	 * @requires key is not null
+	 */
+	public boolean hasKey(String key) {
+		assert key != null : "Violation of: key is not null";
+
+		return this.find(key) != 0;
+	}
+
+	/**
+	 * Reports the value associated with {@code key}.
+	 *
+	 * @param key the key
+	 * @return the value associated with key
+	 * @requires key is not null and key is in DOMAIN(this)
+	 * @ensures value = this(key)
+	 */
+	public int value(String key) {
+		assert key != null : "Violation of: key is not null";
+		int offset = this.find(key);
+		assert offset != 0 : "Violation of: key is in DOMAIN(this)";
+
+		return this.buffer.getInt(offset);
+	}
+
+	/**
+	 * Reports the value associated with {@code key}, or {@code defaultValue} if
+	 * {@code key} is not in the snapshot.
+	 *
+	 * @param key          the key
+	 * @param defaultValue the value reported for an absent key
+	 * @return the value associated with key, or defaultValue
+	 * @requires key is not null
+	 * @ensures
+	 *
+	 *          <pre>
+	 * if key is in DOMAIN(this) then
+	 *   getOrDefault = this(key)
+	 * else
+	 *   getOrDefault = defaultValue
+	 *          </pre>
+	 */
+	public int getOrDefault(String key, int defaultValue) {
+		assert key != null : "Violation of: key is not null";
+
+		int offset = this.find(key);
+		int result = defaultValue;
+		if (offset != 0) {
+			result = this.buffer.getInt(offset);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a mutable {@code Map4} holding the entries of the snapshot.
+	 *
+	 * @return the entries of this as a {@code Map4}
+	 * @ensures toMap4 = this
+	 */
+	public Map4<String, Integer> toMap4() {
+		// Presized so that the copy does not rehash while it is filled
+		Map4<String, Integer> map = new Map4<>(this.capacity);
+		for (int slot = 0; slot < this.capacity; slot++) {
+			int offset = this.buffer.getInt(HEADER_BYTES + slot * SLOT_BYTES + Integer.BYTES);
+			if (offset != 0) {
+				map.add(this.keyAt(offset), this.buffer.getInt(offset));
+			}
+		}
+		return map;
+	}
+
+}
@@ -0,0 +1,431 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.map.Map;
+import components.map.MapSecondary;
+
+/**
+ * {@code Map} represented as an open-addressing hash table with linear probing,
+ * keeping keys and values in parallel arrays, with implementations of primary
+ * methods.
+ *
+ * <p>
+ * Unlike {@code Map4}, there are no bucket objects: a lookup probes
+ * consecutive slots of {@code keys} starting at the key's home slot until it
+ * finds the key or an empty slot. Removal uses backward-shift deletion (the
+ * entries following the removed one are moved back to close the gap), so the
+ * table never contains tombstones.
+ *
+ * @param <K> type of {@code Map} domain (key) entries
+ * @param <V> type of {@code Map} range (associated value) entries
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * HOME(
+ *   x: K,
+ *   n: integer
+ *  ): integer is
+ *  [computed result of x.hashCode(), spread as in HashTables.home] mod n
+ *
+ * PROBE_OK(
+ *   keys: string of K,
+ *   i: integer
+ *  ): boolean is
+ *  [no slot from HOME(keys[i], |keys|) up to, but excluding, slot i
+ *   (wrapping around the end of keys) holds null]
+ *                  </pre>
+ *
+ * @convention
+ *
+ *             <pre>
+ * |$this.keys| = |$this.values|  and
+ * [|$this.keys| is a power of 2]  and
+ * 0 < $this.minCapacity <= |$this.keys|  and
+ * 2 * $this.size <= |$this.keys|  and
+ * $this.size = [number of non-null entries in $this.keys]  and
+ * for all i: integer
+ *     where (0 <= i  and  i < |$this.keys|)
+ *   (($this.keys[i] = null) = ($this.values[i] = null)  and
+ *    ($this.keys[i] /= null  implies  PROBE_OK($this.keys, i)))  and
+ * [the non-null entries of $this.keys are pairwise distinct]  and
+ * 0 <= $this.scanStart < |$this.keys|
+ *             </pre>
+ *
+ * @correspondence
+ *
+ *                 <pre>
+ * this = {(x, y): (K, V)
+ *           where (there exists i: integer
+ *                    ($this.keys[i] = x  and  $this.values[i] = y))}
+ *                 </pre>
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Map4a<K, V> extends MapSecondary<K, V> {
+
+	/*
+	 * Private members --------------------------------------------------------
+	 */
+
+	/**
+	 * Default capacity (number of slots) of the table.
+	 */
+	private static final int DEFAULT_CAPACITY = 128;
+
+	/**
+	 * Largest capacity that will be allocated when growing.
+	 */
+	private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+	/**
+	 * The table shrinks once fewer than 1 / SHRINK_RATIO of its slots are used.
+	 */
+	private static final int SHRINK_RATIO = 8;
+
+	/**
+	 * Keys, indexed by slot; null marks an empty slot.
+	 */
+	private K[] keys;
+
+	/**
+	 * Values, indexed by slot (parallel to {@code keys}).
+	 */
+	private V[] values;
+
+	/**
+	 * Capacity below which the table never shrinks.
+	 */
+	private int minCapacity;
+
+	/**
+	 * Slot where {@code removeAny} starts looking for an entry.
+	 */
+	private int scanStart;
+
+	/**
+	 * Total size of abstract {@code this}.
+	 */
+	private int size;
+
+	/**
+	 * Creator of initial representation.
+	 *
+	 * @param capacity the number of slots
+	 * @requires [capacity is a power of 2]
+	 * @ensures
+	 *
+	 *          <pre>
+	 * |$this.keys| = capacity  and  $this.minCapacity = capacity  and
+	 * $this.size = 0  and  [all entries of $this.keys and $this.values are null]
+	 *          </pre>
+	 */
+	private void createNewRep(int capacity) {
+		this.size = 0;
+		this.minCapacity = capacity;
+		this.scanStart = 0;
+		this.allocate(capacity);
+	}
+
+	/**
+	 * Replaces {@code keys} and {@code values} with empty arrays of length
+	 * {@code capacity}.
+	 *
+	 * @param capacity the number of slots
+	 * @requires [capacity is a power of 2]
+	 * @ensures |$this.keys| = capacity and [all entries are null]
+	 */
+	@SuppressWarnings("unchecked")
+	private void allocate(int capacity) {
+		/*
+		 * With "new K[...]" in place of "new Object[...]" it does not compile; as
+		 * shown, it results in a warning about an unchecked cast, though it cannot
+		 * fail.
+		 */
+		this.keys = (K[]) new Object[capacity];
+		this.values = (V[]) new Object[capacity];
+	}
+
+	/**
+	 * Returns the slot holding {@code key}, or the empty slot that ends its probe
+	 * sequence if {@code key} is not in {@code this}.
+	 *
+	 * @param key the key
+	 * @return the slot for {@code key}
+	 * @ensures
+	 *
+	 *          <pre>
+	 * $this.keys[slotOf] = key  or
+	 * ($this.keys[slotOf] = null  and  key is not in DOMAIN(this))
+	 *          </pre>
+	 */
+	private int slotOf(K key) {
+		int mask = this.keys.length - 1;
+		int i = HashTables.home(key, this.keys.length);
+		while (this.keys[i] != null && !this.keys[i].equals(key)) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * Empties slot {@code i}, shifting back later entries of the same probe run
+	 * so that every remaining entry is still reachable from its home slot.
+	 *
+	 * @param i the slot to empty
+	 * @requires $this.keys[i] /= null
+	 * @ensures this = #this \ {(#$this.keys[i], #$this.values[i])}
+	 */
+	private void deleteSlot(int i) {
+		int mask = this.keys.length - 1;
+		int hole = i;
+		int j = (i + 1) & mask;
+		while (this.keys[j] != null) {
+			int distanceFromHome = (j - HashTables.home(this.keys[j], this.keys.length)) & mask;
+			int distanceFromHole = (j - hole) & mask;
+			// The entry may fill the hole only if its home is not after the hole
+			if (distanceFromHome >= distanceFromHole) {
+				this.keys[hole] = this.keys[j];
+				this.values[hole] = this.values[j];
+				hole = j;
+			}
+			j = (j + 1) & mask;
+		}
+		this.keys[hole] = null;
+		this.values[hole] = null;
+	}
+
+	/**
+	 * Moves every entry into a new table of {@code capacity} slots.
+	 *
+	 * @param capacity the new number of slots
+	 * @requires [capacity is a power of 2] and 2 * $this.size <= capacity
+	 * @ensures this = #this and |$this.keys| = capacity
+	 */
+	private void resize(int capacity) {
+		K[] oldKeys = this.keys;
+		V[] oldValues = this.values;
+		this.allocate(capacity);
+		this.scanStart = 0;
+		int mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int j = HashTables.home(oldKeys[i], capacity);
+				while (this.keys[j] != null) {
+					j = (j + 1) & mask;
+				}
+				this.keys[j] = oldKeys[i];
+				this.values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/*
+	 * Constructors -----------------------------------------------------------
+	 */
+
+	/**
+	 * No-argument constructor.
+	 */
+	public Map4a() {
+
+		this.createNewRep(DEFAULT_CAPACITY);
+
+	}
+
+	/**
+	 * Constructor resulting in a table with at least {@code capacity} slots.
+	 *
+	 * @param capacity minimum number of slots in the table
+	 * @requires 0 < capacity <= 2^30
+	 * @ensures this = {}
+	 */
+	public Map4a(int capacity) {
+		assert capacity > 0 : "Violation of: capacity > 0";
+		assert capacity <= MAXIMUM_CAPACITY : "Violation of: capacity <= 2^30";
+
+		this.createNewRep(HashTables.powerOfTwoAtLeast(capacity));
+	}
+
+	/*
+	 * Standard methods -------------------------------------------------------
+	 */
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public final Map<K, V> newInstance() {
+		try {
+			return this.getClass().getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError("Cannot construct object of type " + this.getClass());
+		}
+	}
+
+	@Override
+	public final void clear() {
+		this.createNewRep(DEFAULT_CAPACITY);
+	}
+
+	@Override
+	public final void transferFrom(Map<K, V> source) {
+		assert source != null : "Violation of: source is not null";
+		assert source != this : "Violation of: source is not this";
+		assert source instanceof Map4a<?, ?> : "" + "Violation of: source is of dynamic type Map4a<?,?>";
+		/*
+		 * This cast cannot fail since the assert above would have stopped execution in
+		 * that case: source must be of dynamic type Map4a<?,?>, and the ?,? must be K,V
+		 * or the call would not have compiled.
+		 */
+		Map4a<K, V> localSource = (Map4a<K, V>) source;
+		this.keys = localSource.keys;
+		this.values = localSource.values;
+		this.minCapacity = localSource.minCapacity;
+		this.scanStart = localSource.scanStart;
+		this.size = localSource.size;
+		localSource.createNewRep(DEFAULT_CAPACITY);
+	}
+
+	/*
+	 * Kernel methods ---------------------------------------------------------
+	 */
+
+	@Override
+	public final void add(K key, V value) {
+		assert key != null : "Violation of: key is not null";
+		assert value != null : "Violation of: value is not null";
+		assert !this.hasKey(key) : "Violation of: key is not in DOMAIN(this)";
+
+		int i = this.slotOf(key);
+		this.keys[i] = key;
+		this.values[i] = value;
+		this.size++;
+
+		// Keep at most half of the slots in use so probe runs stay short
+		if (2 * this.size > this.keys.length && this.keys.length < MAXIMUM_CAPACITY) {
+			this.resize(2 * this.keys.length);
+		}
+	}
+
+	@Override
+	public final Pair<K, V> remove(K key) {
+		assert key != null : "Violation of: key is not null";
+		assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+		int i = this.slotOf(key);
+		Map.Pair<K, V> removedPair = new HashTables.SimplePair<>(this.keys[i], this.values[i]);
+		this.deleteSlot(i);
+		this.size--;
+
+		if (this.keys.length > this.minCapacity && SHRINK_RATIO * this.size < this.keys.length) {
+			this.resize(this.keys.length / 2);
+		}
+		return removedPair;
+	}
+
+	@Override
+	public final Pair<K, V> removeAny() {
+		assert this.size() > 0 : "Violation of: this /= empty_set";
+
+		/*
+		 * Resume scanning where the last removeAny stopped: the slots before it were
+		 * found empty and a backward shift only moves entries into the slot just
+		 * emptied, never before it, so draining the map scans the table once.
+		 */
+		int mask = this.keys.length - 1;
+		int i = this.scanStart;
+		while (this.keys[i] == null) {
+			i = (i + 1) & mask;
+		}
+		this.scanStart = i;
+		Map.Pair<K, V> removedPair = new HashTables.SimplePair<>(this.keys[i], this.values[i]);
+		this.deleteSlot(i);
+		this.size--;
+
+		if (this.keys.length > this.minCapacity && SHRINK_RATIO * this.size < this.keys.length) {
+			this.resize(this.keys.length / 2);
+		}
+		return removedPair;
+	}
+
+	@Override
+	public final V value(K key) {
+		assert key != null : "Violation of: key is not null";
+		assert this.hasKey(key) : "Violation of: key is in DOMAIN(this)";
+
+		return this.values[this.slotOf(key)];
+	}
+
+	@Override
+	public final boolean hasKey(K key) {
+		assert key != null : "Violation of: key is not null";
+
+		return this.keys[this.slotOf(key)] != null;
+	}
+
+	@Override
+	public final int size() {
+
+		return this.size;
+	}
+
+	@Override
+	public final Iterator<Pair<K, V>> iterator() {
+		return new Map4aIterator();
+	}
+
+	/**
+	 * Implementation of {@code Iterator} interface for {@code Map4a}.
+	 */
+	private final class Map4aIterator implements Iterator<Pair<K, V>> {
+
+		/**
+		 * Number of elements seen already (i.e., |~this.seen|).
+		 */
+		private int numberSeen;
+
+		/**
+		 * Slot from which the next element will come (or before it).
+		 */
+		private int currentSlot;
+
+		/**
+		 * No-argument constructor.
+		 */
+		Map4aIterator() {
+			this.numberSeen = 0;
+			this.currentSlot = 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.numberSeen < Map4a.this.size;
+		}
+
+		@Override
+		public Pair<K, V> next() {
+			assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+			if (!this.hasNext()) {
+				/*
+				 * Exception is supposed to be thrown in this case, but with assertion-checking
+				 * enabled it cannot happen because of assert above.
+				 */
+				throw new NoSuchElementException();
+			}
+			this.numberSeen++;
+			while (Map4a.this.keys[this.currentSlot] == null) {
+				this.currentSlot++;
+			}
+			Pair<K, V> next = new HashTables.SimplePair<>(Map4a.this.keys[this.currentSlot],
+					Map4a.this.values[this.currentSlot]);
+			this.currentSlot++;
+			return next;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("remove operation not supported");
+		}
+
+	}
+
+}
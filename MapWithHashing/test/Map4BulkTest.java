@@ -0,0 +1,170 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code Map4}'s bulk-loading methods
+ * {@code ensureCapacity} and {@code addAll}.
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Map4BulkTest {
+
+	/**
+	 * Number of entries in the larger tests.
+	 */
+	private static final int N = 50000;
+
+	/**
+	 * Returns the keys "k0", "k1", ... of the larger tests, offset by
+	 * {@code first}.
+	 *
+	 * @param first the number of the first key
+	 * @param n     the number of keys
+	 * @return the keys
+	 */
+	private static String[] keys(int first, int n) {
+		String[] keys = new String[n];
+		for (int i = 0; i < n; i++) {
+			keys[i] = "k" + (first + i);
+		}
+		return keys;
+	}
+
+	/**
+	 * Returns a {@code Map1L} holding (keys[i], values[i]) for all i.
+	 *
+	 * @param keys   the keys
+	 * @param values the values
+	 * @return the map
+	 */
+	private static Map<String, Integer> reference(String[] keys, Integer[] values) {
+		Map<String, Integer> map = new Map1L<String, Integer>();
+		for (int i = 0; i < keys.length; i++) {
+			map.add(keys[i], values[i]);
+		}
+		return map;
+	}
+
+	/**
+	 * Returns the values 0, 1, ..., n - 1.
+	 *
+	 * @param n the number of values
+	 * @return the values
+	 */
+	private static Integer[] values(int n) {
+		Integer[] values = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			values[i] = i;
+		}
+		return values;
+	}
+
+	@Test
+	public final void testAddAllEmptyArrays() {
+		Map4<String, Integer> m = new Map4<String, Integer>();
+		Map<String, Integer> n = new Map1L<String, Integer>();
+
+		m.addAll(new String[0], new Integer[0], false);
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testAddAllSequential() {
+		String[] keys = keys(0, N);
+		Integer[] values = values(N);
+		Map4<String, Integer> m = new Map4<String, Integer>();
+		Map<String, Integer> n = reference(keys, values);
+
+		m.addAll(keys, values, false);
+		assertEquals(n, m);
+		assertEquals(1, m.statistics().growths());
+	}
+
+	@Test
+	public final void testAddAllParallel() {
+		String[] keys = keys(0, N);
+		Integer[] values = values(N);
+		Map4<String, Integer> m = new Map4<String, Integer>(1, 0.5, HashSpreader.MURMUR, true);
+		Map<String, Integer> n = reference(keys, values);
+
+		m.addAll(keys, values, true);
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testAddAllToNonEmpty() {
+		String[] keys = keys(0, N);
+		Integer[] values = values(N);
+		Map4<String, Integer> m = new Map4<String, Integer>(1);
+		Map<String, Integer> n = reference(keys, values);
+		// Leave a rehash in progress before the bulk add
+		for (int i = 0; i < 100; i++) {
+			m.add(keys[i], values[i]);
+		}
+		String[] rest = new String[N - 100];
+		Integer[] restValues = new Integer[N - 100];
+		System.arraycopy(keys, 100, rest, 0, rest.length);
+		System.arraycopy(values, 100, restValues, 0, rest.length);
+
+		m.addAll(rest, restValues, true);
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testAddAllIterable() {
+		Map<String, Integer> source = reference(keys(0, N), values(N));
+		Map4<String, Integer> m = new Map4<String, Integer>();
+		m.add("extra", -1);
+		Map<String, Integer> n = reference(keys(0, N), values(N));
+		n.add("extra", -1);
+
+		m.addAll(source);
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testAddAllIterableOfUnknownSize() {
+		Map<String, Integer> source = reference(keys(0, N), values(N));
+		Map4<String, Integer> m = new Map4<String, Integer>();
+		Map<String, Integer> n = reference(keys(0, N), values(N));
+
+		// Not a Collection or a Map, so addAll cannot presize from it
+		m.addAll(() -> source.iterator());
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testEnsureCapacity() {
+		Map4<Integer, Integer> m = new Map4<Integer, Integer>(1);
+		m.ensureCapacity(N);
+		m.resetStatistics();
+		for (int i = 0; i < N; i++) {
+			m.add(i, i);
+		}
+
+		assertEquals(N, m.size());
+		assertEquals(0, m.statistics().growths());
+	}
+
+	@Test
+	public final void testEnsureCapacityKeepsEntries() {
+		String[] keys = keys(0, 1000);
+		Integer[] values = values(1000);
+		Map4<String, Integer> m = new Map4<String, Integer>(1);
+		Map<String, Integer> n = reference(keys, values);
+		for (int i = 0; i < keys.length; i++) {
+			m.add(keys[i], values[i]);
+		}
+
+		m.ensureCapacity(N);
+		assertEquals(n, m);
+		m.ensureCapacity(1);
+		assertEquals(n, m);
+	}
+
+}
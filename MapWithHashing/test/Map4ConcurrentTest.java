@@ -0,0 +1,67 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * Customized JUnit test fixture for {@code Map4Concurrent} using default
+ * constructor, plus a test of concurrent counting with {@code merge}.
+ */
+public class Map4ConcurrentTest extends MapTest {
+
+    /**
+     * Number of threads used in the concurrent test.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Number of increments each thread makes to each key.
+     */
+    private static final int INCREMENTS = 2000;
+
+    /**
+     * Number of distinct keys in the concurrent test.
+     */
+    private static final int KEYS = 50;
+
+    @Override
+    protected final Map<String, String> constructorTest() {
+        return new Map4Concurrent<String, String>();
+    }
+
+    @Override
+    protected final Map<String, String> constructorRef() {
+        return new Map1L<String, String>();
+    }
+
+    @Test
+    public final void testConcurrentMerge() throws InterruptedException {
+        final Map4Concurrent<String, Integer> m = new Map4Concurrent<String, Integer>(
+                2);
+        Map<String, Integer> n = new Map1L<String, Integer>();
+        for (int k = 0; k < KEYS; k++) {
+            n.add("key" + k, THREADS * INCREMENTS);
+        }
+
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < INCREMENTS; i++) {
+                    for (int k = 0; k < KEYS; k++) {
+                        m.merge("key" + k, 1, Integer::sum);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(n, m);
+        assertEquals(KEYS, m.size());
+    }
+
+}
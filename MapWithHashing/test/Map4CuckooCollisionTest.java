@@ -0,0 +1,101 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code Map4Cuckoo} with keys whose hash codes are
+ * equal, which compete for the same two slots.
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Map4CuckooCollisionTest {
+
+	/**
+	 * Returns the {@code i}-th string made of three blocks, each "Aa" or "BB";
+	 * all such strings have the same hash code.
+	 *
+	 * @param i the number of the string
+	 * @return the string
+	 * @requires 0 <= i < 8
+	 */
+	private static String collidingKey(int i) {
+		StringBuilder key = new StringBuilder();
+		for (int bit = 0; bit < 3; bit++) {
+			if ((i & (1 << bit)) == 0) {
+				key.append("Aa");
+			} else {
+				key.append("BB");
+			}
+		}
+		return key.toString();
+	}
+
+	@Test
+	public final void testSixCollidingKeysFit() {
+		Map4Cuckoo<String, Integer> m = new Map4Cuckoo<String, Integer>();
+		Map<String, Integer> n = new Map1L<String, Integer>();
+		for (int i = 0; i < 6; i++) {
+			assertEquals(collidingKey(0).hashCode(), collidingKey(i).hashCode());
+			m.add(collidingKey(i), i);
+			n.add(collidingKey(i), i);
+		}
+
+		assertEquals(n, m);
+		m.remove(collidingKey(2));
+		n.remove(collidingKey(2));
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testManyCollidingKeysOverflow() {
+		Map4Cuckoo<String, Integer> m = new Map4Cuckoo<String, Integer>();
+		Map<String, Integer> n = new Map1L<String, Integer>();
+		for (int i = 0; i < 8; i++) {
+			m.add(collidingKey(i), i);
+			n.add(collidingKey(i), i);
+		}
+
+		assertEquals(n, m);
+		for (int i = 0; i < 8; i++) {
+			assertTrue(m.hasKey(collidingKey(i)));
+			assertEquals(Integer.valueOf(i), m.value(collidingKey(i)));
+		}
+		assertEquals(n.remove(collidingKey(7)), m.remove(collidingKey(7)));
+		assertEquals(n.remove(collidingKey(1)), m.remove(collidingKey(1)));
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testCollidingKeysSurviveGrowthAndRemoveAny() {
+		Map4Cuckoo<String, Integer> m = new Map4Cuckoo<String, Integer>();
+		Map<String, Integer> n = new Map1L<String, Integer>();
+		for (int i = 0; i < 8; i++) {
+			m.add(collidingKey(i), i);
+			n.add(collidingKey(i), i);
+		}
+		// Enough other keys to force the tables to grow several times
+		for (int i = 0; i < 1000; i++) {
+			m.add("k" + i, -i);
+			n.add("k" + i, -i);
+		}
+
+		assertEquals(n, m);
+		int count = 0;
+		for (Map.Pair<String, Integer> p : m) {
+			assertEquals(n.value(p.key()), p.value());
+			count++;
+		}
+		assertEquals(n.size(), count);
+		while (m.size() > 0) {
+			Map.Pair<String, Integer> p = m.removeAny();
+			assertEquals(n.remove(p.key()), p);
+		}
+		assertEquals(0, n.size());
+	}
+
+}
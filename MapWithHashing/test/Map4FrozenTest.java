@@ -0,0 +1,144 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code Map4.freeze} and {@code Map4Frozen}.
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Map4FrozenTest {
+
+	/**
+	 * Returns a map holding the entries of {@code frozen}, collected through
+	 * its iterator.
+	 *
+	 * @param frozen the frozen map
+	 * @return the entries of frozen
+	 */
+	private static <K, V> Map<K, V> entries(Map4Frozen<K, V> frozen) {
+		Map<K, V> result = new Map1L<>();
+		for (Map.Pair<K, V> p : frozen) {
+			result.add(p.key(), p.value());
+		}
+		return result;
+	}
+
+	@Test
+	public final void testEmpty() {
+		Map4<String, Integer> m = new Map4<String, Integer>();
+		Map4Frozen<String, Integer> f = m.freeze();
+
+		assertEquals(0, f.size());
+		assertFalse(f.hasKey("the"));
+		assertFalse(f.iterator().hasNext());
+	}
+
+	@Test
+	public final void testLookups() {
+		Map4<String, Integer> m = new Map4<String, Integer>();
+		m.add("the", 3);
+		m.add("quick", -1);
+		m.add("", 0);
+		Map4Frozen<String, Integer> f = m.freeze();
+
+		assertEquals(3, f.size());
+		assertEquals(Integer.valueOf(3), f.value("the"));
+		assertEquals(Integer.valueOf(-1), f.value("quick"));
+		assertEquals(Integer.valueOf(0), f.value(""));
+		assertFalse(f.hasKey("fox"));
+		assertEquals(m, entries(f));
+	}
+
+	@Test
+	public final void testUnaffectedByLaterChanges() {
+		Map4<String, Integer> m = new Map4<String, Integer>();
+		m.add("the", 3);
+		Map4Frozen<String, Integer> f = m.freeze();
+		m.add("fox", 5);
+		m.remove("the");
+
+		assertEquals(1, f.size());
+		assertTrue(f.hasKey("the"));
+		assertFalse(f.hasKey("fox"));
+	}
+
+	@Test
+	public final void testManyKeys() {
+		final int n = 50000;
+		Map4<Integer, Integer> m = new Map4<Integer, Integer>();
+		for (int i = 0; i < n; i++) {
+			m.add(i * 7919, -i);
+		}
+		Map4Frozen<Integer, Integer> f = m.freeze();
+
+		assertEquals(n, f.size());
+		for (int i = 0; i < n; i++) {
+			assertEquals(Integer.valueOf(-i), f.value(i * 7919));
+			assertFalse(f.hasKey(i * 7919 + 1));
+		}
+		assertEquals(m, entries(f));
+	}
+
+	@Test
+	public final void testEqualHashCodes() {
+		// "Aa" and "BB" have the same hash code, so all 8 keys collide
+		String[] halves = { "Aa", "BB" };
+		Map4<String, Integer> m = new Map4<String, Integer>();
+		int v = 0;
+		for (String a : halves) {
+			for (String b : halves) {
+				for (String c : halves) {
+					m.add(a + b + c, v);
+					v++;
+				}
+			}
+		}
+		m.add("x", v);
+		Map4Frozen<String, Integer> f = m.freeze();
+
+		assertEquals(m.size(), f.size());
+		for (Map.Pair<String, Integer> p : m) {
+			assertTrue(f.hasKey(p.key()));
+			assertEquals(p.value(), f.value(p.key()));
+		}
+		assertFalse(f.hasKey("AaAaAb"));
+		assertFalse(f.hasKey("AaAa"));
+		assertEquals(m, entries(f));
+	}
+
+	@Test
+	public final void testConcurrentReaders() throws InterruptedException {
+		final int n = 10000;
+		final int threads = 4;
+		Map4<String, Integer> m = new Map4<String, Integer>();
+		for (int i = 0; i < n; i++) {
+			m.add("k" + i, i);
+		}
+		Map4Frozen<String, Integer> f = m.freeze();
+		boolean[] ok = new boolean[threads];
+		Thread[] readers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			readers[t] = new Thread(() -> {
+				boolean good = true;
+				for (int i = 0; i < n; i++) {
+					good = good && f.value("k" + i) == i;
+				}
+				ok[id] = good;
+			});
+			readers[t].start();
+		}
+		for (int t = 0; t < threads; t++) {
+			readers[t].join();
+			assertTrue(ok[t]);
+		}
+	}
+
+}
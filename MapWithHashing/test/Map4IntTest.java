@@ -0,0 +1,148 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code Map4Int}'s kernel methods and its counting
+ * methods {@code addTo} and {@code getOrDefault}.
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Map4IntTest {
+
+	/**
+	 * Creates and returns a {@code Map4Int<String>} with the given entries.
+	 *
+	 * @param args the (key, value) pairs for the map, as alternating keys and
+	 *             decimal values
+	 * @return the constructed map
+	 * @requires
+	 *
+	 *           <pre>
+	 * [args.length is even]  and
+	 * [the 'key' entries in args are unique]
+	 *           </pre>
+	 *
+	 * @ensures createFromArgsTest = [pairs in args]
+	 */
+	private static Map4Int<String> createFromArgsTest(String... args) {
+		assert args.length % 2 == 0 : "Violation of: args.length is even";
+		Map4Int<String> map = new Map4Int<String>(1);
+		for (int i = 0; i < args.length; i += 2) {
+			map.add(args[i], Integer.parseInt(args[i + 1]));
+		}
+		return map;
+	}
+
+	/**
+	 * Creates and returns a {@code Map1L<String, Integer>} with the given
+	 * entries.
+	 *
+	 * @param args the (key, value) pairs for the map, as alternating keys and
+	 *             decimal values
+	 * @return the constructed map
+	 * @requires
+	 *
+	 *           <pre>
+	 * [args.length is even]  and
+	 * [the 'key' entries in args are unique]
+	 *           </pre>
+	 *
+	 * @ensures createFromArgsRef = [pairs in args]
+	 */
+	private static Map<String, Integer> createFromArgsRef(String... args) {
+		assert args.length % 2 == 0 : "Violation of: args.length is even";
+		Map<String, Integer> map = new Map1L<String, Integer>();
+		for (int i = 0; i < args.length; i += 2) {
+			map.add(args[i], Integer.parseInt(args[i + 1]));
+		}
+		return map;
+	}
+
+	@Test
+	public final void testConstructor() {
+		Map<String, Integer> m = new Map4Int<String>();
+		Map<String, Integer> n = new Map1L<String, Integer>();
+
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testAddAndValue() {
+		Map4Int<String> m = createFromArgsTest("the", "3", "quick", "-1", "fox", "0");
+		Map<String, Integer> n = createFromArgsRef("the", "3", "quick", "-1", "fox", "0");
+
+		assertEquals(n, m);
+		assertEquals(Integer.valueOf(-1), m.value("quick"));
+	}
+
+	@Test
+	public final void testRemove() {
+		Map4Int<String> m = createFromArgsTest("the", "3", "quick", "1", "fox", "2");
+		Map<String, Integer> n = createFromArgsRef("the", "3", "fox", "2");
+
+		Map.Pair<String, Integer> p = m.remove("quick");
+		assertEquals("quick", p.key());
+		assertEquals(Integer.valueOf(1), p.value());
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testRemoveAnyToEmpty() {
+		Map4Int<String> m = createFromArgsTest("the", "3", "quick", "1", "fox", "2");
+		Map<String, Integer> n = createFromArgsRef("the", "3", "quick", "1", "fox", "2");
+
+		while (m.size() > 0) {
+			Map.Pair<String, Integer> p = m.removeAny();
+			assertEquals(n.remove(p.key()).value(), p.value());
+		}
+		assertEquals(0, n.size());
+	}
+
+	@Test
+	public final void testAddToAbsent() {
+		Map4Int<String> m = createFromArgsTest("the", "3");
+		Map<String, Integer> n = createFromArgsRef("the", "3", "fox", "5");
+
+		int result = m.addTo("fox", 5);
+		assertEquals(5, result);
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testAddToPresent() {
+		Map4Int<String> m = createFromArgsTest("the", "3", "fox", "5");
+		Map<String, Integer> n = createFromArgsRef("the", "1", "fox", "5");
+
+		int result = m.addTo("the", -2);
+		assertEquals(1, result);
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testAddToCountsWords() {
+		Map4Int<String> m = new Map4Int<String>(1);
+		Map<String, Integer> n = createFromArgsRef("a", "3", "b", "2", "c", "1");
+
+		String[] words = { "a", "b", "a", "c", "b", "a" };
+		for (String w : words) {
+			m.addTo(w, 1);
+		}
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testGetOrDefault() {
+		Map4Int<String> m = createFromArgsTest("the", "3");
+		Map<String, Integer> n = createFromArgsRef("the", "3");
+
+		assertEquals(3, m.getOrDefault("the", 0));
+		assertEquals(-7, m.getOrDefault("fox", -7));
+		assertEquals(n, m);
+	}
+
+}
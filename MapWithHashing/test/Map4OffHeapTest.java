@@ -0,0 +1,202 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for {@code Map4OffHeap}'s kernel methods, its counting
+ * methods {@code addTo} and {@code getOrDefault}, and its handling of
+ * non-ASCII keys and of removed keys.
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Map4OffHeapTest {
+
+	/**
+	 * Creates and returns a {@code Map4OffHeap} with the given entries.
+	 *
+	 * @param args the (key, value) pairs for the map, as alternating keys and
+	 *             decimal values
+	 * @return the constructed map
+	 * @requires
+	 *
+	 *           <pre>
+	 * [args.length is even]  and
+	 * [the 'key' entries in args are unique]
+	 *           </pre>
+	 *
+	 * @ensures createFromArgsTest = [pairs in args]
+	 */
+	private static Map4OffHeap createFromArgsTest(String... args) {
+		assert args.length % 2 == 0 : "Violation of: args.length is even";
+		Map4OffHeap map = new Map4OffHeap(1);
+		for (int i = 0; i < args.length; i += 2) {
+			map.add(args[i], Integer.parseInt(args[i + 1]));
+		}
+		return map;
+	}
+
+	/**
+	 * Creates and returns a {@code Map1L<String, Integer>} with the given
+	 * entries.
+	 *
+	 * @param args the (key, value) pairs for the map, as alternating keys and
+	 *             decimal values
+	 * @return the constructed map
+	 * @requires
+	 *
+	 *           <pre>
+	 * [args.length is even]  and
+	 * [the 'key' entries in args are unique]
+	 *           </pre>
+	 *
+	 * @ensures createFromArgsRef = [pairs in args]
+	 */
+	private static Map<String, Integer> createFromArgsRef(String... args) {
+		assert args.length % 2 == 0 : "Violation of: args.length is even";
+		Map<String, Integer> map = new Map1L<String, Integer>();
+		for (int i = 0; i < args.length; i += 2) {
+			map.add(args[i], Integer.parseInt(args[i + 1]));
+		}
+		return map;
+	}
+
+	@Test
+	public final void testConstructor() {
+		Map<String, Integer> m = new Map4OffHeap();
+		Map<String, Integer> n = new Map1L<String, Integer>();
+
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testAddAndValue() {
+		Map4OffHeap m = createFromArgsTest("the", "3", "quick", "-1", "fox", "0");
+		Map<String, Integer> n = createFromArgsRef("the", "3", "quick", "-1", "fox", "0");
+
+		assertEquals(n, m);
+		assertEquals(Integer.valueOf(-1), m.value("quick"));
+	}
+
+	@Test
+	public final void testRemove() {
+		Map4OffHeap m = createFromArgsTest("the", "3", "quick", "1", "fox", "2");
+		Map<String, Integer> n = createFromArgsRef("the", "3", "fox", "2");
+
+		Map.Pair<String, Integer> p = m.remove("quick");
+		assertEquals("quick", p.key());
+		assertEquals(Integer.valueOf(1), p.value());
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testRemoveAnyToEmpty() {
+		Map4OffHeap m = createFromArgsTest("the", "3", "quick", "1", "fox", "2");
+		Map<String, Integer> n = createFromArgsRef("the", "3", "quick", "1", "fox", "2");
+
+		while (m.size() > 0) {
+			Map.Pair<String, Integer> p = m.removeAny();
+			assertEquals(n.remove(p.key()).value(), p.value());
+		}
+		assertEquals(0, n.size());
+	}
+
+	@Test
+	public final void testAddToAbsent() {
+		Map4OffHeap m = createFromArgsTest("the", "3");
+		Map<String, Integer> n = createFromArgsRef("the", "3", "fox", "5");
+
+		int result = m.addTo("fox", 5);
+		assertEquals(5, result);
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testAddToPresent() {
+		Map4OffHeap m = createFromArgsTest("the", "3", "fox", "5");
+		Map<String, Integer> n = createFromArgsRef("the", "1", "fox", "5");
+
+		int result = m.addTo("the", -2);
+		assertEquals(1, result);
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testAddToCountsWords() {
+		Map4OffHeap m = new Map4OffHeap(1);
+		Map<String, Integer> n = createFromArgsRef("a", "3", "b", "2", "c", "1");
+
+		String[] words = { "a", "b", "a", "c", "b", "a" };
+		for (String w : words) {
+			m.addTo(w, 1);
+		}
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testGetOrDefault() {
+		Map4OffHeap m = createFromArgsTest("the", "3");
+		Map<String, Integer> n = createFromArgsRef("the", "3");
+
+		assertEquals(3, m.getOrDefault("the", 0));
+		assertEquals(-7, m.getOrDefault("fox", -7));
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testNonAsciiKeys() {
+		String[] keys = { "caf\u00e9", "na\u00efve", "\u65e5\u672c", "\ud83d\ude00", "", "?" };
+		Map4OffHeap m = new Map4OffHeap(1);
+		Map<String, Integer> n = new Map1L<String, Integer>();
+		for (int i = 0; i < keys.length; i++) {
+			m.add(keys[i], i);
+			n.add(keys[i], i);
+		}
+
+		assertEquals(n, m);
+		assertEquals(Integer.valueOf(3), m.value("\ud83d\ude00"));
+		assertEquals(-1, m.getOrDefault("caf\u00e9s", -1));
+		assertEquals(-1, m.getOrDefault("caf", -1));
+	}
+
+	@Test
+	public final void testManyWithRemovals() {
+		final int count = 20000;
+		Map4OffHeap m = new Map4OffHeap(1);
+		Map<String, Integer> n = new Map1L<String, Integer>();
+		for (int i = 0; i < count; i++) {
+			m.add("word" + i, i);
+			n.add("word" + i, i);
+		}
+		// Removing most keys leaves the arena mostly garbage, so adding compacts it
+		for (int i = 0; i < count; i += 4) {
+			for (int j = i; j < i + 3; j++) {
+				m.remove("word" + j);
+				n.remove("word" + j);
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			m.addTo("again" + i, i);
+			n.add("again" + i, i);
+		}
+
+		assertEquals(n, m);
+	}
+
+	@Test
+	public final void testTransferFrom() {
+		Map4OffHeap m = createFromArgsTest("the", "3", "fox", "5");
+		Map4OffHeap t = new Map4OffHeap();
+		Map<String, Integer> n = createFromArgsRef("the", "3", "fox", "5");
+
+		t.transferFrom(m);
+		assertEquals(n, t);
+		assertEquals(0, m.size());
+		m.add("dog", 1);
+		assertEquals(Integer.valueOf(1), m.value("dog"));
+	}
+
+}
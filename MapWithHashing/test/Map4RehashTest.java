@@ -0,0 +1,149 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code Map4}'s incremental rehashing: it checks, from
+ * the bucket counts reported by {@code statistics()}, that every rehash is
+ * finished a few buckets at a time before the table is resized again.
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Map4RehashTest {
+
+	/**
+	 * Number of entries in the tests.
+	 */
+	private static final int N = 3000;
+
+	/**
+	 * Tracks the buckets moved by each operation on a {@code Map4}.
+	 */
+	private static final class Tracker {
+
+		/**
+		 * The map being observed.
+		 */
+		private final Map4<Integer, Integer> map;
+
+		/**
+		 * Buckets of the old table not yet moved.
+		 */
+		private int remaining;
+
+		/**
+		 * Most buckets moved by a single operation.
+		 */
+		private int maxMoved;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param map the map to observe
+		 */
+		Tracker(Map4<Integer, Integer> map) {
+			this.map = map;
+			this.remaining = 0;
+			this.maxMoved = 0;
+		}
+
+		/**
+		 * Runs {@code op} on the map, checking that it does not have to finish a
+		 * rehash left over from an earlier resize.
+		 *
+		 * @param op the operation
+		 */
+		void run(Runnable op) {
+			Map4.Statistics before = this.map.statistics();
+			op.run();
+			Map4.Statistics after = this.map.statistics();
+			int moved;
+			if (after.growths() + after.shrinks() == before.growths() + before.shrinks()) {
+				moved = before.buckets() - after.buckets();
+				this.remaining -= moved;
+			} else {
+				// The old rehash must end within this operation's usual share
+				moved = this.remaining;
+				this.remaining = before.buckets() - moved;
+			}
+			assertTrue(this.remaining >= 0);
+			this.maxMoved = Math.max(this.maxMoved, moved);
+		}
+
+	}
+
+	/**
+	 * Fills a map and then drains it with {@code remove} or {@code removeAny},
+	 * checking the work done by each operation.
+	 *
+	 * @param m          the empty map
+	 * @param loadFactor the load factor of m
+	 * @param removeAny  whether to drain with removeAny rather than remove
+	 */
+	private static void fillAndDrain(Map4<Integer, Integer> m, double loadFactor, boolean removeAny) {
+		Tracker t = new Tracker(m);
+		for (int i = 0; i < N; i++) {
+			final int k = i;
+			t.run(() -> m.add(k, k));
+		}
+		for (int i = 0; i < N; i++) {
+			final int k = i;
+			if (removeAny) {
+				t.run(() -> m.removeAny());
+			} else {
+				t.run(() -> m.remove(k));
+			}
+		}
+		assertEquals(0, m.size());
+		assertTrue(m.statistics().shrinks() > 0);
+		// About 8 / loadFactor buckets per operation just after a shrink
+		assertTrue(t.maxMoved <= 12 / loadFactor);
+	}
+
+	@Test
+	public final void testDrainWithRemove() {
+		fillAndDrain(new Map4<Integer, Integer>(1), 0.75, false);
+	}
+
+	@Test
+	public final void testDrainWithRemoveAny() {
+		fillAndDrain(new Map4<Integer, Integer>(1), 0.75, true);
+	}
+
+	@Test
+	public final void testDrainSmallLoadFactor() {
+		fillAndDrain(new Map4<Integer, Integer>(1, 0.25), 0.25, true);
+	}
+
+	@Test
+	public final void testDrainPowerOfTwo() {
+		fillAndDrain(new Map4<Integer, Integer>(1, 1.0, HashSpreader.MURMUR, true), 1.0, false);
+	}
+
+	@Test
+	public final void testRandomGrowAndShrink() {
+		final int operations = 20000;
+		Random rnd = new Random(1);
+		Map4<Integer, Integer> m = new Map4<Integer, Integer>(1);
+		Tracker t = new Tracker(m);
+		int bias = 0;
+		for (int i = 0; i < operations; i++) {
+			// Alternate long stretches of mostly adds and mostly removes
+			if (i % 2000 == 0) {
+				bias = 1 - bias;
+			}
+			final int k = rnd.nextInt(N);
+			if (m.hasKey(k) && (bias == 0 || rnd.nextInt(4) == 0)) {
+				t.run(() -> m.remove(k));
+			} else if (!m.hasKey(k)) {
+				t.run(() -> m.add(k, k));
+			}
+		}
+		assertTrue(t.maxMoved <= 16);
+	}
+
+}
@@ -0,0 +1,158 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+import components.map.Map;
+import components.map.Map1L;
+
+/**
+ * JUnit test fixture for saving and opening {@code Map4Snapshot}s.
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Map4SnapshotTest {
+
+	/**
+	 * Saves {@code map} to a temporary file and opens it as a snapshot.
+	 *
+	 * @param map the map to save
+	 * @return the snapshot of map
+	 * @throws IOException if the temporary file cannot be used
+	 */
+	private static Map4Snapshot roundTrip(Map<String, Integer> map) throws IOException {
+		File file = File.createTempFile("map4", ".snapshot");
+		file.deleteOnExit();
+		Map4Snapshot.save(map, file.getPath());
+		return Map4Snapshot.open(file.getPath());
+	}
+
+	@Test
+	public final void testEmpty() throws IOException {
+		Map4Snapshot s = roundTrip(new Map4<String, Integer>());
+
+		assertEquals(0, s.size());
+		assertFalse(s.hasKey("the"));
+		assertEquals(new Map1L<String, Integer>(), s.toMap4());
+	}
+
+	@Test
+	public final void testLookups() throws IOException {
+		Map4<String, Integer> m = new Map4<String, Integer>();
+		m.add("the", 3);
+		m.add("quick", -1);
+		m.add("", 0);
+		m.add("na\u00efve", 7);
+		Map4Snapshot s = roundTrip(m);
+
+		assertEquals(4, s.size());
+		assertEquals(3, s.value("the"));
+		assertEquals(-1, s.value("quick"));
+		assertEquals(0, s.value(""));
+		assertEquals(7, s.value("na\u00efve"));
+		assertFalse(s.hasKey("fox"));
+		assertEquals(-5, s.getOrDefault("fox", -5));
+		assertEquals(3, s.getOrDefault("the", -5));
+	}
+
+	@Test
+	public final void testManyEntries() throws IOException {
+		final int n = 20000;
+		Map<String, Integer> m = new Map1L<String, Integer>();
+		for (int i = 0; i < n; i++) {
+			m.add("w" + i, i);
+		}
+		Map4Snapshot s = roundTrip(m);
+
+		assertEquals(n, s.size());
+		for (int i = 0; i < n; i++) {
+			assertEquals(i, s.value("w" + i));
+		}
+		assertFalse(s.hasKey("w" + n));
+		assertEquals(m, s.toMap4());
+	}
+
+	/**
+	 * Saves a small map, overwrites the {@code int} at {@code position} of the
+	 * file with {@code value} (or truncates the file to {@code position} bytes
+	 * if {@code truncate}), and reports whether {@code open} rejects the result.
+	 *
+	 * @param position the byte position to change
+	 * @param value    the value to write there
+	 * @param truncate whether to truncate instead of writing
+	 * @return true iff open throws IOException
+	 * @throws IOException if the temporary file cannot be used
+	 */
+	private static boolean rejectsCorrupted(long position, int value, boolean truncate) throws IOException {
+		Map<String, Integer> m = new Map1L<String, Integer>();
+		m.add("the", 1);
+		m.add("fox", 2);
+		File file = File.createTempFile("map4", ".snapshot");
+		file.deleteOnExit();
+		Map4Snapshot.save(m, file.getPath());
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			if (truncate) {
+				raf.setLength(position);
+			} else {
+				raf.seek(position);
+				raf.writeInt(value);
+			}
+		}
+		boolean rejected = false;
+		try {
+			Map4Snapshot.open(file.getPath());
+		} catch (IOException e) {
+			rejected = true;
+		}
+		return rejected;
+	}
+
+	@Test
+	public final void testCorruptedIndexRejected() throws IOException {
+		// Two entries: capacity 4, so the index is bytes 12 to 44
+		final int header = 12;
+		final int firstEntry = 44;
+		final int fileLength = firstEntry + 2 * (8 + 3);
+		final int magic = 0x4D345331;
+		assertFalse(rejectsCorrupted(0, magic, false));
+		// Truncated in the entries, in the index
+		assertTrue(rejectsCorrupted(fileLength - 1, 0, true));
+		assertTrue(rejectsCorrupted(firstEntry - 4, 0, true));
+		// Offsets of every slot set into the index, past the end, and negative
+		for (int slot = 0; slot < 4; slot++) {
+			long offsetField = header + slot * 8 + 4;
+			assertTrue(rejectsCorrupted(offsetField, header, false));
+			assertTrue(rejectsCorrupted(offsetField, fileLength, false));
+			assertTrue(rejectsCorrupted(offsetField, -1, false));
+		}
+		// A key length running past the end, and a negative one
+		assertTrue(rejectsCorrupted(firstEntry + 4, fileLength, false));
+		assertTrue(rejectsCorrupted(firstEntry + 4, -1, false));
+		// A size that does not match the occupied slots
+		assertTrue(rejectsCorrupted(4, 1, false));
+	}
+
+	@Test
+	public final void testNotASnapshot() throws IOException {
+		File file = File.createTempFile("map4", ".txt");
+		file.deleteOnExit();
+		try (FileWriter w = new FileWriter(file)) {
+			w.write("the quick brown fox");
+		}
+		boolean rejected = false;
+		try {
+			Map4Snapshot.open(file.getPath());
+		} catch (IOException e) {
+			rejected = true;
+		}
+		assertTrue(rejected);
+	}
+
+}
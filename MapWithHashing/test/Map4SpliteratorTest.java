@@ -0,0 +1,190 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.stream.StreamSupport;
+
+import org.junit.Test;
+
+import components.map.Map;
+
+/**
+ * JUnit test fixture for {@code Map4}'s fail-fast iterator and its
+ * {@code spliterator}.
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Map4SpliteratorTest {
+
+	/**
+	 * Number of entries in the larger tests.
+	 */
+	private static final int N = 10000;
+
+	/**
+	 * Returns a {@code Map4} from i to i for 0 <= i < n, built from a tiny
+	 * table so that a rehash is still in progress afterwards.
+	 *
+	 * @param n the number of entries
+	 * @return the map
+	 */
+	private static Map4<Integer, Integer> identityMap(int n) {
+		Map4<Integer, Integer> m = new Map4<Integer, Integer>(1);
+		for (int i = 0; i < n; i++) {
+			m.add(i, i);
+		}
+		return m;
+	}
+
+	@Test
+	public final void testSequentialStream() {
+		Map4<Integer, Integer> m = identityMap(N);
+
+		long sum = StreamSupport.stream(m.spliterator(), false).mapToLong(Map.Pair::value).sum();
+		assertEquals((long) N * (N - 1) / 2, sum);
+	}
+
+	@Test
+	public final void testParallelStream() {
+		Map4<Integer, Integer> m = identityMap(N);
+
+		long count = StreamSupport.stream(m.spliterator(), true).count();
+		long distinct = StreamSupport.stream(m.spliterator(), true).map(Map.Pair::key).distinct().count();
+		long sum = StreamSupport.stream(m.spliterator(), true).mapToLong(Map.Pair::value).sum();
+		assertEquals(N, count);
+		assertEquals(N, distinct);
+		assertEquals((long) N * (N - 1) / 2, sum);
+	}
+
+	@Test
+	public final void testSplitsCoverEverything() {
+		Map4<Integer, Integer> m = identityMap(N);
+		Spliterator<Map.Pair<Integer, Integer>> s = m.spliterator();
+		Spliterator<Map.Pair<Integer, Integer>> t = s.trySplit();
+		boolean[] seen = new boolean[N];
+		int[] count = new int[1];
+
+		s.forEachRemaining(p -> {
+			seen[p.key()] = true;
+			count[0]++;
+		});
+		t.forEachRemaining(p -> {
+			seen[p.key()] = true;
+			count[0]++;
+		});
+		assertEquals(N, count[0]);
+		for (boolean b : seen) {
+			assertTrue(b);
+		}
+	}
+
+	@Test
+	public final void testEmpty() {
+		Map4<Integer, Integer> m = new Map4<Integer, Integer>();
+
+		assertEquals(0, StreamSupport.stream(m.spliterator(), true).count());
+	}
+
+	@Test
+	public final void testIteratorFailsFast() {
+		Map4<Integer, Integer> m = identityMap(10);
+		Iterator<Map.Pair<Integer, Integer>> it = m.iterator();
+		it.next();
+		m.add(10, 10);
+
+		boolean thrown = false;
+		try {
+			it.next();
+		} catch (ConcurrentModificationException e) {
+			thrown = true;
+		}
+		assertTrue(thrown);
+	}
+
+	@Test
+	public final void testIteratorAfterClearFailsFast() {
+		Map4<Integer, Integer> m = identityMap(10);
+		Iterator<Map.Pair<Integer, Integer>> it = m.iterator();
+		m.clear();
+		for (int i = 0; i < 10; i++) {
+			m.add(i, i);
+		}
+
+		boolean thrown = false;
+		try {
+			it.next();
+		} catch (ConcurrentModificationException e) {
+			thrown = true;
+		}
+		assertTrue(thrown);
+	}
+
+	@Test
+	public final void testReplaceValueDoesNotFail() {
+		Map4<Integer, Integer> m = identityMap(10);
+		int sum = 0;
+		for (Map.Pair<Integer, Integer> p : m) {
+			m.replaceValue(p.key(), p.value() + 1);
+			sum += p.key();
+		}
+		assertEquals(45, sum);
+	}
+
+	@Test
+	public final void testMergeExistingKeyDuringRehash() {
+		Map4<Integer, Integer> m = identityMap(N);
+		boolean[] seen = new boolean[N];
+		int count = 0;
+		for (Map.Pair<Integer, Integer> p : m) {
+			// Updating a key already present must not move buckets under the iterator
+			m.merge(p.key(), 1, Integer::sum);
+			m.putIfAbsent(p.key(), 0);
+			m.computeIfAbsent(p.key(), k -> 0);
+			assertTrue(!seen[p.key()]);
+			seen[p.key()] = true;
+			count++;
+		}
+		assertEquals(N, count);
+		for (int i = 0; i < N; i++) {
+			assertEquals(Integer.valueOf(i + 1), m.value(i));
+		}
+	}
+
+	@Test
+	public final void testMergeNewKeyDuringRehashFailsFast() {
+		Map4<Integer, Integer> m = identityMap(N);
+		Iterator<Map.Pair<Integer, Integer>> it = m.iterator();
+		it.next();
+		m.merge(N, 1, Integer::sum);
+
+		boolean thrown = false;
+		try {
+			it.next();
+		} catch (ConcurrentModificationException e) {
+			thrown = true;
+		}
+		assertTrue(thrown);
+	}
+
+	@Test
+	public final void testSpliteratorFailsFast() {
+		Map4<Integer, Integer> m = identityMap(10);
+		Spliterator<Map.Pair<Integer, Integer>> s = m.spliterator();
+		s.tryAdvance(p -> {
+		});
+		m.remove(5);
+
+		boolean thrown = false;
+		try {
+			s.tryAdvance(p -> {
+			});
+		} catch (ConcurrentModificationException e) {
+			thrown = true;
+		}
+		assertTrue(thrown);
+	}
+
+}
@@ -0,0 +1,116 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code Map4}'s {@code statistics} and
+ * {@code resetStatistics} methods.
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Map4StatisticsTest {
+
+	/**
+	 * Load factor large enough that a one-bucket table never grows in these
+	 * tests.
+	 */
+	private static final double NO_GROWTH = 100;
+
+	@Test
+	public final void testEmpty() {
+		Map4<String, String> m = new Map4<String, String>(7);
+		Map4.Statistics s = m.statistics();
+
+		assertEquals(0, s.size());
+		assertEquals(7, s.buckets());
+		assertEquals(7, s.emptyBuckets());
+		assertEquals(0, s.maxBucketLength());
+		assertEquals(0, s.p99BucketLength());
+		assertEquals(0.0, s.meanBucketLength(), 0.0);
+		assertEquals(0, s.lookups());
+	}
+
+	@Test
+	public final void testSingleBucket() {
+		Map4<String, String> m = new Map4<String, String>(1, NO_GROWTH);
+		String[] keys = { "a", "b", "c", "d", "e" };
+		for (String k : keys) {
+			m.add(k, k);
+		}
+		Map4.Statistics s = m.statistics();
+
+		assertEquals(5, s.size());
+		assertEquals(1, s.buckets());
+		assertEquals(0, s.emptyBuckets());
+		assertEquals(5, s.maxBucketLength());
+		assertEquals(5, s.p99BucketLength());
+		assertEquals(5.0, s.meanBucketLength(), 0.0);
+		assertEquals(5.0, s.load(), 0.0);
+		assertEquals(0, s.growths());
+	}
+
+	@Test
+	public final void testEntriesPerLookup() {
+		Map4<String, String> m = new Map4<String, String>(1, NO_GROWTH);
+		m.add("a", "1");
+		m.add("b", "2");
+		m.add("c", "3");
+		m.resetStatistics();
+
+		m.hasKey("a");
+		m.hasKey("zz");
+		Map4.Statistics s = m.statistics();
+
+		assertEquals(2, s.lookups());
+		assertEquals(6, s.bucketEntries());
+		assertEquals(3.0, s.entriesPerLookup(), 0.0);
+	}
+
+	@Test
+	public final void testBucketsSumToSize() {
+		final int n = 1000;
+		Map4<Integer, Integer> m = new Map4<Integer, Integer>(1);
+		for (int i = 0; i < n; i++) {
+			m.add(i, i);
+		}
+		Map4.Statistics s = m.statistics();
+
+		assertEquals(n, s.size());
+		assertEquals(n, Math.round(s.meanBucketLength() * (s.buckets() - s.emptyBuckets())));
+		assertTrue(s.p99BucketLength() <= s.maxBucketLength());
+		assertTrue(s.growths() > 0);
+		assertEquals(0, s.shrinks());
+	}
+
+	@Test
+	public final void testGrowAndShrinkCounts() {
+		final int n = 500;
+		Map4<Integer, Integer> m = new Map4<Integer, Integer>(1);
+		for (int i = 0; i < n; i++) {
+			m.add(i, i);
+		}
+		while (m.size() > 0) {
+			m.removeAny();
+		}
+		Map4.Statistics s = m.statistics();
+
+		assertTrue(s.growths() > 0);
+		assertTrue(s.shrinks() > 0);
+	}
+
+	@Test
+	public final void testClearResets() {
+		Map4<String, String> m = new Map4<String, String>(1);
+		m.add("a", "1");
+		m.add("b", "2");
+		m.hasKey("a");
+		m.clear();
+		Map4.Statistics s = m.statistics();
+
+		assertEquals(0, s.lookups());
+		assertEquals(0, s.growths());
+	}
+
+}
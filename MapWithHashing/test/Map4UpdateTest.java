@@ -0,0 +1,63 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * JUnit test fixture for {@code Map4}'s single-lookup update operations.
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Map4UpdateTest {
+
+	@Test
+	public final void testComputeIfAbsentFunctionThrows() {
+		Map4<String, Integer> m = new Map4<String, Integer>();
+		m.add("a", 1);
+
+		boolean thrown = false;
+		try {
+			// "z" hashes to an earlier bucket than "a", so removeAny looks there first
+			m.computeIfAbsent("z", k -> {
+				throw new IllegalArgumentException(k);
+			});
+		} catch (IllegalArgumentException e) {
+			thrown = true;
+		}
+		assertTrue(thrown);
+		assertEquals(1, m.size());
+		assertEquals("a", m.removeAny().key());
+		assertEquals(0, m.size());
+	}
+
+	@Test
+	public final void testComputeIfAbsentFunctionChangesMap() {
+		final int n = 1000;
+		Map4<Integer, Integer> m = new Map4<Integer, Integer>(1);
+		for (int i = 0; i < n; i++) {
+			// The function's adds grow the table after the key was looked up
+			int v = m.computeIfAbsent(-1 - i, k -> {
+				m.add(-k + n, k);
+				return k * 2;
+			});
+			assertEquals(-2 - 2 * i, v);
+		}
+		assertEquals(2 * n, m.size());
+		for (int i = 0; i < n; i++) {
+			assertEquals(Integer.valueOf(-2 - 2 * i), m.value(-1 - i));
+			assertEquals(Integer.valueOf(-1 - i), m.value(i + 1 + n));
+		}
+	}
+
+	@Test
+	public final void testComputeIfAbsentPresent() {
+		Map4<String, Integer> m = new Map4<String, Integer>();
+		m.add("a", 1);
+
+		assertEquals(Integer.valueOf(1), m.computeIfAbsent("a", k -> 2));
+		assertEquals(Integer.valueOf(3), m.computeIfAbsent("b", k -> 3));
+		assertEquals(2, m.size());
+	}
+
+}
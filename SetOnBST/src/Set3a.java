@@ -1,13 +1,18 @@
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
-import components.binarytree.BinaryTree;
-import components.binarytree.BinaryTree1;
 import components.set.Set;
 import components.set.SetSecondary;
 
 /**
- * {@code Set} represented as a {@code BinaryTree} (maintained as a binary
- * search tree) of elements with implementations of primary methods.
+ * {@code Set} represented as a binary search tree of elements with
+ * implementations of primary methods.
+ *
+ * <p>
+ * The tree is made of plain nodes with direct references to their children,
+ * and all the helpers walk it with loops, so {@code contains} allocates nothing
+ * and no operation uses stack space proportional to the height of the tree.
  *
  * @param <T> type of {@code Set} elements
  * @mathdefinitions
@@ -21,8 +26,8 @@ import components.set.SetSecondary;
  *   it has no duplicate labels]
  *                  </pre>
  * 
- * @convention IS_BST($this.tree)
- * @correspondence this = labels($this.tree)
+ * @convention IS_BST($this.root) and $this.size = |labels($this.root)|
+ * @correspondence this = labels($this.root)
  *
  * @author Junbo Chen, Brett Emory
  *
@@ -34,162 +39,251 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
 	 */
 
 	/**
-	 * Elements included in {@code this}.
+	 * Node of the binary search tree.
+	 *
+	 * @param <T> type of labels
+	 */
+	private static final class Node<T> {
+
+		/**
+		 * The label.
+		 */
+		private T label;
+
+		/**
+		 * Left subtree, or null.
+		 */
+		private Node<T> left;
+
+		/**
+		 * Right subtree, or null.
+		 */
+		private Node<T> right;
+
+		/**
+		 * Constructor of a leaf.
+		 *
+		 * @param label the label
+		 */
+		Node(T label) {
+			this.label = label;
+		}
+
+	}
+
+	/**
+	 * Root of the tree of elements included in {@code this}, or null if
+	 * {@code this} is empty.
+	 */
+	private Node<T> root;
+
+	/**
+	 * Number of elements in {@code this}.
 	 */
-	private BinaryTree<T> tree;
+	private int size;
 
 	/**
 	 * Returns whether {@code x} is in {@code t}.
 	 *
-	 * @param <T> type of {@code BinaryTree} labels
-	 * @param t   the {@code BinaryTree} to be searched
+	 * @param <T> type of labels
+	 * @param t   the tree to be searched, possibly null
 	 * @param x   the label to be searched for
 	 * @return true if t contains x, false otherwise
 	 * @requires IS_BST(t)
 	 * @ensures isInTree = (x is in labels(t))
 	 */
-	private static <T extends Comparable<T>> boolean isInTree(BinaryTree<T> t, T x) {
-		assert t != null : "Violation of: t is not null";
+	private static <T extends Comparable<T>> boolean isInTree(Node<T> t, T x) {
 		assert x != null : "Violation of: x is not null";
 
 		boolean inTree = false;
-
-		BinaryTree<T> left = t.newInstance();
-		BinaryTree<T> right = t.newInstance();
-		if (t.height() > 0) {
-			T root = t.disassemble(left, right);
-			if (x.equals(root)) {
+		Node<T> n = t;
+		while (!inTree && n != null) {
+			int c = x.compareTo(n.label);
+			if (c == 0) {
 				inTree = true;
-			} else if (x.compareTo(root) < 0) {
-				inTree = isInTree(left, x);
+			} else if (c < 0) {
+				n = n.left;
 			} else {
-				inTree = isInTree(right, x);
+				n = n.right;
 			}
-			t.assemble(root, left, right);
 		}
 		return inTree;
 	}
 
 	/**
-	 * Inserts {@code x} in {@code t}.
+	 * Inserts {@code x} in {@code t} and returns the root of the resulting
+	 * tree.
 	 *
-	 * @param <T> type of {@code BinaryTree} labels
-	 * @param t   the {@code BinaryTree} to be searched
+	 * @param <T> type of labels
+	 * @param t   the tree to be searched, possibly null
 	 * @param x   the label to be inserted
+	 * @return the root of the tree with x inserted
 	 * @aliases reference {@code x}
 	 * @updates t
 	 * @requires IS_BST(t) and x is not in labels(t)
-	 * @ensures IS_BST(t) and labels(t) = labels(#t) union {x}
+	 * @ensures IS_BST(insertInTree) and labels(insertInTree) = labels(#t) union
+	 *          {x}
 	 */
-	private static <T extends Comparable<T>> void insertInTree(BinaryTree<T> t, T x) {
-		assert t != null : "Violation of: t is not null";
+	private static <T extends Comparable<T>> Node<T> insertInTree(Node<T> t, T x) {
 		assert x != null : "Violation of: x is not null";
 
-		BinaryTree<T> left = t.newInstance();
-		BinaryTree<T> right = t.newInstance();
-
-		if (t.size() > 0) {
-			T root = t.disassemble(left, right);
-			if (x.compareTo(root) > 0) {
-				insertInTree(right, x);
-			} else {
-				insertInTree(left, x);
+		Node<T> leaf = new Node<>(x);
+		Node<T> result = leaf;
+		if (t != null) {
+			result = t;
+			Node<T> n = t;
+			boolean inserted = false;
+			while (!inserted) {
+				if (x.compareTo(n.label) > 0) {
+					if (n.right == null) {
+						n.right = leaf;
+						inserted = true;
+					} else {
+						n = n.right;
+					}
+				} else {
+					if (n.left == null) {
+						n.left = leaf;
+						inserted = true;
+					} else {
+						n = n.left;
+					}
+				}
 			}
-			t.assemble(root, left, right);
-		} else {
-			t.assemble(x, left, right);
 		}
-
+		return result;
 	}
 
 	/**
-	 * Removes and returns the smallest (left-most) label in {@code t}.
+	 * Removes the smallest (left-most) node in the right subtree of
+	 * {@code t} and returns its label.
 	 *
-	 * @param <T> type of {@code BinaryTree} labels
-	 * @param t   the {@code BinaryTree} from which to remove the label
-	 * @return the smallest label in the given {@code BinaryTree}
+	 * @param <T> type of labels
+	 * @param t   the node whose right subtree loses its smallest label
+	 * @return the smallest label in t.right
 	 * @updates t
-	 * @requires IS_BST(t) and |t| > 0
+	 * @requires IS_BST(t) and t.right is not null
 	 * @ensures
-	 * 
+	 *
 	 *          <pre>
-	 * IS_BST(t)  and  removeSmallest = [the smallest label in #t]  and
-	 *  labels(t) = labels(#t) \ {removeSmallest}
+	 * IS_BST(t)  and  removeSmallest = [the smallest label in #t.right]  and
+	 *  labels(t.right) = labels(#t.right) \ {removeSmallest}
 	 *          </pre>
 	 */
-	private static <T> T removeSmallest(BinaryTree<T> t) {
+	private static <T> T removeSmallest(Node<T> t) {
 		assert t != null : "Violation of: t is not null";
-		assert t.size() > 0 : "Violation of: |t| > 0";
-
-		BinaryTree<T> left = t.newInstance();
-		BinaryTree<T> right = t.newInstance();
-		T root = t.disassemble(left, right);
-		T smallest;
-		if (left.height() > 0) {
-			smallest = removeSmallest(left);
-			t.assemble(root, left, right);
+		assert t.right != null : "Violation of: t.right is not null";
+
+		Node<T> parent = t;
+		Node<T> n = t.right;
+		while (n.left != null) {
+			parent = n;
+			n = n.left;
+		}
+		if (parent == t) {
+			parent.right = n.right;
 		} else {
-			smallest = root;
-			t.transferFrom(right);
+			parent.left = n.right;
 		}
-		return smallest;
+		return n.label;
 	}
 
 	/**
-	 * Finds label {@code x} in {@code t}, removes it from {@code t}, and returns
-	 * it.
+	 * Removes the root of {@code t} and returns the root of the resulting
+	 * tree.
 	 *
-	 * @param <T> type of {@code BinaryTree} labels
-	 * @param t   the {@code BinaryTree} from which to remove label {@code x}
-	 * @param x   the label to be removed
-	 * @return the removed label
+	 * @param <T> type of labels
+	 * @param t   the tree
+	 * @return the root of t without its root label, possibly null
 	 * @updates t
-	 * @requires IS_BST(t) and x is in labels(t)
-	 * @ensures
+	 * @requires IS_BST(t) and t is not null
+	 * @ensures IS_BST(removeRoot) and labels(removeRoot) = labels(#t) \
+	 *          {#t.label}
+	 */
+	private static <T> Node<T> removeRoot(Node<T> t) {
+		Node<T> result;
+		if (t.right == null) {
+			// Without a right subtree, the tree becomes the left subtree
+			result = t.left;
+		} else if (t.left == null) {
+			result = t.right;
+		} else {
+			// Otherwise, the smallest label of the right subtree becomes the root
+			t.label = removeSmallest(t);
+			result = t;
+		}
+		return result;
+	}
+
+	/**
+	 * Finds label {@code x} in {@code this}, removes it, and returns it.
 	 *
-	 *          <pre>
-	 * IS_BST(t)  and  removeFromTree = x  and
-	 *  labels(t) = labels(#t) \ {x}
-	 *          </pre>
+	 * @param x the label to be removed
+	 * @return the removed label
+	 * @updates this
+	 * @requires x is in this
+	 * @ensures removeFromTree = x and this = #this \ {x}
 	 */
-	private static <T extends Comparable<T>> T removeFromTree(BinaryTree<T> t, T x) {
-		assert t != null : "Violation of: t is not null";
+	private T removeFromTree(T x) {
 		assert x != null : "Violation of: x is not null";
-		assert t.size() > 0 : "Violation of: x is in labels(t)";
-
-		BinaryTree<T> left = t.newInstance();
-		BinaryTree<T> right = t.newInstance();
-		T root = t.disassemble(left, right);
-		T removed = root;
-
-		// If root isn't x, get x from either right or left subtree
-		if (!root.equals(x)) {
-			if (root.compareTo(x) < 0) {
-				removed = removeFromTree(right, x);
+		assert this.root != null : "Violation of: x is in this";
+
+		Node<T> parent = null;
+		Node<T> n = this.root;
+		int c = x.compareTo(n.label);
+		while (c != 0) {
+			parent = n;
+			if (c < 0) {
+				n = n.left;
 			} else {
-				removed = removeFromTree(left, x);
+				n = n.right;
 			}
-			t.assemble(root, left, right);
+			c = x.compareTo(n.label);
+		}
+		T removed = n.label;
+		Node<T> replacement = removeRoot(n);
+		if (parent == null) {
+			this.root = replacement;
+		} else if (parent.left == n) {
+			parent.left = replacement;
 		} else {
-			// If root=x, then removed stays as the root
-			if (right.size() > 0) {
-				// If there's a right subtree, make its smallest element the new root
-				root = removeSmallest(right);
-				t.assemble(root, left, right);
-			} else {
-				// Otherwise, the tree becomes the left subtree
-				t.transferFrom(left);
-			}
+			parent.right = replacement;
 		}
 		return removed;
 	}
 
+	/**
+	 * Returns the root of a balanced tree holding the next {@code n} elements
+	 * of {@code elements}, in order.
+	 *
+	 * @param <T>      type of labels
+	 * @param elements the source of the elements
+	 * @param n        the number of elements to take
+	 * @return the root of the tree, or null if n = 0
+	 * @updates elements
+	 * @requires [elements has at least n more elements, in increasing order]
+	 * @ensures [the result is a binary search tree of height
+	 *          ceiling(log2(n + 1)) of the first n elements of #elements]
+	 */
+	private static <T> Node<T> buildBalanced(Iterator<? extends T> elements, int n) {
+		Node<T> result = null;
+		if (n > 0) {
+			int leftSize = (n - 1) / 2;
+			Node<T> left = buildBalanced(elements, leftSize);
+			result = new Node<>(elements.next());
+			result.left = left;
+			result.right = buildBalanced(elements, n - 1 - leftSize);
+		}
+		return result;
+	}
+
 	/**
 	 * Creator of initial representation.
 	 */
 	private void createNewRep() {
 
-		this.tree = new BinaryTree1<T>();
+		this.root = null;
+		this.size = 0;
 
 	}
 
@@ -206,6 +300,46 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
 
 	}
 
+	/**
+	 * Returns a new {@code Set3a} holding the elements of {@code sorted}, built
+	 * as a balanced tree in linear time without comparing any elements.
+	 *
+	 * @param <T>    type of {@code Set} elements
+	 * @param sorted the elements, in increasing order
+	 * @return the set of the elements of sorted
+	 * @requires [sorted is in strictly increasing order and contains no null]
+	 * @ensures fromSorted = elements(sorted)
+	 */
+	public static <T extends Comparable<T>> Set3a<T> fromSorted(T[] sorted) {
+		assert sorted != null : "Violation of: sorted is not null";
+
+		return fromSorted(Arrays.asList(sorted).iterator(), sorted.length);
+	}
+
+	/**
+	 * Returns a new {@code Set3a} holding the next {@code n} elements of
+	 * {@code sorted}, built as a balanced tree in linear time without comparing
+	 * any elements.
+	 *
+	 * @param <T>    type of {@code Set} elements
+	 * @param sorted the source of the elements, in increasing order
+	 * @param n      the number of elements to take
+	 * @return the set of the first n elements of #sorted
+	 * @updates sorted
+	 * @requires [sorted has at least n more elements, in strictly increasing
+	 *           order, and none is null] and n >= 0
+	 * @ensures fromSorted = [the set of the first n elements of #sorted]
+	 */
+	public static <T extends Comparable<T>> Set3a<T> fromSorted(Iterator<? extends T> sorted, int n) {
+		assert sorted != null : "Violation of: sorted is not null";
+		assert n >= 0 : "Violation of: n >= 0";
+
+		Set3a<T> result = new Set3a<>();
+		result.root = buildBalanced(sorted, n);
+		result.size = n;
+		return result;
+	}
+
 	/*
 	 * Standard methods -------------------------------------------------------
 	 */
@@ -236,7 +370,8 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
 		 * the call would not have compiled.
 		 */
 		Set3a<T> localSource = (Set3a<T>) source;
-		this.tree = localSource.tree;
+		this.root = localSource.root;
+		this.size = localSource.size;
 		localSource.createNewRep();
 	}
 
@@ -249,7 +384,8 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
 		assert x != null : "Violation of: x is not null";
 		assert !this.contains(x) : "Violation of: x is not in this";
 
-		insertInTree(this.tree, x);
+		this.root = insertInTree(this.root, x);
+		this.size++;
 
 	}
 
@@ -258,34 +394,162 @@ public class Set3a<T extends Comparable<T>> extends SetSecondary<T> {
 		assert x != null : "Violation of: x is not null";
 		assert this.contains(x) : "Violation of: x is in this";
 
-		return removeFromTree(this.tree, x);
+		T removed = this.removeFromTree(x);
+		this.size--;
+		return removed;
 	}
 
 	@Override
 	public final T removeAny() {
 		assert this.size() > 0 : "Violation of: this /= empty_set";
 
-		return removeSmallest(this.tree);
+		// Remove the smallest (left-most) label
+		Node<T> parent = null;
+		Node<T> n = this.root;
+		while (n.left != null) {
+			parent = n;
+			n = n.left;
+		}
+		if (parent == null) {
+			this.root = n.right;
+		} else {
+			parent.left = n.right;
+		}
+		this.size--;
+		return n.label;
 	}
 
 	@Override
 	public final boolean contains(T x) {
 		assert x != null : "Violation of: x is not null";
 
-		return isInTree(this.tree, x);
+		return isInTree(this.root, x);
 
 	}
 
 	@Override
 	public final int size() {
 
-		return this.tree.size();
+		return this.size;
 
 	}
 
 	@Override
 	public final Iterator<T> iterator() {
-		return this.tree.iterator();
+		return new Set3aIterator(false);
+	}
+
+	/*
+	 * Other methods ----------------------------------------------------------
+	 */
+
+	/**
+	 * Returns an iterator over the elements of {@code this} in decreasing order.
+	 * Like {@code iterator()}, it finds each element as it is asked for, so
+	 * stopping early costs only what has been read.
+	 *
+	 * @return an iterator over this, largest element first
+	 */
+	public final Iterator<T> descendingIterator() {
+		return new Set3aIterator(true);
+	}
+
+	/**
+	 * Implementation of {@code Iterator} interface for {@code Set3a}, which
+	 * visits the elements in increasing (or decreasing) order. It keeps only
+	 * the path to the next element, so it uses space proportional to the
+	 * height of the tree and time proportional to the number of elements it
+	 * returns (plus the height).
+	 */
+	private final class Set3aIterator implements Iterator<T> {
+
+		/**
+		 * Initial capacity of {@code stack}.
+		 */
+		private static final int INITIAL_DEPTH = 32;
+
+		/**
+		 * Whether to visit the elements in decreasing order.
+		 */
+		private final boolean descending;
+
+		/**
+		 * Nodes whose label and far subtree have not been visited yet, from the
+		 * root down; the next label is at the top.
+		 */
+		private Node<T>[] stack;
+
+		/**
+		 * Number of nodes in {@code stack}.
+		 */
+		private int depth;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param descending whether to visit the elements in decreasing order
+		 */
+		@SuppressWarnings("unchecked")
+		Set3aIterator(boolean descending) {
+			this.descending = descending;
+			this.stack = (Node<T>[]) new Node<?>[INITIAL_DEPTH];
+			this.depth = 0;
+			this.pushPath(Set3a.this.root);
+		}
+
+		/**
+		 * Pushes {@code n} and its chain of left (right, if descending)
+		 * descendants.
+		 *
+		 * @param n the subtree, possibly null
+		 */
+		private void pushPath(Node<T> n) {
+			Node<T> m = n;
+			while (m != null) {
+				if (this.depth == this.stack.length) {
+					this.stack = Arrays.copyOf(this.stack, 2 * this.depth);
+				}
+				this.stack[this.depth] = m;
+				this.depth++;
+				if (this.descending) {
+					m = m.right;
+				} else {
+					m = m.left;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.depth > 0;
+		}
+
+		@Override
+		public T next() {
+			assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+			if (!this.hasNext()) {
+				/*
+				 * Exception is supposed to be thrown in this case, but with assertion-checking
+				 * enabled it cannot happen because of assert above.
+				 */
+				throw new NoSuchElementException();
+			}
+			this.depth--;
+			Node<T> n = this.stack[this.depth];
+			this.stack[this.depth] = null;
+			if (this.descending) {
+				this.pushPath(n.left);
+			} else {
+				this.pushPath(n.right);
+			}
+			return n.label;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("remove operation not supported");
+		}
+
 	}
 
 }
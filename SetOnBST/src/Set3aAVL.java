@@ -0,0 +1,1120 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as an AVL tree (a height-balanced binary search
+ * tree) of elements with implementations of primary methods.
+ *
+ * <p>
+ * Unlike {@code Set3a}, the tree stays balanced whatever the order of the
+ * operations: the heights of the two subtrees of every node differ by at most
+ * one, so the height is at most about 1.44 log<sub>2</sub> n. Searches,
+ * insertions and removals are iterative; the latter two remember the path from
+ * the root in an array and rebalance along it on the way back up.
+ *
+ * <p>
+ * Every node also records the size of its subtree, which lets the ordered
+ * queries ({@code first}, {@code last}, {@code floor}, {@code ceiling},
+ * {@code rank}, {@code select} and {@code countInRange}) run in O(log n), and
+ * {@code rangeIterator} costs O(log n) plus the number of elements it returns.
+ *
+ * <p>
+ * When both operands are {@code Set3aAVL}s, {@code add(Set)} and
+ * {@code remove(Set)} use the join-based algorithms for union, intersection
+ * and difference, which relink the existing nodes in O(m log(n/m + 1)) time
+ * for sizes m <= n, instead of moving the elements one at a time. Large
+ * operands are split between the threads of the common fork/join pool.
+ *
+ * @param <T> type of {@code Set} elements
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * IS_AVL(
+ *   n: node of T
+ *  ): boolean satisfies
+ *  [the tree rooted at n is a binary search tree with no duplicate labels,
+ *   the height and count fields of every node are the height and the number
+ *   of nodes of its subtree, and the heights of the left and right subtrees
+ *   of every node differ by at most 1]
+ *                  </pre>
+ *
+ * @convention IS_AVL($this.root) and $this.size = |labels($this.root)|
+ * @correspondence this = labels($this.root)
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Set3aAVL<T extends Comparable<T>> extends SetSecondary<T> {
+
+	/*
+	 * Private members --------------------------------------------------------
+	 */
+
+	/**
+	 * Upper bound on the height of an AVL tree with fewer than 2^31 nodes.
+	 */
+	private static final int MAX_HEIGHT = 48;
+
+	/**
+	 * Combined size of two subtrees below which the set algebra does not fork
+	 * new tasks.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+	/**
+	 * Node of the AVL tree.
+	 *
+	 * @param <T> type of elements
+	 */
+	private static final class Node<T> {
+
+		/**
+		 * The element.
+		 */
+		private T element;
+
+		/**
+		 * Left subtree, or null.
+		 */
+		private Node<T> left;
+
+		/**
+		 * Right subtree, or null.
+		 */
+		private Node<T> right;
+
+		/**
+		 * Height of the subtree rooted at this node (1 for a leaf).
+		 */
+		private int height;
+
+		/**
+		 * Number of nodes in the subtree rooted at this node.
+		 */
+		private int count;
+
+		/**
+		 * Constructor of a leaf.
+		 *
+		 * @param element the element
+		 */
+		Node(T element) {
+			this.element = element;
+			this.height = 1;
+			this.count = 1;
+		}
+
+	}
+
+	/**
+	 * Root of the tree, or null if {@code this} is empty.
+	 */
+	private Node<T> root;
+
+	/**
+	 * Number of elements in {@code this}.
+	 */
+	private int size;
+
+	/**
+	 * Returns the height of {@code n}.
+	 *
+	 * @param n the subtree, possibly null
+	 * @return the height of n (0 if null)
+	 */
+	private static int height(Node<?> n) {
+		int result = 0;
+		if (n != null) {
+			result = n.height;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of nodes in {@code n}.
+	 *
+	 * @param n the subtree, possibly null
+	 * @return the number of nodes in n (0 if null)
+	 */
+	private static int count(Node<?> n) {
+		int result = 0;
+		if (n != null) {
+			result = n.count;
+		}
+		return result;
+	}
+
+	/**
+	 * Recomputes the height and count of {@code n} from its children.
+	 *
+	 * @param n the node
+	 * @updates n.height, n.count
+	 */
+	private static void update(Node<?> n) {
+		n.height = Math.max(height(n.left), height(n.right)) + 1;
+		n.count = count(n.left) + count(n.right) + 1;
+	}
+
+	/**
+	 * Rotates {@code n} right and returns the new root of the subtree.
+	 *
+	 * @param <T> type of elements
+	 * @param n   the root of the subtree, with a left child
+	 * @return the new root
+	 */
+	private static <T> Node<T> rotateRight(Node<T> n) {
+		Node<T> l = n.left;
+		n.left = l.right;
+		l.right = n;
+		update(n);
+		update(l);
+		return l;
+	}
+
+	/**
+	 * Rotates {@code n} left and returns the new root of the subtree.
+	 *
+	 * @param <T> type of elements
+	 * @param n   the root of the subtree, with a right child
+	 * @return the new root
+	 */
+	private static <T> Node<T> rotateLeft(Node<T> n) {
+		Node<T> r = n.right;
+		n.right = r.left;
+		r.left = n;
+		update(n);
+		update(r);
+		return r;
+	}
+
+	/**
+	 * Restores the AVL property at {@code n}, whose subtrees are AVL trees with
+	 * heights differing by at most 2, and returns the new root of the subtree.
+	 *
+	 * @param <T> type of elements
+	 * @param n   the root of the subtree
+	 * @return the new root
+	 */
+	private static <T> Node<T> balance(Node<T> n) {
+		update(n);
+		Node<T> result = n;
+		int bf = height(n.left) - height(n.right);
+		if (bf > 1) {
+			if (height(n.left.left) < height(n.left.right)) {
+				n.left = rotateLeft(n.left);
+			}
+			result = rotateRight(n);
+		} else if (bf < -1) {
+			if (height(n.right.right) < height(n.right.left)) {
+				n.right = rotateRight(n.right);
+			}
+			result = rotateLeft(n);
+		}
+		return result;
+	}
+
+	/**
+	 * Rebalances the nodes {@code path[depth - 1]}, ..., {@code path[0]} from
+	 * the bottom up, relinking each rebalanced subtree into its parent.
+	 *
+	 * @param path  the nodes on a path from the root, root first
+	 * @param depth the number of nodes on the path
+	 */
+	private void rebalance(Node<T>[] path, int depth) {
+		for (int k = depth - 1; k >= 0; k--) {
+			Node<T> n = path[k];
+			Node<T> b = balance(n);
+			if (k == 0) {
+				this.root = b;
+			} else if (path[k - 1].left == n) {
+				path[k - 1].left = b;
+			} else {
+				path[k - 1].right = b;
+			}
+		}
+	}
+
+	/**
+	 * Returns an empty array for a path from the root.
+	 *
+	 * @return a new array of length MAX_HEIGHT
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> Node<T>[] newPath() {
+		return (Node<T>[]) new Node<?>[MAX_HEIGHT];
+	}
+
+	/**
+	 * Returns the number of elements of {@code this} that are less than
+	 * {@code x}, or, if {@code inclusive}, less than or equal to {@code x}.
+	 *
+	 * @param x         the bound
+	 * @param inclusive whether elements equal to x are counted
+	 * @return |{e in this : e < x, or e <= x if inclusive}|
+	 */
+	private int countBelow(T x, boolean inclusive) {
+		int result = 0;
+		Node<T> n = this.root;
+		while (n != null) {
+			int c = x.compareTo(n.element);
+			if (c < 0 || (c == 0 && !inclusive)) {
+				n = n.left;
+			} else {
+				result += count(n.left) + 1;
+				n = n.right;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the root of a tree made of {@code l}, node {@code k} and
+	 * {@code r}, rebalanced as needed.
+	 *
+	 * @param <T> type of elements
+	 * @param l   the left tree, possibly null
+	 * @param k   the node to put between l and r
+	 * @param r   the right tree, possibly null
+	 * @return the root of the joined tree
+	 * @requires IS_AVL(l) and IS_AVL(r) and [labels(l) < k.element <
+	 *           labels(r)]
+	 * @ensures IS_AVL(join) and labels(join) = labels(l) union {k.element}
+	 *          union labels(r)
+	 */
+	private static <T> Node<T> join(Node<T> l, Node<T> k, Node<T> r) {
+		Node<T> result;
+		if (height(l) > height(r) + 1) {
+			l.right = join(l.right, k, r);
+			result = balance(l);
+		} else if (height(r) > height(l) + 1) {
+			r.left = join(l, k, r.left);
+			result = balance(r);
+		} else {
+			k.left = l;
+			k.right = r;
+			update(k);
+			result = k;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the root of a tree holding the labels of {@code l} and
+	 * {@code r}.
+	 *
+	 * @param <T> type of elements
+	 * @param l   the left tree, possibly null
+	 * @param r   the right tree, possibly null
+	 * @return the root of the joined tree
+	 * @requires IS_AVL(l) and IS_AVL(r) and [labels(l) < labels(r)]
+	 * @ensures IS_AVL(join2) and labels(join2) = labels(l) union labels(r)
+	 */
+	private static <T> Node<T> join2(Node<T> l, Node<T> r) {
+		Node<T> result = r;
+		if (l != null) {
+			// Detach the largest node of l and use it to join the rest with r
+			Node<T>[] path = newPath();
+			int depth = 0;
+			Node<T> n = l;
+			while (n.right != null) {
+				path[depth] = n;
+				depth++;
+				n = n.right;
+			}
+			Node<T> rest = n.left;
+			for (int k = depth - 1; k >= 0; k--) {
+				path[k].right = rest;
+				rest = balance(path[k]);
+			}
+			result = join(rest, n, r);
+		}
+		return result;
+	}
+
+	/**
+	 * Result of splitting a tree around an element.
+	 *
+	 * @param <T> type of elements
+	 */
+	private static final class Split<T> {
+
+		/**
+		 * Tree of the labels less than the element.
+		 */
+		private Node<T> less;
+
+		/**
+		 * The detached node holding the element, or null if it was not there.
+		 */
+		private Node<T> found;
+
+		/**
+		 * Tree of the labels greater than the element.
+		 */
+		private Node<T> greater;
+
+	}
+
+	/**
+	 * Splits {@code t} around {@code x}.
+	 *
+	 * @param <T> type of elements
+	 * @param t   the tree, possibly null
+	 * @param x   the element to split around
+	 * @param out the result
+	 * @replaces out
+	 * @requires IS_AVL(t)
+	 * @ensures
+	 *
+	 *          <pre>
+	 * IS_AVL(out.less)  and  IS_AVL(out.greater)  and
+	 *  labels(out.less) = {e in labels(t) : e < x}  and
+	 *  labels(out.greater) = {e in labels(t) : e > x}  and
+	 *  [out.found is the node of t holding x, or null if there is none]
+	 *          </pre>
+	 */
+	private static <T extends Comparable<T>> void split(Node<T> t, T x, Split<T> out) {
+		if (t == null) {
+			out.less = null;
+			out.found = null;
+			out.greater = null;
+		} else {
+			int c = x.compareTo(t.element);
+			Node<T> l = t.left;
+			Node<T> r = t.right;
+			if (c == 0) {
+				out.less = l;
+				out.found = t;
+				out.greater = r;
+				t.left = null;
+				t.right = null;
+				update(t);
+			} else if (c < 0) {
+				split(l, x, out);
+				out.greater = join(out.greater, t, r);
+			} else {
+				split(r, x, out);
+				out.less = join(l, t, out.less);
+			}
+		}
+	}
+
+	/**
+	 * Fork/join task computing, from two trees, either their union and
+	 * intersection or the difference and intersection of the first with the
+	 * second.
+	 *
+	 * @param <T> type of elements
+	 */
+	private static final class Algebra<T extends Comparable<T>> extends RecursiveAction {
+
+		/**
+		 * Serialization version (required because {@code RecursiveAction} is
+		 * {@code Serializable}).
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Whether to compute the union (rather than the difference).
+		 */
+		private final boolean union;
+
+		/**
+		 * First operand; its nodes are reused.
+		 */
+		private final Node<T> t1;
+
+		/**
+		 * Second operand; its nodes are reused for a union, and it is only read
+		 * for a difference.
+		 */
+		private final Node<T> t2;
+
+		/**
+		 * The union or difference, once computed.
+		 */
+		private Node<T> result;
+
+		/**
+		 * The intersection, once computed.
+		 */
+		private Node<T> common;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param union whether to compute the union (rather than the
+		 *              difference)
+		 * @param t1    the first operand
+		 * @param t2    the second operand
+		 */
+		Algebra(boolean union, Node<T> t1, Node<T> t2) {
+			this.union = union;
+			this.t1 = t1;
+			this.t2 = t2;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.t1 == null) {
+				if (this.union) {
+					this.result = this.t2;
+				}
+			} else if (this.t2 == null) {
+				this.result = this.t1;
+			} else {
+				/*
+				 * Split the operand whose nodes may be moved around the root of the
+				 * other, then work on the two sides independently
+				 */
+				boolean fork = count(this.t1) + count(this.t2) >= PARALLEL_THRESHOLD;
+				Split<T> parts = new Split<>();
+				Node<T> pivot;
+				Algebra<T> left;
+				Algebra<T> right;
+				if (this.union) {
+					pivot = this.t1;
+					split(this.t2, pivot.element, parts);
+					left = new Algebra<>(true, pivot.left, parts.less);
+					right = new Algebra<>(true, pivot.right, parts.greater);
+				} else {
+					pivot = this.t2;
+					split(this.t1, pivot.element, parts);
+					left = new Algebra<>(false, parts.less, pivot.left);
+					right = new Algebra<>(false, parts.greater, pivot.right);
+				}
+				if (fork) {
+					invokeAll(left, right);
+				} else {
+					left.compute();
+					right.compute();
+				}
+				if (this.union) {
+					this.result = Set3aAVL.join(left.result, pivot, right.result);
+				} else {
+					this.result = join2(left.result, right.result);
+				}
+				if (parts.found == null) {
+					this.common = join2(left.common, right.common);
+				} else {
+					this.common = Set3aAVL.join(left.common, parts.found, right.common);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Runs {@code task}, in the common fork/join pool if its operands are
+	 * large.
+	 *
+	 * @param task the task
+	 */
+	private static void run(Algebra<?> task) {
+		if (count(task.t1) + count(task.t2) >= PARALLEL_THRESHOLD) {
+			ForkJoinPool.commonPool().invoke(task);
+		} else {
+			task.compute();
+		}
+	}
+
+	/**
+	 * Returns the root of a balanced tree holding the next {@code n} elements
+	 * of {@code elements}, in order.
+	 *
+	 * @param <T>      type of elements
+	 * @param elements the source of the elements
+	 * @param n        the number of elements to take
+	 * @return the root of the tree, or null if n = 0
+	 * @updates elements
+	 * @requires [elements has at least n more elements, in increasing order]
+	 * @ensures [the result is a binary search tree of height
+	 *          ceiling(log2(n + 1)) of the first n elements of #elements]
+	 */
+	private static <T> Node<T> buildBalanced(Iterator<? extends T> elements, int n) {
+		Node<T> result = null;
+		if (n > 0) {
+			int leftSize = (n - 1) / 2;
+			Node<T> left = buildBalanced(elements, leftSize);
+			result = new Node<>(elements.next());
+			result.left = left;
+			result.right = buildBalanced(elements, n - 1 - leftSize);
+			update(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Creator of initial representation.
+	 */
+	private void createNewRep() {
+
+		this.root = null;
+		this.size = 0;
+
+	}
+
+	/*
+	 * Constructors -----------------------------------------------------------
+	 */
+
+	/**
+	 * No-argument constructor.
+	 */
+	public Set3aAVL() {
+
+		this.createNewRep();
+
+	}
+
+	/**
+	 * Returns a new {@code Set3aAVL} holding the elements of {@code sorted}, built
+	 * as a balanced tree in linear time without comparing any elements.
+	 *
+	 * @param <T>    type of {@code Set} elements
+	 * @param sorted the elements, in increasing order
+	 * @return the set of the elements of sorted
+	 * @requires [sorted is in strictly increasing order and contains no null]
+	 * @ensures fromSorted = elements(sorted)
+	 */
+	public static <T extends Comparable<T>> Set3aAVL<T> fromSorted(T[] sorted) {
+		assert sorted != null : "Violation of: sorted is not null";
+
+		return fromSorted(Arrays.asList(sorted).iterator(), sorted.length);
+	}
+
+	/**
+	 * Returns a new {@code Set3aAVL} holding the next {@code n} elements of
+	 * {@code sorted}, built as a balanced tree in linear time without comparing
+	 * any elements.
+	 *
+	 * @param <T>    type of {@code Set} elements
+	 * @param sorted the source of the elements, in increasing order
+	 * @param n      the number of elements to take
+	 * @return the set of the first n elements of #sorted
+	 * @updates sorted
+	 * @requires [sorted has at least n more elements, in strictly increasing
+	 *           order, and none is null] and n >= 0
+	 * @ensures fromSorted = [the set of the first n elements of #sorted]
+	 */
+	public static <T extends Comparable<T>> Set3aAVL<T> fromSorted(Iterator<? extends T> sorted, int n) {
+		assert sorted != null : "Violation of: sorted is not null";
+		assert n >= 0 : "Violation of: n >= 0";
+
+		Set3aAVL<T> result = new Set3aAVL<>();
+		result.root = buildBalanced(sorted, n);
+		result.size = n;
+		return result;
+	}
+
+	/*
+	 * Standard methods -------------------------------------------------------
+	 */
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public final Set<T> newInstance() {
+		try {
+			return this.getClass().getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError("Cannot construct object of type " + this.getClass());
+		}
+	}
+
+	@Override
+	public final void clear() {
+		this.createNewRep();
+	}
+
+	@Override
+	public final void transferFrom(Set<T> source) {
+		assert source != null : "Violation of: source is not null";
+		assert source != this : "Violation of: source is not this";
+		assert source instanceof Set3aAVL<?> : "" + "Violation of: source is of dynamic type Set3aAVL<?>";
+		/*
+		 * This cast cannot fail since the assert above would have stopped execution in
+		 * that case: source must be of dynamic type Set3aAVL<?>, and the ? must be T
+		 * or the call would not have compiled.
+		 */
+		Set3aAVL<T> localSource = (Set3aAVL<T>) source;
+		this.root = localSource.root;
+		this.size = localSource.size;
+		localSource.createNewRep();
+	}
+
+	/*
+	 * Kernel methods ---------------------------------------------------------
+	 */
+
+	@Override
+	public final void add(T x) {
+		assert x != null : "Violation of: x is not null";
+		assert !this.contains(x) : "Violation of: x is not in this";
+
+		Node<T> leaf = new Node<>(x);
+		if (this.root == null) {
+			this.root = leaf;
+		} else {
+			Node<T>[] path = newPath();
+			int depth = 0;
+			Node<T> n = this.root;
+			while (n != null) {
+				path[depth] = n;
+				depth++;
+				if (x.compareTo(n.element) < 0) {
+					n = n.left;
+				} else {
+					n = n.right;
+				}
+			}
+			Node<T> parent = path[depth - 1];
+			if (x.compareTo(parent.element) < 0) {
+				parent.left = leaf;
+			} else {
+				parent.right = leaf;
+			}
+			this.rebalance(path, depth);
+		}
+		this.size++;
+
+	}
+
+	@Override
+	public final T remove(T x) {
+		assert x != null : "Violation of: x is not null";
+		assert this.contains(x) : "Violation of: x is in this";
+
+		Node<T>[] path = newPath();
+		int depth = 0;
+		Node<T> n = this.root;
+		int c = x.compareTo(n.element);
+		while (c != 0) {
+			path[depth] = n;
+			depth++;
+			if (c < 0) {
+				n = n.left;
+			} else {
+				n = n.right;
+			}
+			c = x.compareTo(n.element);
+		}
+		T removed = n.element;
+
+		Node<T> replacement;
+		if (n.left == null) {
+			replacement = n.right;
+		} else if (n.right == null) {
+			replacement = n.left;
+		} else {
+			/*
+			 * Move the successor's element into n and unlink the successor, which
+			 * has no left child, instead
+			 */
+			path[depth] = n;
+			depth++;
+			Node<T> s = n.right;
+			while (s.left != null) {
+				path[depth] = s;
+				depth++;
+				s = s.left;
+			}
+			n.element = s.element;
+			n = s;
+			replacement = s.right;
+		}
+		if (depth == 0) {
+			this.root = replacement;
+		} else if (path[depth - 1].left == n) {
+			path[depth - 1].left = replacement;
+		} else {
+			path[depth - 1].right = replacement;
+		}
+		this.rebalance(path, depth);
+		this.size--;
+		return removed;
+	}
+
+	@Override
+	public final T removeAny() {
+		assert this.size() > 0 : "Violation of: this /= empty_set";
+
+		Node<T> n = this.root;
+		while (n.left != null) {
+			n = n.left;
+		}
+		return this.remove(n.element);
+	}
+
+	@Override
+	public final boolean contains(T x) {
+		assert x != null : "Violation of: x is not null";
+
+		Node<T> n = this.root;
+		boolean found = false;
+		while (!found && n != null) {
+			int c = x.compareTo(n.element);
+			if (c < 0) {
+				n = n.left;
+			} else if (c > 0) {
+				n = n.right;
+			} else {
+				found = true;
+			}
+		}
+		return found;
+
+	}
+
+	@Override
+	public final int size() {
+
+		return this.size;
+
+	}
+
+	@Override
+	public final Iterator<T> iterator() {
+		return new Set3aAVLIterator(null, null, false);
+	}
+
+	/*
+	 * Secondary methods ------------------------------------------------------
+	 */
+
+	@Override
+	public final void add(Set<T> s) {
+		assert s != null : "Violation of: s is not null";
+		assert s != this : "Violation of: s is not this";
+
+		if (s instanceof Set3aAVL<?>) {
+			Set3aAVL<T> other = (Set3aAVL<T>) s;
+			Algebra<T> task = new Algebra<>(true, this.root, other.root);
+			run(task);
+			this.root = task.result;
+			this.size = count(this.root);
+			other.root = task.common;
+			other.size = count(other.root);
+		} else {
+			super.add(s);
+		}
+	}
+
+	@Override
+	public final Set<T> remove(Set<T> s) {
+		assert s != null : "Violation of: s is not null";
+		assert s != this : "Violation of: s is not this";
+
+		Set<T> removed;
+		if (s instanceof Set3aAVL<?>) {
+			Set3aAVL<T> other = (Set3aAVL<T>) s;
+			Algebra<T> task = new Algebra<>(false, this.root, other.root);
+			run(task);
+			this.root = task.result;
+			this.size = count(this.root);
+			Set3aAVL<T> common = new Set3aAVL<>();
+			common.root = task.common;
+			common.size = count(common.root);
+			removed = common;
+		} else {
+			removed = super.remove(s);
+		}
+		return removed;
+	}
+
+	/*
+	 * Other methods ----------------------------------------------------------
+	 */
+
+	/**
+	 * Reports the smallest element of {@code this}.
+	 *
+	 * @return the smallest element of this
+	 * @requires this /= empty_set
+	 * @ensures first is in this and [first <= every element of this]
+	 */
+	public final T first() {
+		assert this.size() > 0 : "Violation of: this /= empty_set";
+
+		Node<T> n = this.root;
+		while (n.left != null) {
+			n = n.left;
+		}
+		return n.element;
+	}
+
+	/**
+	 * Reports the largest element of {@code this}.
+	 *
+	 * @return the largest element of this
+	 * @requires this /= empty_set
+	 * @ensures last is in this and [last >= every element of this]
+	 */
+	public final T last() {
+		assert this.size() > 0 : "Violation of: this /= empty_set";
+
+		Node<T> n = this.root;
+		while (n.right != null) {
+			n = n.right;
+		}
+		return n.element;
+	}
+
+	/**
+	 * Reports the largest element of {@code this} that is less than or equal to
+	 * {@code x}, or null if there is none.
+	 *
+	 * @param x the bound
+	 * @return the largest element <= x, or null
+	 * @requires x is not null
+	 */
+	public final T floor(T x) {
+		assert x != null : "Violation of: x is not null";
+
+		T result = null;
+		Node<T> n = this.root;
+		while (n != null) {
+			int c = x.compareTo(n.element);
+			if (c < 0) {
+				n = n.left;
+			} else {
+				result = n.element;
+				if (c == 0) {
+					n = null;
+				} else {
+					n = n.right;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reports the smallest element of {@code this} that is greater than or equal
+	 * to {@code x}, or null if there is none.
+	 *
+	 * @param x the bound
+	 * @return the smallest element >= x, or null
+	 * @requires x is not null
+	 */
+	public final T ceiling(T x) {
+		assert x != null : "Violation of: x is not null";
+
+		T result = null;
+		Node<T> n = this.root;
+		while (n != null) {
+			int c = x.compareTo(n.element);
+			if (c > 0) {
+				n = n.right;
+			} else {
+				result = n.element;
+				if (c == 0) {
+					n = null;
+				} else {
+					n = n.left;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reports the number of elements of {@code this} less than {@code x}.
+	 *
+	 * @param x the bound
+	 * @return |{e in this : e < x}|
+	 * @requires x is not null
+	 */
+	public final int rank(T x) {
+		assert x != null : "Violation of: x is not null";
+
+		return this.countBelow(x, false);
+	}
+
+	/**
+	 * Reports the element of {@code this} with {@code i} smaller elements.
+	 *
+	 * @param i the rank of the element
+	 * @return the element e of this with rank(e) = i
+	 * @requires 0 <= i < |this|
+	 */
+	public final T select(int i) {
+		assert 0 <= i && i < this.size() : "Violation of: 0 <= i < |this|";
+
+		Node<T> n = this.root;
+		int k = i;
+		int leftCount = count(n.left);
+		while (k != leftCount) {
+			if (k < leftCount) {
+				n = n.left;
+			} else {
+				k -= leftCount + 1;
+				n = n.right;
+			}
+			leftCount = count(n.left);
+		}
+		return n.element;
+	}
+
+	/**
+	 * Reports the number of elements of {@code this} between {@code lo} and
+	 * {@code hi}, both included.
+	 *
+	 * @param lo the lower bound
+	 * @param hi the upper bound
+	 * @return |{e in this : lo <= e <= hi}|
+	 * @requires lo is not null and hi is not null
+	 */
+	public final int countInRange(T lo, T hi) {
+		assert lo != null : "Violation of: lo is not null";
+		assert hi != null : "Violation of: hi is not null";
+
+		return Math.max(0, this.countBelow(hi, true) - this.countBelow(lo, false));
+	}
+
+	/**
+	 * Returns an iterator over the elements of {@code this} between {@code lo}
+	 * and {@code hi}, both included, in increasing order. The iterator finds
+	 * each element as it is asked for, so stopping early costs only what has
+	 * been read.
+	 *
+	 * @param lo the lower bound
+	 * @param hi the upper bound
+	 * @return an iterator over {e in this : lo <= e <= hi}
+	 * @requires lo is not null and hi is not null
+	 */
+	public final Iterator<T> rangeIterator(T lo, T hi) {
+		assert lo != null : "Violation of: lo is not null";
+		assert hi != null : "Violation of: hi is not null";
+
+		return new Set3aAVLIterator(lo, hi, false);
+	}
+
+	/**
+	 * Returns an iterator over the elements of {@code this} in decreasing order.
+	 * Like {@code iterator()}, it finds each element as it is asked for, so
+	 * stopping early costs only what has been read.
+	 *
+	 * @return an iterator over this, largest element first
+	 */
+	public final Iterator<T> descendingIterator() {
+		return new Set3aAVLIterator(null, null, true);
+	}
+
+	/**
+	 * Implementation of {@code Iterator} interface for {@code Set3aAVL}, which
+	 * visits the elements in increasing order, optionally only those within
+	 * bounds, or in decreasing order.
+	 */
+	private final class Set3aAVLIterator implements Iterator<T> {
+
+		/**
+		 * Nodes whose element and far subtree have not been visited yet, from
+		 * the root down; the next element is at the top.
+		 */
+		private final Node<T>[] stack;
+
+		/**
+		 * Number of nodes in {@code stack}.
+		 */
+		private int depth;
+
+		/**
+		 * Largest element to visit, or null for no bound.
+		 */
+		private final T hi;
+
+		/**
+		 * Whether to visit the elements in decreasing order.
+		 */
+		private final boolean descending;
+
+		/**
+		 * Constructor from bounds and direction.
+		 *
+		 * @param lo         smallest element to visit, or null for no bound
+		 * @param hi         largest element to visit, or null for no bound
+		 * @param descending whether to visit the elements in decreasing order
+		 * @requires lo = null and hi = null, or not descending
+		 */
+		Set3aAVLIterator(T lo, T hi, boolean descending) {
+			this.stack = newPath();
+			this.depth = 0;
+			this.hi = hi;
+			this.descending = descending;
+			if (lo == null) {
+				this.pushPath(Set3aAVL.this.root);
+			} else {
+				// Push the nodes >= lo on the search path for lo
+				Node<T> n = Set3aAVL.this.root;
+				while (n != null) {
+					if (lo.compareTo(n.element) <= 0) {
+						this.stack[this.depth] = n;
+						this.depth++;
+						n = n.left;
+					} else {
+						n = n.right;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Pushes {@code n} and its chain of left (right, if descending)
+		 * descendants.
+		 *
+		 * @param n the subtree, possibly null
+		 */
+		private void pushPath(Node<T> n) {
+			Node<T> m = n;
+			while (m != null) {
+				this.stack[this.depth] = m;
+				this.depth++;
+				if (this.descending) {
+					m = m.right;
+				} else {
+					m = m.left;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.depth > 0
+					&& (this.hi == null || this.hi.compareTo(this.stack[this.depth - 1].element) >= 0);
+		}
+
+		@Override
+		public T next() {
+			assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+			if (!this.hasNext()) {
+				/*
+				 * Exception is supposed to be thrown in this case, but with assertion-checking
+				 * enabled it cannot happen because of assert above.
+				 */
+				throw new NoSuchElementException();
+			}
+			this.depth--;
+			Node<T> n = this.stack[this.depth];
+			this.stack[this.depth] = null;
+			if (this.descending) {
+				this.pushPath(n.left);
+			} else {
+				this.pushPath(n.right);
+			}
+			return n.element;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("remove operation not supported");
+		}
+
+	}
+
+}
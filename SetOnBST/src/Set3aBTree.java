@@ -0,0 +1,590 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a B-tree of elements with implementations of
+ * primary methods.
+ *
+ * <p>
+ * Each node holds up to {@code fanOut - 1} elements in a sorted array and, if
+ * it is not a leaf, one more child than elements, so a search visits
+ * O(log<sub>fanOut</sub> n) nodes, does a binary search in each, and allocates
+ * nothing. Insertion splits full nodes and removal refills minimal nodes on
+ * the way down, so both make a single pass from the root.
+ *
+ * @param <T> type of {@code Set} elements
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * IS_B_TREE(
+ *   n: node of T,
+ *   t: integer
+ *  ): boolean satisfies
+ *  [every node of n has between t-1 and 2t-1 elements in strictly increasing
+ *   order (the root may have fewer), every non-leaf node with k elements has
+ *   k+1 children, the elements of child i lie between elements i-1 and i of
+ *   their parent, and all leaves are at the same depth]
+ *                  </pre>
+ *
+ * @convention
+ *
+ *             <pre>
+ * $this.minDegree >= 2  and  IS_B_TREE($this.root, $this.minDegree)  and
+ * $this.size = |labels($this.root)|
+ *             </pre>
+ *
+ * @correspondence this = labels($this.root)
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Set3aBTree<T extends Comparable<T>> extends SetSecondary<T> {
+
+	/*
+	 * Private members --------------------------------------------------------
+	 */
+
+	/**
+	 * Fan-out used by the no-argument constructor.
+	 */
+	private static final int DEFAULT_FAN_OUT = 64;
+
+	/**
+	 * Node of the B-tree.
+	 */
+	private static final class Node {
+
+		/**
+		 * Elements of this node; only the first {@code count} are used.
+		 */
+		private final Object[] keys;
+
+		/**
+		 * Children of this node, or null if it is a leaf; only the first
+		 * {@code count + 1} are used.
+		 */
+		private final Node[] children;
+
+		/**
+		 * Number of elements in this node.
+		 */
+		private int count;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param minDegree the minimum degree of the tree
+		 * @param leaf      whether the node is a leaf
+		 */
+		Node(int minDegree, boolean leaf) {
+			this.keys = new Object[2 * minDegree - 1];
+			if (leaf) {
+				this.children = null;
+			} else {
+				this.children = new Node[2 * minDegree];
+			}
+			this.count = 0;
+		}
+
+		/**
+		 * Reports whether this node is a leaf.
+		 *
+		 * @return true iff this node has no children
+		 */
+		boolean isLeaf() {
+			return this.children == null;
+		}
+
+	}
+
+	/**
+	 * Minimum degree: every node but the root has between
+	 * {@code minDegree - 1} and {@code 2 * minDegree - 1} elements.
+	 */
+	private final int minDegree;
+
+	/**
+	 * Root of the B-tree.
+	 */
+	private Node root;
+
+	/**
+	 * Number of elements in {@code this}.
+	 */
+	private int size;
+
+	/**
+	 * Returns the position of {@code x} among the elements of {@code n}, or, if
+	 * it is not there, -(insertion point) - 1.
+	 *
+	 * @param <T> type of elements
+	 * @param n   the node
+	 * @param x   the element to look for
+	 * @return the index of x in n.keys, or -(insertion point) - 1
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends Comparable<T>> int search(Node n, T x) {
+		int low = 0;
+		int high = n.count - 1;
+		int result = -1;
+		while (result < 0 && low <= high) {
+			int mid = (low + high) >>> 1;
+			int c = x.compareTo((T) n.keys[mid]);
+			if (c < 0) {
+				high = mid - 1;
+			} else if (c > 0) {
+				low = mid + 1;
+			} else {
+				result = mid;
+			}
+		}
+		if (result < 0) {
+			result = -low - 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Splits the full child {@code i} of {@code parent} in two around its
+	 * middle element, which moves up into {@code parent}.
+	 *
+	 * @param parent the parent, which is not full
+	 * @param i      the index of the full child
+	 * @updates parent
+	 */
+	private void splitChild(Node parent, int i) {
+		int t = this.minDegree;
+		Node full = parent.children[i];
+		Node right = new Node(t, full.isLeaf());
+		System.arraycopy(full.keys, t, right.keys, 0, t - 1);
+		if (!full.isLeaf()) {
+			System.arraycopy(full.children, t, right.children, 0, t);
+			Arrays.fill(full.children, t, 2 * t, null);
+		}
+		right.count = t - 1;
+		Object middle = full.keys[t - 1];
+		Arrays.fill(full.keys, t - 1, 2 * t - 1, null);
+		full.count = t - 1;
+
+		System.arraycopy(parent.children, i + 1, parent.children, i + 2, parent.count - i);
+		parent.children[i + 1] = right;
+		System.arraycopy(parent.keys, i, parent.keys, i + 1, parent.count - i);
+		parent.keys[i] = middle;
+		parent.count++;
+	}
+
+	/**
+	 * Moves element {@code i} of {@code parent} and all of child {@code i + 1}
+	 * into child {@code i}, which together have {@code minDegree - 1} elements
+	 * each.
+	 *
+	 * @param parent the parent
+	 * @param i      the index of the left child
+	 * @updates parent
+	 */
+	private void merge(Node parent, int i) {
+		int t = this.minDegree;
+		Node left = parent.children[i];
+		Node right = parent.children[i + 1];
+		left.keys[t - 1] = parent.keys[i];
+		System.arraycopy(right.keys, 0, left.keys, t, right.count);
+		if (!left.isLeaf()) {
+			System.arraycopy(right.children, 0, left.children, t, right.count + 1);
+		}
+		left.count = 2 * t - 1;
+
+		System.arraycopy(parent.keys, i + 1, parent.keys, i, parent.count - i - 1);
+		System.arraycopy(parent.children, i + 2, parent.children, i + 1, parent.count - i - 1);
+		parent.count--;
+		parent.keys[parent.count] = null;
+		parent.children[parent.count + 1] = null;
+	}
+
+	/**
+	 * Makes sure child {@code i} of {@code parent} has at least
+	 * {@code minDegree} elements, by borrowing from a sibling through the parent
+	 * or, if both siblings are minimal, by merging with one, and returns the
+	 * index of the child that now covers the original child's range.
+	 *
+	 * @param parent the parent, which has at least {@code minDegree} elements
+	 *               or is the root
+	 * @param i      the index of the child
+	 * @return the index of the child to descend into
+	 * @updates parent
+	 */
+	private int fill(Node parent, int i) {
+		int t = this.minDegree;
+		Node child = parent.children[i];
+		int result = i;
+		if (i > 0 && parent.children[i - 1].count >= t) {
+			// Rotate the last element of the left sibling through the parent
+			Node left = parent.children[i - 1];
+			System.arraycopy(child.keys, 0, child.keys, 1, child.count);
+			child.keys[0] = parent.keys[i - 1];
+			if (!child.isLeaf()) {
+				System.arraycopy(child.children, 0, child.children, 1, child.count + 1);
+				child.children[0] = left.children[left.count];
+				left.children[left.count] = null;
+			}
+			child.count++;
+			parent.keys[i - 1] = left.keys[left.count - 1];
+			left.count--;
+			left.keys[left.count] = null;
+		} else if (i < parent.count && parent.children[i + 1].count >= t) {
+			// Rotate the first element of the right sibling through the parent
+			Node right = parent.children[i + 1];
+			child.keys[child.count] = parent.keys[i];
+			if (!child.isLeaf()) {
+				child.children[child.count + 1] = right.children[0];
+				System.arraycopy(right.children, 1, right.children, 0, right.count);
+				right.children[right.count] = null;
+			}
+			child.count++;
+			parent.keys[i] = right.keys[0];
+			System.arraycopy(right.keys, 1, right.keys, 0, right.count - 1);
+			right.count--;
+			right.keys[right.count] = null;
+		} else if (i < parent.count) {
+			this.merge(parent, i);
+		} else {
+			this.merge(parent, i - 1);
+			result = i - 1;
+		}
+		return result;
+	}
+
+	/**
+	 * Replaces an empty non-leaf root with its only child.
+	 */
+	private void collapseRoot() {
+		if (this.root.count == 0 && !this.root.isLeaf()) {
+			this.root = this.root.children[0];
+		}
+	}
+
+	/**
+	 * Creator of initial representation.
+	 */
+	private void createNewRep() {
+
+		this.root = new Node(this.minDegree, true);
+		this.size = 0;
+
+	}
+
+	/*
+	 * Constructors -----------------------------------------------------------
+	 */
+
+	/**
+	 * No-argument constructor.
+	 */
+	public Set3aBTree() {
+
+		this(DEFAULT_FAN_OUT);
+
+	}
+
+	/**
+	 * Constructor with the maximum number of children per node.
+	 *
+	 * @param fanOut the maximum number of children per node
+	 * @requires fanOut >= 4 and fanOut is even
+	 */
+	public Set3aBTree(int fanOut) {
+		assert fanOut >= 4 : "Violation of: fanOut >= 4";
+		assert fanOut % 2 == 0 : "Violation of: fanOut is even";
+
+		this.minDegree = fanOut / 2;
+		this.createNewRep();
+
+	}
+
+	/*
+	 * Standard methods -------------------------------------------------------
+	 */
+
+	@Override
+	public final Set<T> newInstance() {
+		return new Set3aBTree<T>(2 * this.minDegree);
+	}
+
+	@Override
+	public final void clear() {
+		this.createNewRep();
+	}
+
+	@Override
+	public final void transferFrom(Set<T> source) {
+		assert source != null : "Violation of: source is not null";
+		assert source != this : "Violation of: source is not this";
+		assert source instanceof Set3aBTree<?> : "" + "Violation of: source is of dynamic type Set3aBTree<?>";
+		/*
+		 * This cast cannot fail since the assert above would have stopped execution in
+		 * that case: source must be of dynamic type Set3aBTree<?>, and the ? must be T
+		 * or the call would not have compiled.
+		 */
+		Set3aBTree<T> localSource = (Set3aBTree<T>) source;
+		assert localSource.minDegree == this.minDegree : "Violation of: source has the fan-out of this";
+		this.root = localSource.root;
+		this.size = localSource.size;
+		localSource.createNewRep();
+	}
+
+	/*
+	 * Kernel methods ---------------------------------------------------------
+	 */
+
+	@Override
+	public final void add(T x) {
+		assert x != null : "Violation of: x is not null";
+		assert !this.contains(x) : "Violation of: x is not in this";
+
+		int t = this.minDegree;
+		if (this.root.count == 2 * t - 1) {
+			Node newRoot = new Node(t, false);
+			newRoot.children[0] = this.root;
+			this.root = newRoot;
+			this.splitChild(newRoot, 0);
+		}
+		Node n = this.root;
+		while (!n.isLeaf()) {
+			int i = -search(n, x) - 1;
+			if (n.children[i].count == 2 * t - 1) {
+				this.splitChild(n, i);
+				if (x.compareTo(this.<T>key(n, i)) > 0) {
+					i++;
+				}
+			}
+			n = n.children[i];
+		}
+		int i = -search(n, x) - 1;
+		System.arraycopy(n.keys, i, n.keys, i + 1, n.count - i);
+		n.keys[i] = x;
+		n.count++;
+		this.size++;
+
+	}
+
+	@Override
+	public final T remove(T x) {
+		assert x != null : "Violation of: x is not null";
+		assert this.contains(x) : "Violation of: x is in this";
+
+		int t = this.minDegree;
+		T removed = null;
+		T target = x;
+		Node n = this.root;
+		boolean done = false;
+		while (!done) {
+			int i = search(n, target);
+			if (i >= 0 && n.isLeaf()) {
+				if (removed == null) {
+					removed = this.key(n, i);
+				}
+				System.arraycopy(n.keys, i + 1, n.keys, i, n.count - i - 1);
+				n.count--;
+				n.keys[n.count] = null;
+				done = true;
+			} else if (i >= 0) {
+				if (removed == null) {
+					removed = this.key(n, i);
+				}
+				if (n.children[i].count >= t) {
+					// Replace with the predecessor, then remove that from child i
+					Node m = n.children[i];
+					while (!m.isLeaf()) {
+						m = m.children[m.count];
+					}
+					target = this.key(m, m.count - 1);
+					n.keys[i] = target;
+					n = n.children[i];
+				} else if (n.children[i + 1].count >= t) {
+					// Replace with the successor, then remove that from child i + 1
+					Node m = n.children[i + 1];
+					while (!m.isLeaf()) {
+						m = m.children[0];
+					}
+					target = this.key(m, 0);
+					n.keys[i] = target;
+					n = n.children[i + 1];
+				} else {
+					this.merge(n, i);
+					Node child = n.children[i];
+					this.collapseRoot();
+					n = child;
+				}
+			} else {
+				int c = -i - 1;
+				if (n.children[c].count < t) {
+					c = this.fill(n, c);
+				}
+				Node child = n.children[c];
+				this.collapseRoot();
+				n = child;
+			}
+		}
+		this.size--;
+		return removed;
+	}
+
+	@Override
+	public final T removeAny() {
+		assert this.size() > 0 : "Violation of: this /= empty_set";
+
+		// The last element of the root's last leaf is as good as any
+		Node n = this.root;
+		while (!n.isLeaf()) {
+			n = n.children[n.count];
+		}
+		return this.remove(this.<T>key(n, n.count - 1));
+	}
+
+	@Override
+	public final boolean contains(T x) {
+		assert x != null : "Violation of: x is not null";
+
+		Node n = this.root;
+		boolean found = false;
+		while (!found && n != null) {
+			int i = search(n, x);
+			if (i >= 0) {
+				found = true;
+			} else if (n.isLeaf()) {
+				n = null;
+			} else {
+				n = n.children[-i - 1];
+			}
+		}
+		return found;
+
+	}
+
+	@Override
+	public final int size() {
+
+		return this.size;
+
+	}
+
+	@Override
+	public final Iterator<T> iterator() {
+		return new Set3aBTreeIterator();
+	}
+
+	/**
+	 * Returns element {@code i} of {@code n}.
+	 *
+	 * @param <E> type of elements
+	 * @param n   the node
+	 * @param i   the index of the element
+	 * @return n.keys[i]
+	 */
+	@SuppressWarnings("unchecked")
+	private <E> E key(Node n, int i) {
+		return (E) n.keys[i];
+	}
+
+	/**
+	 * Implementation of {@code Iterator} interface for {@code Set3aBTree}, which
+	 * visits the elements in increasing order.
+	 */
+	private final class Set3aBTreeIterator implements Iterator<T> {
+
+		/**
+		 * Nodes on the path from the root to the current node.
+		 */
+		private final Node[] path;
+
+		/**
+		 * For each node on the path, the index of its next element to return.
+		 */
+		private final int[] next;
+
+		/**
+		 * Index in {@code path} of the current node, or -1 when done.
+		 */
+		private int depth;
+
+		/**
+		 * No-argument constructor.
+		 */
+		Set3aBTreeIterator() {
+			int height = 1;
+			for (Node n = Set3aBTree.this.root; !n.isLeaf(); n = n.children[0]) {
+				height++;
+			}
+			this.path = new Node[height];
+			this.next = new int[height];
+			this.depth = -1;
+			this.descend(Set3aBTree.this.root);
+		}
+
+		/**
+		 * Pushes {@code n} and the leftmost path below it.
+		 *
+		 * @param n the node
+		 */
+		private void descend(Node n) {
+			Node m = n;
+			while (m != null) {
+				this.depth++;
+				this.path[this.depth] = m;
+				this.next[this.depth] = 0;
+				if (m.isLeaf()) {
+					m = null;
+				} else {
+					m = m.children[0];
+				}
+			}
+			this.skipExhausted();
+		}
+
+		/**
+		 * Pops nodes whose elements have all been returned.
+		 */
+		private void skipExhausted() {
+			while (this.depth >= 0 && this.next[this.depth] >= this.path[this.depth].count) {
+				this.depth--;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.depth >= 0;
+		}
+
+		@Override
+		public T next() {
+			assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+			if (!this.hasNext()) {
+				/*
+				 * Exception is supposed to be thrown in this case, but with assertion-checking
+				 * enabled it cannot happen because of assert above.
+				 */
+				throw new NoSuchElementException();
+			}
+			Node n = this.path[this.depth];
+			int i = this.next[this.depth];
+			T result = Set3aBTree.this.key(n, i);
+			this.next[this.depth] = i + 1;
+			if (n.isLeaf()) {
+				this.skipExhausted();
+			} else {
+				this.descend(n.children[i + 1]);
+			}
+			return result;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("remove operation not supported");
+		}
+
+	}
+
+}
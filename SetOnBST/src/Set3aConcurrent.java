@@ -0,0 +1,252 @@
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a lock-free concurrent skip list of elements
+ * ({@code java.util.concurrent.ConcurrentSkipListSet}) with implementations of
+ * primary methods, which may be used by several threads at once.
+ *
+ * <p>
+ * {@code contains} only reads the list and never blocks, and {@code add},
+ * {@code remove} and {@code removeAny} update it with compare-and-set
+ * operations rather than locks, so readers and writers proceed in parallel.
+ * The iterator returns the elements in increasing order and reflects some
+ * state of the set at or after its creation; it never throws
+ * {@code ConcurrentModificationException}.
+ *
+ * <p>
+ * Each kernel method other than {@code clear} and {@code transferFrom} is
+ * atomic, but a precondition checked by one call may be
+ * invalidated by another thread before the next call, so threads that may add
+ * or remove the same element should use {@code addIfAbsent} and
+ * {@code removeIfPresent} instead of checking {@code contains} first.
+ * {@code size} is exact when no update is in progress. {@code clear} and
+ * {@code transferFrom} move or drop the elements one at a time, so they are
+ * safe to run alongside other calls but need exclusive access to take effect
+ * as a single step, and so do the secondary methods ({@code add(Set)},
+ * {@code equals}, ...).
+ *
+ * @param <T> type of {@code Set} elements
+ * @convention $this.size = |$this.elements| when no call is in progress
+ * @correspondence this = $this.elements
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Set3aConcurrent<T extends Comparable<T>> extends SetSecondary<T> {
+
+	/*
+	 * Private members --------------------------------------------------------
+	 */
+
+	/**
+	 * Elements included in {@code this}.
+	 */
+	private final ConcurrentSkipListSet<T> elements;
+
+	/**
+	 * Number of elements in {@code this} (counting the skip list takes linear
+	 * time).
+	 */
+	private final AtomicInteger size;
+
+	/*
+	 * Constructors -----------------------------------------------------------
+	 */
+
+	/**
+	 * No-argument constructor.
+	 */
+	public Set3aConcurrent() {
+
+		// The fields are final, so every thread sees them fully constructed
+		this.elements = new ConcurrentSkipListSet<T>();
+		this.size = new AtomicInteger();
+
+	}
+
+	/*
+	 * Standard methods -------------------------------------------------------
+	 */
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public final Set<T> newInstance() {
+		try {
+			return this.getClass().getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError("Cannot construct object of type " + this.getClass());
+		}
+	}
+
+	@Override
+	public final void clear() {
+		// Drain rather than replace the list, so size always matches it
+		while (this.elements.pollFirst() != null) {
+			this.size.decrementAndGet();
+		}
+	}
+
+	@Override
+	public final void transferFrom(Set<T> source) {
+		assert source != null : "Violation of: source is not null";
+		assert source != this : "Violation of: source is not this";
+		assert source instanceof Set3aConcurrent<?> : ""
+				+ "Violation of: source is of dynamic type Set3aConcurrent<?>";
+		/*
+		 * This cast cannot fail since the assert above would have stopped execution in
+		 * that case: source must be of dynamic type Set3aConcurrent<?>, and the ? must
+		 * be T or the call would not have compiled.
+		 */
+		Set3aConcurrent<T> localSource = (Set3aConcurrent<T>) source;
+		this.clear();
+		T x = localSource.elements.pollFirst();
+		while (x != null) {
+			localSource.size.decrementAndGet();
+			this.addIfAbsent(x);
+			x = localSource.elements.pollFirst();
+		}
+	}
+
+	/*
+	 * Kernel methods ---------------------------------------------------------
+	 */
+
+	@Override
+	public final void add(T x) {
+		assert x != null : "Violation of: x is not null";
+		assert !this.contains(x) : "Violation of: x is not in this";
+
+		this.addIfAbsent(x);
+
+	}
+
+	@Override
+	public final T remove(T x) {
+		assert x != null : "Violation of: x is not null";
+		assert this.contains(x) : "Violation of: x is in this";
+
+		// Report the element that was in this, which is equal to x
+		T removed = this.elements.ceiling(x);
+		this.removeIfPresent(x);
+		return removed;
+	}
+
+	@Override
+	public final T removeAny() {
+		assert this.size() > 0 : "Violation of: this /= empty_set";
+
+		T removed = this.elements.pollFirst();
+		if (removed != null) {
+			this.size.decrementAndGet();
+		}
+		return removed;
+	}
+
+	@Override
+	public final boolean contains(T x) {
+		assert x != null : "Violation of: x is not null";
+
+		return this.elements.contains(x);
+
+	}
+
+	@Override
+	public final int size() {
+
+		return this.size.get();
+
+	}
+
+	@Override
+	public final Iterator<T> iterator() {
+		return new Set3aConcurrentIterator();
+	}
+
+	/*
+	 * Other methods ----------------------------------------------------------
+	 */
+
+	/**
+	 * Adds {@code x} to {@code this} unless it is already there, in one atomic
+	 * step, and reports whether it was added.
+	 *
+	 * @param x the element to be added
+	 * @return true iff x was not in #this
+	 * @aliases reference {@code x}
+	 * @updates this
+	 * @requires x is not null
+	 * @ensures this = #this union {x} and addIfAbsent = (x is not in #this)
+	 */
+	public final boolean addIfAbsent(T x) {
+		assert x != null : "Violation of: x is not null";
+
+		boolean added = this.elements.add(x);
+		if (added) {
+			this.size.incrementAndGet();
+		}
+		return added;
+	}
+
+	/**
+	 * Removes {@code x} from {@code this} if it is there, in one atomic step,
+	 * and reports whether it was removed.
+	 *
+	 * @param x the element to be removed
+	 * @return true iff x was in #this
+	 * @updates this
+	 * @requires x is not null
+	 * @ensures this = #this \ {x} and removeIfPresent = (x is in #this)
+	 */
+	public final boolean removeIfPresent(T x) {
+		assert x != null : "Violation of: x is not null";
+
+		boolean removed = this.elements.remove(x);
+		if (removed) {
+			this.size.decrementAndGet();
+		}
+		return removed;
+	}
+
+	/**
+	 * Implementation of {@code Iterator} interface for {@code Set3aConcurrent},
+	 * which does not support {@code remove}.
+	 */
+	private final class Set3aConcurrentIterator implements Iterator<T> {
+
+		/**
+		 * Iterator of the skip list.
+		 */
+		private final Iterator<T> iterator;
+
+		/**
+		 * No-argument constructor.
+		 */
+		Set3aConcurrentIterator() {
+			this.iterator = Set3aConcurrent.this.elements.iterator();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.iterator.hasNext();
+		}
+
+		@Override
+		public T next() {
+			assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+
+			return this.iterator.next();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("remove operation not supported");
+		}
+
+	}
+
+}
@@ -0,0 +1,251 @@
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import components.set.Set;
+import components.simplewriter.SimpleWriter;
+import components.simplewriter.SimpleWriter1L;
+
+/**
+ * Compares the throughput of {@code Set3aConcurrent} with that of
+ * {@code Set3a} behind one global lock, with several threads running a mix of
+ * {@code contains}, {@code add} and {@code remove} calls on one shared set.
+ *
+ * <p>
+ * The set starts with {@code SIZE} random elements from a range twice as
+ * large; each thread then performs {@code OPERATIONS} calls on random
+ * elements, of which {@code UPDATE_PERCENT} percent are adds or removes
+ * (half each) and the rest are lookups. Run without assertion checking.
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public final class Set3aConcurrentBenchmark {
+
+	/**
+	 * Private constructor so this utility class cannot be instantiated.
+	 */
+	private Set3aConcurrentBenchmark() {
+	}
+
+	/**
+	 * Initial number of elements.
+	 */
+	private static final int SIZE = 1 << 18;
+
+	/**
+	 * Number of calls made by each thread.
+	 */
+	private static final int OPERATIONS = 1 << 20;
+
+	/**
+	 * Percentage of calls that are adds or removes.
+	 */
+	private static final int UPDATE_PERCENT = 10;
+
+	/**
+	 * Numbers of threads to try.
+	 */
+	private static final int[] THREADS = { 1, 2, 4, 8 };
+
+	/**
+	 * Number of trials with each number of threads; the best is reported.
+	 */
+	private static final int TRIALS = 3;
+
+	/**
+	 * Keeps lookup results observable so they are not optimized away; updated
+	 * only by the main thread.
+	 */
+	private static long sink;
+
+	/**
+	 * Calls made by the benchmark, implemented for each kind of set.
+	 */
+	private interface Workload {
+
+		/**
+		 * Reports whether {@code x} is in the set.
+		 *
+		 * @param x the element
+		 * @return true iff x is in the set
+		 */
+		boolean contains(Integer x);
+
+		/**
+		 * Adds {@code x} to the set if it is not there.
+		 *
+		 * @param x the element
+		 */
+		void add(Integer x);
+
+		/**
+		 * Removes {@code x} from the set if it is there.
+		 *
+		 * @param x the element
+		 */
+		void remove(Integer x);
+
+	}
+
+	/**
+	 * Returns a {@code Workload} on a {@code Set3a} guarded by a global lock.
+	 *
+	 * @param s the set
+	 * @return the workload on s
+	 */
+	private static Workload locked(Set<Integer> s) {
+		return new Workload() {
+			@Override
+			public boolean contains(Integer x) {
+				synchronized (s) {
+					return s.contains(x);
+				}
+			}
+
+			@Override
+			public void add(Integer x) {
+				synchronized (s) {
+					if (!s.contains(x)) {
+						s.add(x);
+					}
+				}
+			}
+
+			@Override
+			public void remove(Integer x) {
+				synchronized (s) {
+					if (s.contains(x)) {
+						s.remove(x);
+					}
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns a {@code Workload} on a {@code Set3aConcurrent}, with no lock.
+	 *
+	 * @param s the set
+	 * @return the workload on s
+	 */
+	private static Workload concurrent(Set3aConcurrent<Integer> s) {
+		return new Workload() {
+			@Override
+			public boolean contains(Integer x) {
+				return s.contains(x);
+			}
+
+			@Override
+			public void add(Integer x) {
+				s.addIfAbsent(x);
+			}
+
+			@Override
+			public void remove(Integer x) {
+				s.removeIfPresent(x);
+			}
+		};
+	}
+
+	/**
+	 * Fills {@code s} with {@code SIZE} distinct random elements below
+	 * {@code 2 * SIZE}.
+	 *
+	 * @param s the set to fill
+	 * @updates s
+	 */
+	private static void fill(Set<Integer> s) {
+		Random rnd = new Random(1);
+		while (s.size() < SIZE) {
+			Integer x = rnd.nextInt(2 * SIZE);
+			if (!s.contains(x)) {
+				s.add(x);
+			}
+		}
+	}
+
+	/**
+	 * Runs the mix of calls on {@code w} with {@code threads} threads and
+	 * returns the elapsed time in milliseconds.
+	 *
+	 * @param w       the workload
+	 * @param threads the number of threads
+	 * @return the elapsed time in milliseconds
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	private static double run(Workload w, int threads) throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		// One slot per worker, summed after join, so no count is lost
+		long[] found = new long[threads];
+		for (int t = 0; t < threads; t++) {
+			final int id = t;
+			final long seed = t + 1;
+			workers[t] = new Thread(() -> {
+				Random rnd = new Random(seed);
+				long hits = 0;
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				for (int i = 0; i < OPERATIONS; i++) {
+					Integer x = rnd.nextInt(2 * SIZE);
+					int kind = rnd.nextInt(100);
+					if (kind < UPDATE_PERCENT / 2) {
+						w.add(x);
+					} else if (kind < UPDATE_PERCENT) {
+						w.remove(x);
+					} else if (w.contains(x)) {
+						hits++;
+					}
+				}
+				found[id] = hits;
+			});
+			workers[t].start();
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		double elapsed = System.nanoTime() - begin;
+		for (long hits : found) {
+			sink += hits;
+		}
+		final double nanosPerMilli = 1e6;
+		return elapsed / nanosPerMilli;
+	}
+
+	/**
+	 * Main method.
+	 *
+	 * @param args the command line arguments (ignored)
+	 * @throws InterruptedException if interrupted while waiting for the threads
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		SimpleWriter out = new SimpleWriter1L();
+		out.println(SIZE + " initial elements, " + OPERATIONS + " calls per thread, " + UPDATE_PERCENT
+				+ "% updates; millions of calls per second");
+		out.println(String.format("%-8s %12s %16s", "threads", "Set3a+lock", "Set3aConcurrent"));
+		for (int threads : THREADS) {
+			double best3a = Double.MAX_VALUE;
+			double bestConcurrent = Double.MAX_VALUE;
+			for (int trial = 0; trial < TRIALS; trial++) {
+				Set<Integer> s = new Set3a<Integer>();
+				fill(s);
+				best3a = Math.min(best3a, run(locked(s), threads));
+				Set3aConcurrent<Integer> c = new Set3aConcurrent<Integer>();
+				fill(c);
+				bestConcurrent = Math.min(bestConcurrent, run(concurrent(c), threads));
+			}
+			final double millisPerSecond = 1e3;
+			final double million = 1e6;
+			double calls = (double) threads * OPERATIONS / million * millisPerSecond;
+			out.println(String.format("%-8d %12.2f %16.2f", threads, calls / best3a, calls / bestConcurrent));
+		}
+		out.println("(checksum " + sink + ")");
+		out.close();
+	}
+
+}
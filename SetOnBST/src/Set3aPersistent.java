@@ -0,0 +1,483 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import components.set.Set;
+import components.set.SetSecondary;
+
+/**
+ * {@code Set} represented as a persistent AVL tree of immutable nodes with
+ * implementations of primary methods, whose {@code snapshot} takes constant
+ * time.
+ *
+ * <p>
+ * No node is ever changed after it is made: {@code add} and {@code remove}
+ * build a new version of the tree by copying the O(log n) nodes on the search
+ * path and sharing all the others with the old version, and then make the new
+ * root current. A snapshot is just another set sharing the current root, so
+ * it costs O(1) and later updates of either set do not affect the other.
+ *
+ * <p>
+ * Because nodes are immutable and the root is published through a volatile
+ * field, one thread may update a set while other threads take snapshots of it
+ * and read them (or iterate over the set itself, which iterates over the
+ * version current when the iterator was made) without any locking. Several
+ * threads updating the same set at once still need external synchronization.
+ *
+ * @param <T> type of {@code Set} elements
+ * @mathdefinitions
+ *
+ *                  <pre>
+ * IS_AVL(
+ *   n: node of T
+ *  ): boolean satisfies
+ *  [the tree rooted at n is a binary search tree with no duplicate labels,
+ *   the height and count fields of every node are the height and the number
+ *   of nodes of its subtree, and the heights of the left and right subtrees
+ *   of every node differ by at most 1]
+ *                  </pre>
+ *
+ * @convention IS_AVL($this.root)
+ * @correspondence this = labels($this.root)
+ *
+ * @author Junbo Chen, Brett Emory
+ *
+ */
+public class Set3aPersistent<T extends Comparable<T>> extends SetSecondary<T> {
+
+	/*
+	 * Private members --------------------------------------------------------
+	 */
+
+	/**
+	 * Upper bound on the height of an AVL tree with fewer than 2^31 nodes.
+	 */
+	private static final int MAX_HEIGHT = 48;
+
+	/**
+	 * Immutable node of the AVL tree.
+	 *
+	 * @param <T> type of elements
+	 */
+	private static final class Node<T> {
+
+		/**
+		 * The element.
+		 */
+		private final T element;
+
+		/**
+		 * Left subtree, or null.
+		 */
+		private final Node<T> left;
+
+		/**
+		 * Right subtree, or null.
+		 */
+		private final Node<T> right;
+
+		/**
+		 * Height of the subtree rooted at this node (1 for a leaf).
+		 */
+		private final int height;
+
+		/**
+		 * Number of nodes in the subtree rooted at this node.
+		 */
+		private final int count;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param left    the left subtree, possibly null
+		 * @param element the element
+		 * @param right   the right subtree, possibly null
+		 */
+		Node(Node<T> left, T element, Node<T> right) {
+			this.element = element;
+			this.left = left;
+			this.right = right;
+			this.height = Math.max(height(left), height(right)) + 1;
+			this.count = count(left) + count(right) + 1;
+		}
+
+	}
+
+	/**
+	 * Root of the current version of the tree, or null if {@code this} is
+	 * empty.
+	 */
+	private volatile Node<T> root;
+
+	/**
+	 * Returns the height of {@code n}.
+	 *
+	 * @param n the subtree, possibly null
+	 * @return the height of n (0 if null)
+	 */
+	private static int height(Node<?> n) {
+		int result = 0;
+		if (n != null) {
+			result = n.height;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of nodes in {@code n}.
+	 *
+	 * @param n the subtree, possibly null
+	 * @return the number of nodes in n (0 if null)
+	 */
+	private static int count(Node<?> n) {
+		int result = 0;
+		if (n != null) {
+			result = n.count;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a new AVL tree made of {@code l}, {@code element} and {@code r},
+	 * whose heights differ by at most 2, rotating as needed.
+	 *
+	 * @param <T>     type of elements
+	 * @param l       the left subtree, possibly null
+	 * @param element the element between l and r
+	 * @param r       the right subtree, possibly null
+	 * @return the root of the new tree
+	 * @requires IS_AVL(l) and IS_AVL(r) and [labels(l) < element < labels(r)]
+	 *           and |height(l) - height(r)| <= 2
+	 * @ensures IS_AVL(balance) and labels(balance) = labels(l) union {element}
+	 *          union labels(r)
+	 */
+	private static <T> Node<T> balance(Node<T> l, T element, Node<T> r) {
+		Node<T> result;
+		if (height(l) > height(r) + 1) {
+			if (height(l.left) >= height(l.right)) {
+				result = new Node<>(l.left, l.element, new Node<>(l.right, element, r));
+			} else {
+				Node<T> lr = l.right;
+				result = new Node<>(new Node<>(l.left, l.element, lr.left), lr.element,
+						new Node<>(lr.right, element, r));
+			}
+		} else if (height(r) > height(l) + 1) {
+			if (height(r.right) >= height(r.left)) {
+				result = new Node<>(new Node<>(l, element, r.left), r.element, r.right);
+			} else {
+				Node<T> rl = r.left;
+				result = new Node<>(new Node<>(l, element, rl.left), rl.element,
+						new Node<>(rl.right, r.element, r.right));
+			}
+		} else {
+			result = new Node<>(l, element, r);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a new version of {@code t} with {@code x} inserted.
+	 *
+	 * @param <T> type of elements
+	 * @param t   the tree, possibly null
+	 * @param x   the element to insert
+	 * @return the root of the new version
+	 * @requires IS_AVL(t) and x is not in labels(t)
+	 * @ensures IS_AVL(insert) and labels(insert) = labels(t) union {x}
+	 */
+	private static <T extends Comparable<T>> Node<T> insert(Node<T> t, T x) {
+		Node<T> result;
+		if (t == null) {
+			result = new Node<>(null, x, null);
+		} else if (x.compareTo(t.element) < 0) {
+			result = balance(insert(t.left, x), t.element, t.right);
+		} else {
+			result = balance(t.left, t.element, insert(t.right, x));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a new version of {@code t} without its smallest element.
+	 *
+	 * @param <T> type of elements
+	 * @param t   the tree
+	 * @return the root of the new version, possibly null
+	 * @requires IS_AVL(t) and t is not null
+	 * @ensures IS_AVL(removeSmallest) and labels(removeSmallest) = labels(t) \
+	 *          {[the smallest label in t]}
+	 */
+	private static <T> Node<T> removeSmallest(Node<T> t) {
+		Node<T> result;
+		if (t.left == null) {
+			result = t.right;
+		} else {
+			result = balance(removeSmallest(t.left), t.element, t.right);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the smallest element of {@code t}.
+	 *
+	 * @param <T> type of elements
+	 * @param t   the tree
+	 * @return the smallest label in t
+	 * @requires t is not null
+	 */
+	private static <T> T smallest(Node<T> t) {
+		Node<T> n = t;
+		while (n.left != null) {
+			n = n.left;
+		}
+		return n.element;
+	}
+
+	/**
+	 * Returns a new version of {@code t} with {@code x} removed.
+	 *
+	 * @param <T> type of elements
+	 * @param t   the tree
+	 * @param x   the element to remove
+	 * @return the root of the new version, possibly null
+	 * @requires IS_AVL(t) and x is in labels(t)
+	 * @ensures IS_AVL(delete) and labels(delete) = labels(t) \ {x}
+	 */
+	private static <T extends Comparable<T>> Node<T> delete(Node<T> t, T x) {
+		Node<T> result;
+		int c = x.compareTo(t.element);
+		if (c < 0) {
+			result = balance(delete(t.left, x), t.element, t.right);
+		} else if (c > 0) {
+			result = balance(t.left, t.element, delete(t.right, x));
+		} else if (t.left == null) {
+			result = t.right;
+		} else if (t.right == null) {
+			result = t.left;
+		} else {
+			result = balance(t.left, smallest(t.right), removeSmallest(t.right));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the node of {@code t} holding {@code x}, or null if there is
+	 * none.
+	 *
+	 * @param <T> type of elements
+	 * @param t   the tree, possibly null
+	 * @param x   the element to find
+	 * @return the node holding x, or null
+	 */
+	private static <T extends Comparable<T>> Node<T> find(Node<T> t, T x) {
+		Node<T> n = t;
+		int c = 1;
+		while (c != 0 && n != null) {
+			c = x.compareTo(n.element);
+			if (c < 0) {
+				n = n.left;
+			} else if (c > 0) {
+				n = n.right;
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * Creator of initial representation.
+	 */
+	private void createNewRep() {
+
+		this.root = null;
+
+	}
+
+	/*
+	 * Constructors -----------------------------------------------------------
+	 */
+
+	/**
+	 * No-argument constructor.
+	 */
+	public Set3aPersistent() {
+
+		this.createNewRep();
+
+	}
+
+	/*
+	 * Standard methods -------------------------------------------------------
+	 */
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public final Set<T> newInstance() {
+		try {
+			return this.getClass().getConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new AssertionError("Cannot construct object of type " + this.getClass());
+		}
+	}
+
+	@Override
+	public final void clear() {
+		this.createNewRep();
+	}
+
+	@Override
+	public final void transferFrom(Set<T> source) {
+		assert source != null : "Violation of: source is not null";
+		assert source != this : "Violation of: source is not this";
+		assert source instanceof Set3aPersistent<?> : ""
+				+ "Violation of: source is of dynamic type Set3aPersistent<?>";
+		/*
+		 * This cast cannot fail since the assert above would have stopped execution in
+		 * that case: source must be of dynamic type Set3aPersistent<?>, and the ? must
+		 * be T or the call would not have compiled.
+		 */
+		Set3aPersistent<T> localSource = (Set3aPersistent<T>) source;
+		this.root = localSource.root;
+		localSource.createNewRep();
+	}
+
+	/*
+	 * Kernel methods ---------------------------------------------------------
+	 */
+
+	@Override
+	public final void add(T x) {
+		assert x != null : "Violation of: x is not null";
+		assert !this.contains(x) : "Violation of: x is not in this";
+
+		this.root = insert(this.root, x);
+
+	}
+
+	@Override
+	public final T remove(T x) {
+		assert x != null : "Violation of: x is not null";
+		assert this.contains(x) : "Violation of: x is in this";
+
+		Node<T> current = this.root;
+		T removed = find(current, x).element;
+		this.root = delete(current, x);
+		return removed;
+	}
+
+	@Override
+	public final T removeAny() {
+		assert this.size() > 0 : "Violation of: this /= empty_set";
+
+		Node<T> current = this.root;
+		T removed = smallest(current);
+		this.root = removeSmallest(current);
+		return removed;
+	}
+
+	@Override
+	public final boolean contains(T x) {
+		assert x != null : "Violation of: x is not null";
+
+		return find(this.root, x) != null;
+
+	}
+
+	@Override
+	public final int size() {
+
+		return count(this.root);
+
+	}
+
+	@Override
+	public final Iterator<T> iterator() {
+		return new Set3aPersistentIterator(this.root);
+	}
+
+	/*
+	 * Other methods ----------------------------------------------------------
+	 */
+
+	/**
+	 * Returns a new set with the same elements as {@code this}, in constant
+	 * time. Later changes to either set do not affect the other.
+	 *
+	 * @return a copy of this
+	 * @ensures snapshot = this
+	 */
+	public final Set3aPersistent<T> snapshot() {
+		Set3aPersistent<T> copy = new Set3aPersistent<>();
+		copy.root = this.root;
+		return copy;
+	}
+
+	/**
+	 * Implementation of {@code Iterator} interface for {@code Set3aPersistent},
+	 * which visits the elements of one version of the tree in increasing order.
+	 */
+	private final class Set3aPersistentIterator implements Iterator<T> {
+
+		/**
+		 * Nodes whose element and right subtree have not been visited yet, from
+		 * the root down; the next element is at the top.
+		 */
+		private final Node<T>[] stack;
+
+		/**
+		 * Number of nodes in {@code stack}.
+		 */
+		private int depth;
+
+		/**
+		 * Constructor.
+		 *
+		 * @param version the root of the version to visit
+		 */
+		@SuppressWarnings("unchecked")
+		Set3aPersistentIterator(Node<T> version) {
+			this.stack = (Node<T>[]) new Node<?>[MAX_HEIGHT];
+			this.depth = 0;
+			this.pushLeftPath(version);
+		}
+
+		/**
+		 * Pushes {@code n} and its chain of left descendants.
+		 *
+		 * @param n the subtree, possibly null
+		 */
+		private void pushLeftPath(Node<T> n) {
+			for (Node<T> m = n; m != null; m = m.left) {
+				this.stack[this.depth] = m;
+				this.depth++;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.depth > 0;
+		}
+
+		@Override
+		public T next() {
+			assert this.hasNext() : "Violation of: ~this.unseen /= <>";
+			if (!this.hasNext()) {
+				/*
+				 * Exception is supposed to be thrown in this case, but with assertion-checking
+				 * enabled it cannot happen because of assert above.
+				 */
+				throw new NoSuchElementException();
+			}
+			this.depth--;
+			Node<T> n = this.stack[this.depth];
+			this.stack[this.depth] = null;
+			this.pushLeftPath(n.right);
+			return n.element;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("remove operation not supported");
+		}
+
+	}
+
+}
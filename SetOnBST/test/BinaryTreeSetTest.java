@@ -0,0 +1,115 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import components.set.Set;
+
+/**
+ * JUnit test fixture for the binary search tree {@code Set} implementations,
+ * which can also be built directly from sorted input and iterated in
+ * decreasing order.
+ */
+public abstract class BinaryTreeSetTest extends OrderedSetTest {
+
+    /**
+     * Invokes the {@code fromSorted} factory of the implementation under test
+     * on an array and returns the result.
+     *
+     * @param sorted
+     *            the elements, in increasing order
+     * @return the new set
+     * @requires [sorted is in strictly increasing order]
+     * @ensures fromSortedTest = [elements of sorted]
+     */
+    protected abstract Set<Integer> fromSortedTest(Integer[] sorted);
+
+    /**
+     * Invokes the {@code fromSorted} factory of the implementation under test
+     * on the first {@code n} elements of an iterator and returns the result.
+     *
+     * @param sorted
+     *            the elements, in increasing order
+     * @param n
+     *            the number of elements to take
+     * @return the new set
+     * @requires [sorted has at least n elements, in strictly increasing order]
+     * @ensures fromSortedTest = [first n elements of sorted]
+     */
+    protected abstract Set<Integer> fromSortedTest(Iterator<Integer> sorted,
+            int n);
+
+    /**
+     * Returns an iterator over {@code s} in decreasing order, from the
+     * {@code descendingIterator} of the implementation under test.
+     *
+     * @param s
+     *            the set
+     * @return the iterator
+     * @requires s was returned by constructorOrdered
+     * @ensures [descendingIteratorTest returns the elements of s in
+     *          decreasing order]
+     */
+    protected abstract Iterator<Integer> descendingIteratorTest(Set<Integer> s);
+
+    /**
+     * Tests fromSorted with an array and with an iterator, followed by adds
+     * and removes on the result.
+     */
+    @Test
+    public final void testFromSorted() {
+        final int n = 1000;
+        Integer[] sorted = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = 2 * i;
+        }
+        Set<Integer> s = this.fromSortedTest(sorted);
+        assertEquals(n, s.size());
+        Iterator<Integer> it = s.iterator();
+        for (int i = 0; i < n; i++) {
+            assertEquals(sorted[i], it.next());
+        }
+        assertEquals(false, it.hasNext());
+        s.add(1);
+        assertEquals(Integer.valueOf(0), s.remove(0));
+        assertEquals(true, s.contains(1));
+        assertEquals(false, s.contains(0));
+
+        Set<Integer> t = this.fromSortedTest(Arrays.asList(sorted).iterator(), 3);
+        assertEquals(3, t.size());
+        assertEquals(true, t.contains(4));
+        assertEquals(false, t.contains(6));
+        assertEquals(0, this.fromSortedTest(new Integer[0]).size());
+    }
+
+    /**
+     * Tests descendingIterator, and reading only the first few elements of
+     * both iterators.
+     */
+    @Test
+    public final void testDescendingIteratorAndEarlyStop() {
+        final int n = 500;
+        final int k = 5;
+        Set<Integer> s = this.constructorOrdered();
+        for (int i = 0; i < n; i++) {
+            // Insert in an order that mixes left and right subtrees
+            s.add((i * 7) % n);
+        }
+        Iterator<Integer> down = this.descendingIteratorTest(s);
+        for (int i = n - 1; i >= 0; i--) {
+            assertEquals(Integer.valueOf(i), down.next());
+        }
+        assertEquals(false, down.hasNext());
+
+        Iterator<Integer> up = s.iterator();
+        down = this.descendingIteratorTest(s);
+        for (int i = 0; i < k; i++) {
+            assertEquals(Integer.valueOf(i), up.next());
+            assertEquals(Integer.valueOf(n - 1 - i), down.next());
+        }
+        assertEquals(false, this.descendingIteratorTest(this.constructorOrdered()).hasNext());
+    }
+
+}
@@ -0,0 +1,60 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * JUnit test fixture for {@code Set} implementations whose iterator returns
+ * the elements in increasing order.
+ */
+public abstract class OrderedSetTest extends SetTest {
+
+    /**
+     * Invokes the appropriate {@code Set<Integer>} constructor for the
+     * implementation under test and returns the result.
+     *
+     * @return the new set
+     * @ensures constructorOrdered = {}
+     */
+    protected abstract Set<Integer> constructorOrdered();
+
+    /**
+     * Tests random adds and removes against the reference implementation,
+     * including that the iterator returns the elements in increasing order.
+     */
+    @Test
+    public final void testRandomOperations() {
+        final int operations = 20000;
+        final int range = 500;
+        Random rnd = new Random(1);
+        Set<Integer> s = this.constructorOrdered();
+        Set<Integer> sExpected = new Set1L<Integer>();
+        for (int k = 0; k < operations; k++) {
+            Integer x = rnd.nextInt(range);
+            if (sExpected.contains(x)) {
+                assertEquals(sExpected.remove(x), s.remove(x));
+            } else {
+                sExpected.add(x);
+                s.add(x);
+            }
+            assertEquals(sExpected.size(), s.size());
+        }
+        assertEquals(sExpected, s);
+        Iterator<Integer> it = s.iterator();
+        int previous = -1;
+        int count = 0;
+        while (it.hasNext()) {
+            int x = it.next();
+            assertEquals(true, x > previous);
+            previous = x;
+            count++;
+        }
+        assertEquals(s.size(), count);
+    }
+
+}
@@ -0,0 +1,244 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code Set3aAVL}.
+ */
+public class Set3aAVLTest extends BinaryTreeSetTest {
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new Set3aAVL<String>();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    @Override
+    protected final Set<Integer> constructorOrdered() {
+        return new Set3aAVL<Integer>();
+    }
+
+    @Override
+    protected final Set<Integer> fromSortedTest(Integer[] sorted) {
+        return Set3aAVL.fromSorted(sorted);
+    }
+
+    @Override
+    protected final Set<Integer> fromSortedTest(Iterator<Integer> sorted,
+            int n) {
+        return Set3aAVL.fromSorted(sorted, n);
+    }
+
+    @Override
+    protected final Iterator<Integer> descendingIteratorTest(Set<Integer> s) {
+        return ((Set3aAVL<Integer>) s).descendingIterator();
+    }
+
+    /**
+     * Tests sorted input followed by removeAny/add cycles, which would make an
+     * unbalanced tree a long chain.
+     */
+    @Test
+    public final void testSortedInputAndRemoveAnyCycles() {
+        final int n = 200000;
+        Set<Integer> s = new Set3aAVL<Integer>();
+        for (int i = 0; i < n; i++) {
+            s.add(i);
+        }
+        for (int i = 0; i < n; i++) {
+            int x = s.removeAny();
+            s.add(x + n);
+        }
+        assertEquals(n, s.size());
+        assertEquals(false, s.contains(n - 1));
+        assertEquals(true, s.contains(n));
+        assertEquals(true, s.contains(2 * n - 1));
+    }
+
+    /**
+     * Tests first, last, floor, ceiling, rank, select, countInRange and
+     * rangeIterator against {@code java.util.TreeSet}.
+     */
+    @Test
+    public final void testOrderedQueries() {
+        final int n = 2000;
+        final int range = 10000;
+        final int queries = 2000;
+        Random rnd = new Random(2);
+        Set3aAVL<Integer> s = new Set3aAVL<Integer>();
+        TreeSet<Integer> sExpected = new TreeSet<Integer>();
+        while (sExpected.size() < n) {
+            Integer x = rnd.nextInt(range);
+            if (sExpected.add(x)) {
+                s.add(x);
+            }
+        }
+        assertEquals(sExpected.first(), s.first());
+        assertEquals(sExpected.last(), s.last());
+        for (int k = 0; k < queries; k++) {
+            Integer x = rnd.nextInt(range + 2) - 1;
+            Integer y = x + rnd.nextInt(range / 10);
+            assertEquals(sExpected.floor(x), s.floor(x));
+            assertEquals(sExpected.ceiling(x), s.ceiling(x));
+            assertEquals(sExpected.headSet(x).size(), s.rank(x));
+            assertEquals(sExpected.subSet(x, true, y, true).size(), s.countInRange(x, y));
+            Iterator<Integer> it = s.rangeIterator(x, y);
+            for (Integer e : sExpected.subSet(x, true, y, true)) {
+                assertEquals(e, it.next());
+            }
+            assertEquals(false, it.hasNext());
+        }
+        int i = 0;
+        for (Integer e : sExpected) {
+            assertEquals(e, s.select(i));
+            i++;
+        }
+        assertEquals(0, s.countInRange(1, 0));
+    }
+
+    /**
+     * Tests floor and ceiling past the ends and on the empty set.
+     */
+    @Test
+    public final void testFloorCeilingNone() {
+        Set3aAVL<String> s = new Set3aAVL<String>();
+        assertEquals(null, s.floor("m"));
+        assertEquals(null, s.ceiling("m"));
+        s.add("m");
+        assertEquals(null, s.floor("a"));
+        assertEquals("m", s.floor("z"));
+        assertEquals("m", s.ceiling("a"));
+        assertEquals(null, s.ceiling("z"));
+        assertEquals("m", s.floor("m"));
+        assertEquals("m", s.ceiling("m"));
+    }
+
+    /**
+     * Returns a {@code Set3aAVL} and fills {@code ref} with {@code n} random
+     * elements below {@code range}.
+     *
+     * @param n     the number of elements
+     * @param range the bound on the elements
+     * @param rnd   source of the elements
+     * @param ref   the reference set to fill
+     * @return the set of the same elements
+     */
+    private static Set3aAVL<Integer> randomSet(int n, int range, Random rnd,
+            TreeSet<Integer> ref) {
+        Set3aAVL<Integer> s = new Set3aAVL<Integer>();
+        while (ref.size() < n) {
+            Integer x = rnd.nextInt(range);
+            if (ref.add(x)) {
+                s.add(x);
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Checks the union/intersection and difference/intersection of random
+     * sets of sizes {@code n} and {@code m} against {@code java.util.TreeSet}.
+     *
+     * @param n     the size of the first set
+     * @param m     the size of the second set
+     * @param range the bound on the elements
+     */
+    private static void checkAlgebra(int n, int m, int range) {
+        Random rnd = new Random(n * 31 + m);
+        TreeSet<Integer> a = new TreeSet<Integer>();
+        TreeSet<Integer> b = new TreeSet<Integer>();
+        Set3aAVL<Integer> s = randomSet(n, range, rnd, a);
+        Set3aAVL<Integer> t = randomSet(m, range, rnd, b);
+        TreeSet<Integer> union = new TreeSet<Integer>(a);
+        union.addAll(b);
+        TreeSet<Integer> common = new TreeSet<Integer>(a);
+        common.retainAll(b);
+        TreeSet<Integer> difference = new TreeSet<Integer>(a);
+        difference.removeAll(b);
+
+        Set3aAVL<Integer> s2 = new Set3aAVL<Integer>();
+        for (Integer x : a) {
+            s2.add(x);
+        }
+        Set<Integer> removed = s2.remove(t);
+        assertEquals(difference, toTreeSet(s2));
+        assertEquals(difference.size(), s2.size());
+        assertEquals(common, toTreeSet(removed));
+        assertEquals(b, toTreeSet(t));
+
+        s.add(t);
+        assertEquals(union, toTreeSet(s));
+        assertEquals(union.size(), s.size());
+        assertEquals(common, toTreeSet(t));
+        assertEquals(common.size(), t.size());
+        if (s.size() > 0) {
+            assertEquals(union.last(), s.select(s.size() - 1));
+        }
+    }
+
+    /**
+     * Returns the elements of {@code s} in iteration order, checking that the
+     * order is increasing.
+     *
+     * @param s the set
+     * @return the elements of s
+     */
+    private static TreeSet<Integer> toTreeSet(Set<Integer> s) {
+        TreeSet<Integer> result = new TreeSet<Integer>();
+        for (Integer x : s) {
+            assertEquals(true, result.isEmpty() || result.last() < x);
+            result.add(x);
+        }
+        return result;
+    }
+
+    /**
+     * Tests add(Set) and remove(Set) between {@code Set3aAVL}s, with empty,
+     * small, lopsided, and large (parallel) operands.
+     */
+    @Test
+    public final void testSetAlgebra() {
+        final int large = 100000;
+        checkAlgebra(0, 0, 10);
+        checkAlgebra(0, 5, 10);
+        checkAlgebra(5, 0, 10);
+        checkAlgebra(1, 1, 2);
+        checkAlgebra(100, 100, 300);
+        checkAlgebra(1000, 3, 2000);
+        checkAlgebra(3, 1000, 2000);
+        checkAlgebra(large, large, 3 * large);
+    }
+
+    /**
+     * Tests add(Set) and remove(Set) with an argument of another
+     * implementation.
+     */
+    @Test
+    public final void testSetAlgebraOtherImplementation() {
+        Set<String> s = this.constructorTest();
+        s.add("a");
+        s.add("b");
+        Set<String> t = this.constructorRef();
+        t.add("b");
+        t.add("c");
+        s.add(t);
+        assertEquals(3, s.size());
+        assertEquals(1, t.size());
+        assertEquals(true, t.contains("b"));
+        Set<String> removed = s.remove(t);
+        assertEquals(2, s.size());
+        assertEquals(true, removed.contains("b"));
+    }
+
+}
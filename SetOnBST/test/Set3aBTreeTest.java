@@ -0,0 +1,53 @@
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code Set3aBTree}.
+ */
+public class Set3aBTreeTest extends OrderedSetTest {
+
+    /**
+     * Smallest fan-out, so that the tests reach splits and merges quickly.
+     */
+    private static final int FAN_OUT = 4;
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new Set3aBTree<String>(FAN_OUT);
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    @Override
+    protected final Set<Integer> constructorOrdered() {
+        return new Set3aBTree<Integer>(FAN_OUT);
+    }
+
+    /**
+     * Tests emptying a large set of sorted input with removeAny.
+     */
+    @Test
+    public final void testRemoveAnySortedInput() {
+        final int n = 100000;
+        Set<Integer> s = new Set3aBTree<Integer>();
+        for (int i = 0; i < n; i++) {
+            s.add(i);
+        }
+        assertEquals(true, s.contains(0));
+        assertEquals(true, s.contains(n - 1));
+        assertEquals(false, s.contains(n));
+        Set<Integer> seen = new Set1L<Integer>();
+        while (s.size() > 0) {
+            seen.add(s.removeAny());
+        }
+        assertEquals(n, seen.size());
+    }
+
+}
@@ -0,0 +1,124 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code Set3aConcurrent}.
+ */
+public class Set3aConcurrentTest extends SetTest {
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new Set3aConcurrent<String>();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /**
+     * Tests addIfAbsent and removeIfPresent.
+     */
+    @Test
+    public final void testIfAbsentIfPresent() {
+        Set3aConcurrent<String> s = new Set3aConcurrent<String>();
+        assertEquals(true, s.addIfAbsent("a"));
+        assertEquals(false, s.addIfAbsent("a"));
+        assertEquals(1, s.size());
+        assertEquals(false, s.removeIfPresent("b"));
+        assertEquals(true, s.removeIfPresent("a"));
+        assertEquals(0, s.size());
+    }
+
+    /**
+     * Tests threads adding overlapping ranges at the same time, then threads
+     * removing disjoint ones at the same time, and that the iterator returns
+     * the elements in increasing order.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    @Test
+    public final void testConcurrentUpdates() throws InterruptedException {
+        final int threads = 4;
+        final int n = 20000;
+        Set3aConcurrent<Integer> s = new Set3aConcurrent<Integer>();
+        Thread[] adders = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            adders[t] = new Thread(() -> {
+                // Every thread adds all elements
+                for (int i = 0; i < n; i++) {
+                    s.addIfAbsent(i);
+                }
+            });
+            adders[t].start();
+        }
+        // Every element must be in before any is removed
+        for (Thread adder : adders) {
+            adder.join();
+        }
+        Thread[] removers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            removers[t] = new Thread(() -> {
+                // Every thread removes its share
+                for (int i = id; i < n; i += 2 * threads) {
+                    s.removeIfPresent(i);
+                }
+            });
+            removers[t].start();
+        }
+        for (Thread remover : removers) {
+            remover.join();
+        }
+        assertEquals(n - n / 2, s.size());
+        Iterator<Integer> it = s.iterator();
+        for (int i = 0; i < n; i++) {
+            if (i % (2 * threads) >= threads) {
+                assertEquals(Integer.valueOf(i), it.next());
+            }
+        }
+        assertEquals(false, it.hasNext());
+    }
+
+    /**
+     * Tests clear and transferFrom while another thread adds elements: size
+     * must still match the elements afterwards.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    @Test
+    public final void testClearAndTransferDuringUpdates()
+            throws InterruptedException {
+        final int n = 20000;
+        Set3aConcurrent<Integer> s = new Set3aConcurrent<Integer>();
+        Set3aConcurrent<Integer> t = new Set3aConcurrent<Integer>();
+        Thread adder = new Thread(() -> {
+            for (int i = 0; i < n; i++) {
+                s.addIfAbsent(i);
+            }
+        });
+        adder.start();
+        for (int k = 0; k < 100; k++) {
+            s.clear();
+            t.transferFrom(s);
+        }
+        adder.join();
+        for (Set3aConcurrent<Integer> u : Arrays.asList(s, t)) {
+            int count = 0;
+            for (Integer x : u) {
+                count++;
+            }
+            assertEquals(count, u.size());
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import org.junit.Test;
+
+import components.set.Set;
+import components.set.Set1L;
+
+/**
+ * Customized JUnit test fixture for {@code Set3aPersistent}.
+ */
+public class Set3aPersistentTest extends SetTest {
+
+    @Override
+    protected final Set<String> constructorTest() {
+        return new Set3aPersistent<String>();
+    }
+
+    @Override
+    protected final Set<String> constructorRef() {
+        return new Set1L<String>();
+    }
+
+    /**
+     * Tests that a snapshot keeps its elements while the original changes,
+     * and the other way around.
+     */
+    @Test
+    public final void testSnapshotIndependence() {
+        Set3aPersistent<String> s = new Set3aPersistent<String>();
+        s.add("b");
+        s.add("a");
+        Set3aPersistent<String> snap = s.snapshot();
+        s.add("c");
+        s.remove("a");
+        snap.add("z");
+
+        Set<String> sExpected = new Set1L<String>();
+        sExpected.add("b");
+        sExpected.add("c");
+        Set<String> snapExpected = new Set1L<String>();
+        snapExpected.add("a");
+        snapExpected.add("b");
+        snapExpected.add("z");
+        assertEquals(sExpected, s);
+        assertEquals(snapExpected, snap);
+    }
+
+    /**
+     * Tests random adds and removes against the reference implementation,
+     * checking a snapshot taken halfway through.
+     */
+    @Test
+    public final void testRandomOperationsWithSnapshot() {
+        final int operations = 20000;
+        final int range = 500;
+        Random rnd = new Random(1);
+        Set3aPersistent<Integer> s = new Set3aPersistent<Integer>();
+        Set<Integer> sExpected = new Set1L<Integer>();
+        Set3aPersistent<Integer> snap = null;
+        Set<Integer> snapExpected = null;
+        for (int k = 0; k < operations; k++) {
+            Integer x = rnd.nextInt(range);
+            if (sExpected.contains(x)) {
+                assertEquals(sExpected.remove(x), s.remove(x));
+            } else {
+                sExpected.add(x);
+                s.add(x);
+            }
+            if (k == operations / 2) {
+                snap = s.snapshot();
+                snapExpected = sExpected.newInstance();
+                for (Integer y : sExpected) {
+                    snapExpected.add(y);
+                }
+            }
+        }
+        assertEquals(sExpected, s);
+        assertEquals(snapExpected, snap);
+        Iterator<Integer> it = s.iterator();
+        int previous = -1;
+        while (it.hasNext()) {
+            int x = it.next();
+            assertEquals(true, x > previous);
+            previous = x;
+        }
+    }
+
+    /**
+     * Tests a reader iterating over snapshots while another thread updates
+     * the set: every snapshot must hold a prefix 0, 1, ..., k - 1.
+     *
+     * @throws InterruptedException
+     *             if interrupted while waiting for the threads
+     */
+    @Test
+    public final void testReaderDuringUpdates() throws InterruptedException {
+        final int n = 20000;
+        Set3aPersistent<Integer> s = new Set3aPersistent<Integer>();
+        boolean[] ok = { true };
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < n; i++) {
+                s.add(i);
+            }
+        });
+        Thread reader = new Thread(() -> {
+            int size = 0;
+            while (size < n) {
+                Set3aPersistent<Integer> snap = s.snapshot();
+                size = snap.size();
+                int expected = 0;
+                for (Integer x : snap) {
+                    ok[0] = ok[0] && x == expected;
+                    expected++;
+                }
+                ok[0] = ok[0] && expected == size;
+            }
+        });
+        writer.start();
+        reader.start();
+        writer.join();
+        reader.join();
+        assertEquals(true, ok[0]);
+    }
+
+}
@@ -1,10 +1,16 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
 import components.set.Set;
 import components.set.Set1L;
 
 /**
  * Customized JUnit test fixture for {@code Set3a}.
  */
-public class Set3aTest extends SetTest {
+public class Set3aTest extends BinaryTreeSetTest {
 
     @Override
     protected final Set<String> constructorTest() {
@@ -16,4 +22,48 @@ public class Set3aTest extends SetTest {
         return new Set1L<String>();
     }
 
+    @Override
+    protected final Set<Integer> constructorOrdered() {
+        return new Set3a<Integer>();
+    }
+
+    @Override
+    protected final Set<Integer> fromSortedTest(Integer[] sorted) {
+        return Set3a.fromSorted(sorted);
+    }
+
+    @Override
+    protected final Set<Integer> fromSortedTest(Iterator<Integer> sorted,
+            int n) {
+        return Set3a.fromSorted(sorted, n);
+    }
+
+    @Override
+    protected final Iterator<Integer> descendingIteratorTest(Set<Integer> s) {
+        return ((Set3a<Integer>) s).descendingIterator();
+    }
+
+    /**
+     * Tests sorted input, which makes the tree a chain as deep as the set is
+     * large.
+     */
+    @Test
+    public final void testSortedInputDeepChain() {
+        final int n = 3000;
+        Set<Integer> s = new Set3a<Integer>();
+        for (int i = 0; i < n; i++) {
+            s.add(i);
+        }
+        assertEquals(true, s.contains(n - 1));
+        assertEquals(false, s.contains(n));
+        Iterator<Integer> it = s.iterator();
+        for (int i = 0; i < n; i++) {
+            assertEquals(Integer.valueOf(i), it.next());
+        }
+        assertEquals(false, it.hasNext());
+        assertEquals(Integer.valueOf(n / 2), s.remove(n / 2));
+        assertEquals(Integer.valueOf(0), s.removeAny());
+        assertEquals(n - 2, s.size());
+    }
+
 }
@@ -1,3 +1,4 @@
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
@@ -11,6 +12,14 @@ import components.sortingmachine.SortingMachineSecondary;
  * {@code SortingMachine} represented as a {@code Queue} and an array (using an
  * embedding of heap sort), with implementations of primary methods.
  *
+ * <p>
+ * A machine made with a capacity k keeps only the k entries that come first
+ * in its order and forgets the others, which is all a caller needs to extract
+ * the top k of a long stream. Up to k entries are queued as usual; from then
+ * on they are kept in a heap ordered the other way round, whose root is the
+ * entry to evict when a new entry comes before it. Each {@code add} takes
+ * O(log k) time and the machine never holds more than k entries.
+ *
  * @param <T>
  *            type of {@code SortingMachine} entries
  * @mathdefinitions <pre>
@@ -42,8 +51,19 @@ import components.sortingmachine.SortingMachineSecondary;
  * </pre>
  * @convention <pre>
  * IS_TOTAL_PREORDER([relation computed by $this.machineOrder.compare method]  and
+ * $this.capacity > 0  and
+ * $this.reverseOrder = [the reverse of $this.machineOrder]  and
  * if $this.insertionMode then
- *   $this.heapSize = 0
+ *   if $this.heap = null then
+ *     $this.heapSize = 0  and  |$this.entries| <= $this.capacity
+ *   else
+ *     $this.entries = <>  and
+ *     |$this.heap| = $this.heapSize = $this.capacity  and
+ *     for all i: integer
+ *         where (0 <= i  and  i < |$this.heap|)
+ *       ([entry at position i in $this.heap is not null])  and
+ *     SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+ *       [relation computed by $this.reverseOrder.compare method])
  * else
  *   $this.entries = <>  and
  *   for all i: integer
@@ -55,7 +75,8 @@ import components.sortingmachine.SortingMachineSecondary;
  * </pre>
  * @correspondence <pre>
  * if $this.insertionMode then
- *   this = (true, $this.machineOrder, multiset_entries($this.entries))
+ *   this = (true, $this.machineOrder, multiset_entries($this.entries) union
+ *     multiset_entries($this.heap[0, $this.heapSize)))
  * else
  *   this = (false, $this.machineOrder, multiset_entries($this.heap[0, $this.heapSize)))
  * </pre>
@@ -74,6 +95,18 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      */
     private Comparator<T> machineOrder;
 
+    /**
+     * Reverse of {@code machineOrder}, which orders the heap of a full bounded
+     * machine in insertion mode.
+     */
+    private Comparator<T> reverseOrder;
+
+    /**
+     * Maximum number of entries kept ({@code Integer.MAX_VALUE} if
+     * unbounded).
+     */
+    private int capacity;
+
     /**
      * Insertion mode.
      */
@@ -94,36 +127,6 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      */
     private int heapSize;
 
-    /**
-     * Exchanges entries at indices {@code i} and {@code j} of {@code array}.
-     *
-     * @param <T>
-     *            type of array entries
-     * @param array
-     *            the array whose entries are to be exchanged
-     * @param i
-     *            one index
-     * @param j
-     *            the other index
-     * @updates array
-     * @requires 0 <= i < |array| and 0 <= j < |array|
-     * @ensures array = [#array with entries at indices i and j exchanged]
-     */
-    private static <T> void exchangeEntries(T[] array, int i, int j) {
-        assert array != null : "Violation of: array is not null";
-        assert 0 <= i : "Violation of: 0 <= i";
-        assert i < array.length : "Violation of: i < |array|";
-        assert 0 <= j : "Violation of: 0 <= j";
-        assert j < array.length : "Violation of: j < |array|";
-
-        if (i != j) {
-            T tmp = array[i];
-            array[i] = array[j];
-            array[j] = tmp;
-        }
-
-    }
-
     /**
      * Given an array that represents a complete binary tree and an index
      * referring to the root of a subtree that would be a heap except for its
@@ -183,99 +186,74 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
          * representation for a complete binary tree.
          */
 
-        //Index of the child heaps
-        int rightIndex = 2 * top + 2;
-        int leftIndex = 2 * top + 1;
-
-        //Only have to sift down when the root has children heaps
-        //Check for right heap first, then check if right heap is "smaller"
-        if (rightIndex <= last
-                && (order.compare(array[rightIndex], array[leftIndex]) < 0)) {
-            //If the root is larger than the object at the right index pos, then
-            //switch the entries and call sift down with the new smallest node
-            if (order.compare(array[top], array[rightIndex]) > 0) {
-                exchangeEntries(array, top, rightIndex);
-                siftDown(array, rightIndex, last, order);
+        /*
+         * Move the root entry down into a "hole", shifting the smaller child up
+         * one level at a time, and write it once where it belongs, instead of
+         * exchanging it with a child at every level
+         */
+        T moving = array[top];
+        int hole = top;
+        int child = 2 * hole + 1;
+        boolean placed = false;
+        while (!placed && child <= last) {
+            if (child + 1 <= last
+                    && order.compare(array[child + 1], array[child]) < 0) {
+                child++;
             }
-            //Do the same as above, but with the left child if it is smaller
-            //than right child
-        } else if (leftIndex <= last) {
-            if (order.compare(array[top], array[leftIndex]) > 0) {
-                exchangeEntries(array, top, leftIndex);
-                siftDown(array, leftIndex, last, order);
+            if (order.compare(array[child], moving) < 0) {
+                array[hole] = array[child];
+                hole = child;
+                child = 2 * hole + 1;
+            } else {
+                placed = true;
             }
         }
+        array[hole] = moving;
 
     }
 
     /**
-     * Heapifies the subtree of the given array rooted at the given {@code top}.
+     * Heapifies the given array, bottom up: sifts down the root of every
+     * subtree, from the last one with children back to the root of the whole
+     * tree, so that each sift works on two subtrees that are already heaps.
+     * Takes time linear in |array| and constant stack space.
      *
      * @param <T>
      *            type of array entries
      * @param array
      *            the complete binary tree
-     * @param top
-     *            the index of the root of the "subtree" to heapify
      * @param order
      *            the total preorder for sorting
      * @updates array
      * @requires <pre>
-     * 0 <= top  and
      * for all i: integer
      *     where (0 <= i  and  i < |array|)
      *   ([entry at position i in array is not null])  and
-     * [subtree rooted at {@code top} is a complete binary tree]  and
      * IS_TOTAL_PREORDER([relation computed by order.compare method])
      * </pre>
      * @ensures <pre>
-     * SUBTREE_IS_HEAP(array, top, |array| - 1,
+     * SUBTREE_IS_HEAP(array, 0, |array| - 1,
      *     [relation computed by order.compare method])  and
      * perms(array, #array)
      * </pre>
      */
-    private static <T> void heapify(T[] array, int top, Comparator<T> order) {
+    private static <T> void heapify(T[] array, Comparator<T> order) {
         assert array != null : "Violation of: array is not null";
         assert order != null : "Violation of: order is not null";
-        assert 0 <= top : "Violation of: 0 <= top";
         for (int i = 0; i < array.length; i++) {
             assert array[i] != null : ""
                     + "Violation of: all entries in array are not null";
         }
         /*
-         * Impractical to check last requires clause; no need to check the other
-         * requires clause, because it must be true when using the array
-         * representation for a complete binary tree.
+         * Impractical to check last requires clause.
          */
 
-        int left = 2 * top + 1;
-        int right = 2 * top + 2;
-
-        //Check to see if left child is heap, if it is not, call heapify
-        if (!isHeap(array, left, array.length - 1, order)) {
-            heapify(array, left, order);
-        }
-
-        //Check to see if left child is heap, if it is not, call heapify
-        if (!isHeap(array, right, array.length - 1, order)) {
-            heapify(array, right, order);
-        }
-
-        //Sort the root in order to complete the heap
-        if (array.length > 0) {
-            siftDown(array, top, array.length - 1, order);
+        int last = array.length - 1;
+        for (int top = (last - 1) / 2; top >= 0; top--) {
+            siftDown(array, top, last, order);
         }
     }
 
-//        if (right < array.length) {
-//            heapify(array, left, order);
-//            heapify(array, right, order);
-//        } else if (left < array.length) {
-//            heapify(array, left, order);
-//        }
-//        siftDown(array, top, array.length - 1, order);
-//    }
-
     /**
      * Constructs and returns an array representing a heap with the entries from
      * the given {@code Queue}.
@@ -315,7 +293,7 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         for (int i = 0; i < Q; i++) {
             heap[i] = q.dequeue();
         }
-        heapify(heap, 0, order);
+        heapify(heap, order);
 
         return heap;
     }
@@ -382,8 +360,15 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * @return true if the convention holds (or if assertion checking is off);
      *         otherwise reports a violated assertion
      * @convention <pre>
+     * $this.capacity > 0  and
      * if $this.insertionMode then
-     *   $this.heapSize = 0
+     *   if $this.heap = null then
+     *     $this.heapSize = 0  and  |$this.entries| <= $this.capacity
+     *   else
+     *     $this.entries = <>  and
+     *     |$this.heap| = $this.heapSize = $this.capacity  and
+     *     SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,
+     *       [relation computed by $this.reverseOrder.compare method])
      * else
      *   $this.entries = <>  and
      *   for all i: integer
@@ -395,9 +380,28 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      * </pre>
      */
     private boolean conventionHolds() {
-        if (this.insertionMode) {
+        assert this.capacity > 0 : "Violation of: $this.capacity > 0";
+        if (this.insertionMode && this.heap == null) {
             assert this.heapSize == 0 : ""
-                    + "Violation of: if $this.insertionMode then $this.heapSize = 0";
+                    + "Violation of: if $this.insertionMode and $this.heap = null"
+                    + " then $this.heapSize = 0";
+            assert this.entries.length() <= this.capacity : ""
+                    + "Violation of: if $this.insertionMode and $this.heap = null"
+                    + " then |$this.entries| <= $this.capacity";
+        } else if (this.insertionMode) {
+            assert this.entries.length() == 0 : ""
+                    + "Violation of: if $this.insertionMode and $this.heap /= null"
+                    + " then $this.entries = <>";
+            assert this.heap.length == this.capacity
+                    && this.heapSize == this.capacity : ""
+                            + "Violation of: if $this.insertionMode and $this.heap /= null"
+                            + " then |$this.heap| = $this.heapSize = $this.capacity";
+            assert isHeap(this.heap, 0, this.heapSize - 1,
+                    this.reverseOrder) : ""
+                            + "Violation of: if $this.insertionMode and $this.heap /= null"
+                            + " then SUBTREE_IS_HEAP($this.heap, 0, $this.heapSize - 1,"
+                            + " [relation computed by $this.reverseOrder.compare"
+                            + " method])";
         } else {
             assert this.entries.length() == 0 : ""
                     + "Violation of: if not $this.insertionMode then $this.entries = <>";
@@ -426,17 +430,24 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      *
      * @param order
      *            total preorder for sorting
+     * @param capacity
+     *            maximum number of entries kept
      * @requires IS_TOTAL_PREORDER([relation computed by order.compare method]
+     *           and capacity > 0
      * @ensures <pre>
      * $this.insertionMode = true  and
      * $this.machineOrder = order  and
+     * $this.capacity = capacity  and
      * $this.entries = <>  and
+     * $this.heap = null  and
      * $this.heapSize = 0
      * </pre>
      */
-    private void createNewRep(Comparator<T> order) {
+    private void createNewRep(Comparator<T> order, int capacity) {
         this.insertionMode = true;
         this.machineOrder = order;
+        this.reverseOrder = Collections.reverseOrder(order);
+        this.capacity = capacity;
         this.entries = new Queue2<T>();
         this.heap = null;
         this.heapSize = 0;
@@ -454,7 +465,26 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
      *            total preorder for sorting
      */
     public SortingMachine5a(Comparator<T> order) {
-        this.createNewRep(order);
+        this.createNewRep(order, Integer.MAX_VALUE);
+        assert this.conventionHolds();
+    }
+
+    /**
+     * Constructor from order and capacity, for a machine that keeps only the
+     * {@code capacity} entries that come first in {@code order}: when an entry
+     * is added to a full machine, the entry that comes last in the order
+     * (possibly the new one) is dropped.
+     *
+     * @param order
+     *            total preorder for sorting
+     * @param capacity
+     *            maximum number of entries kept
+     * @requires capacity > 0
+     */
+    public SortingMachine5a(Comparator<T> order, int capacity) {
+        assert capacity > 0 : "Violation of: capacity > 0";
+
+        this.createNewRep(order, capacity);
         assert this.conventionHolds();
     }
 
@@ -466,8 +496,8 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     @Override
     public final SortingMachine<T> newInstance() {
         try {
-            return this.getClass().getConstructor(Comparator.class)
-                    .newInstance(this.machineOrder);
+            return this.getClass().getConstructor(Comparator.class, int.class)
+                    .newInstance(this.machineOrder, this.capacity);
         } catch (ReflectiveOperationException e) {
             throw new AssertionError(
                     "Cannot construct object of type " + this.getClass());
@@ -476,7 +506,7 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
 
     @Override
     public final void clear() {
-        this.createNewRep(this.machineOrder);
+        this.createNewRep(this.machineOrder, this.capacity);
         assert this.conventionHolds();
     }
 
@@ -495,10 +525,13 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         SortingMachine5a<T> localSource = (SortingMachine5a<T>) source;
         this.insertionMode = localSource.insertionMode;
         this.machineOrder = localSource.machineOrder;
+        this.reverseOrder = localSource.reverseOrder;
+        this.capacity = localSource.capacity;
         this.entries = localSource.entries;
         this.heap = localSource.heap;
         this.heapSize = localSource.heapSize;
-        localSource.createNewRep(localSource.machineOrder);
+        localSource.createNewRep(localSource.machineOrder,
+                localSource.capacity);
         assert this.conventionHolds();
         assert localSource.conventionHolds();
     }
@@ -512,7 +545,18 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         assert x != null : "Violation of: x is not null";
         assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
 
-        this.entries.enqueue(x);
+        if (this.heap == null) {
+            this.entries.enqueue(x);
+            if (this.entries.length() == this.capacity) {
+                // Full: from now on keep the entries in a heap to evict from
+                this.heapSize = this.capacity;
+                this.heap = buildHeap(this.entries, this.reverseOrder);
+            }
+        } else if (this.machineOrder.compare(x, this.heap[0]) < 0) {
+            // x comes before the last entry kept, which it replaces
+            this.heap[0] = x;
+            siftDown(this.heap, 0, this.heapSize - 1, this.reverseOrder);
+        }
         assert this.conventionHolds();
     }
 
@@ -520,8 +564,12 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     public final void changeToExtractionMode() {
         assert this.isInInsertionMode() : "Violation of: this.insertion_mode";
 
-        this.heapSize = this.entries.length();
-        this.heap = buildHeap(this.entries, this.machineOrder);
+        if (this.heap == null) {
+            this.heapSize = this.entries.length();
+            this.heap = buildHeap(this.entries, this.machineOrder);
+        } else {
+            heapify(this.heap, this.machineOrder);
+        }
         this.insertionMode = false;
 
         assert this.conventionHolds();
@@ -558,7 +606,7 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     @Override
     public final int size() {
         int onlyOneReturnAloud;
-        if (this.insertionMode) {
+        if (this.insertionMode && this.heap == null) {
             onlyOneReturnAloud = this.entries.length();
         } else {
             onlyOneReturnAloud = this.heapSize;
@@ -580,12 +628,13 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
     private final class SortingMachine5aIterator implements Iterator<T> {
 
         /**
-         * Representation iterator when in insertion mode.
+         * Representation iterator when the entries are in the queue (null
+         * when they are in the heap).
          */
         private Iterator<T> queueIterator;
 
         /**
-         * Representation iterator count when in extraction mode.
+         * Representation iterator count when the entries are in the heap.
          */
         private int arrayCurrentIndex;
 
@@ -593,7 +642,7 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
          * No-argument constructor.
          */
         private SortingMachine5aIterator() {
-            if (SortingMachine5a.this.insertionMode) {
+            if (SortingMachine5a.this.heap == null) {
                 this.queueIterator = SortingMachine5a.this.entries.iterator();
             } else {
                 this.arrayCurrentIndex = 0;
@@ -604,7 +653,7 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
         @Override
         public boolean hasNext() {
             boolean hasNext;
-            if (SortingMachine5a.this.insertionMode) {
+            if (this.queueIterator != null) {
                 hasNext = this.queueIterator.hasNext();
             } else {
                 hasNext = this.arrayCurrentIndex < SortingMachine5a.this.heapSize;
@@ -625,7 +674,7 @@ public class SortingMachine5a<T> extends SortingMachineSecondary<T> {
                 throw new NoSuchElementException();
             }
             T next;
-            if (SortingMachine5a.this.insertionMode) {
+            if (this.queueIterator != null) {
                 next = this.queueIterator.next();
             } else {
                 next = SortingMachine5a.this.heap[this.arrayCurrentIndex];
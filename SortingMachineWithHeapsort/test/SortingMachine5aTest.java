@@ -1,4 +1,10 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
 
 import components.sortingmachine.SortingMachine;
 import components.sortingmachine.SortingMachine1L;
@@ -18,4 +24,82 @@ public final class SortingMachine5aTest extends SortingMachineTest {
         return new SortingMachine1L<String>(order);
     }
 
+    /**
+     * Tests changeToExtractionMode and removeFirst on many entries, including
+     * duplicates, against the natural order.
+     */
+    @Test
+    public final void testExtractManyWithDuplicates() {
+        final int n = 1000;
+        final int range = 300;
+        Random rnd = new Random(1);
+        SortingMachine<String> m = this.constructorTest(Comparator.naturalOrder());
+        for (int i = 0; i < n; i++) {
+            m.add(Integer.toString(rnd.nextInt(range)));
+        }
+        m.changeToExtractionMode();
+        String previous = m.removeFirst();
+        for (int i = 1; i < n; i++) {
+            String next = m.removeFirst();
+            assertTrue(previous.compareTo(next) <= 0);
+            previous = next;
+        }
+        assertEquals(0, m.size());
+    }
+
+    /**
+     * Tests a bounded machine: only the capacity entries that come first in
+     * the order are kept, and they come out in order.
+     */
+    @Test
+    public final void testBoundedKeepsFirstEntries() {
+        final int n = 2000;
+        final int k = 25;
+        Random rnd = new Random(2);
+        SortingMachine<String> bounded = new SortingMachine5a<String>(
+                Comparator.naturalOrder(), k);
+        SortingMachine<String> all = this.constructorRef(Comparator.naturalOrder());
+        for (int i = 0; i < n; i++) {
+            String x = Integer.toString(rnd.nextInt(n));
+            bounded.add(x);
+            all.add(x);
+            assertEquals(Math.min(i + 1, k), bounded.size());
+        }
+        bounded.changeToExtractionMode();
+        all.changeToExtractionMode();
+        assertEquals(k, bounded.size());
+        for (int i = 0; i < k; i++) {
+            assertEquals(all.removeFirst(), bounded.removeFirst());
+        }
+        assertEquals(0, bounded.size());
+    }
+
+    /**
+     * Tests a bounded machine that receives fewer entries than its capacity,
+     * and that newInstance keeps the capacity.
+     */
+    @Test
+    public final void testBoundedNotFull() {
+        final int k = 3;
+        SortingMachine<String> m = new SortingMachine5a<String>(
+                Comparator.naturalOrder(), k);
+        m.add("b");
+        m.add("a");
+        m.changeToExtractionMode();
+        assertEquals("a", m.removeFirst());
+        assertEquals("b", m.removeFirst());
+
+        SortingMachine<String> copy = m.newInstance();
+        copy.add("d");
+        copy.add("c");
+        copy.add("b");
+        copy.add("e");
+        copy.add("a");
+        assertEquals(k, copy.size());
+        copy.changeToExtractionMode();
+        assertEquals("a", copy.removeFirst());
+        assertEquals("b", copy.removeFirst());
+        assertEquals("c", copy.removeFirst());
+    }
+
 }
@@ -2,7 +2,6 @@ import java.util.Comparator;
 
 import components.map.Map;
 import components.map.Map.Pair;
-import components.map.Map1L;
 import components.set.Set;
 import components.set.Set1L;
 import components.simplereader.SimpleReader;
@@ -140,7 +139,7 @@ public final class TagCloud {
 	 *          </pre>
 	 * 
 	 */
-	private static void mapFill(Map<String, Integer> mapCount, Set<Character> separator, SimpleReader in) {
+	private static void mapFill(Map4Int<String> mapCount, Set<Character> separator, SimpleReader in) {
 		/*
 		 * Clear existing map.
 		 */
@@ -151,13 +150,11 @@ public final class TagCloud {
 			while (pos < s.length()) {
 				String s2 = wordSeparator(s, pos, separator);
 				if (!separator.contains(s2.charAt(0))) {
-					if (!mapCount.hasKey(s2)) {
-						mapCount.add(s2, 1);
-					} else {
-						int newCount = mapCount.value(s2) + 1;
-						mapCount.remove(s2);
-						mapCount.add(s2, newCount);
-					}
+					/*
+					 * Add the word with count 1, or increment its count, hashing it once
+					 * and without boxing the count.
+					 */
+					mapCount.addTo(s2, 1);
 				}
 				/*
 				 * Update position.
@@ -210,11 +207,12 @@ public final class TagCloud {
 	 */
 	private static void mapOut(int n, Map<String, Integer> countMap, SimpleWriter out) {
 		/*
-		 * Sort words numerically by count.
+		 * Sort words numerically by count, keeping only the n + 2 pairs read
+		 * below (the top count, the next n, and the lowest count shown).
 		 */
 		Comparator<Pair<String, Integer>> count = new IntegerSort();
 		SortingMachine<Map.Pair<String, Integer>> sortCount;
-		sortCount = new SortingMachine2<Map.Pair<String, Integer>>(count);
+		sortCount = new SortingMachine5a<Map.Pair<String, Integer>>(count, n + 2);
 		while (countMap.size() > 0) {
 			sortCount.add(countMap.removeAny());
 		}
@@ -321,7 +319,7 @@ public final class TagCloud {
 		/*
 		 * A map is used to store each word and its corresponding count.
 		 */
-		Map<String, Integer> countMap = new Map1L<String, Integer>();
+		Map4Int<String> countMap = new Map4Int<String>();
 		/*
 		 * The program populates the map with words and their counts, and sorts the
 		 * entries alphabetically by the word key while maintaining the count value.
@@ -2,7 +2,6 @@ import java.util.Comparator;
 import java.util.Iterator;
 
 import components.map.Map;
-import components.map.Map1L;
 import components.queue.Queue;
 import components.queue.Queue1L;
 import components.set.Set;
@@ -62,7 +61,7 @@ public final class Counter {
      *
      */
     public static void readFile(SimpleReader read, Queue<String> sorted,
-            Map<String, Integer> data) {
+            Map4Int<String> data) {
 
         String line, nextWord;
         //set which contains the separator characters (in this case ' ,-')
@@ -103,26 +102,22 @@ public final class Counter {
      *
      */
     public static void updateQueueMap(String nextWord,
-            Map<String, Integer> data, Set<Character> s, Queue<String> sorted) {
+            Map4Int<String> data, Set<Character> s,
+            Queue<String> sorted) {
         /*
-         * conditional statement to check if the map has said contained word (in
-         * this case nextWord)
+         * words (not separator strings) are counted in the map; addTo adds
+         * said word with count 1 or increments its count, hashing it only
+         * once and without boxing the count
          */
-        if (!data.hasKey(nextWord)) {
+        if (!s.contains(nextWord.charAt(0))) {
+            int count = data.addTo(nextWord, 1);
             /*
-             * set contains the nextWords first letter then adds said word to
-             * the map with value q and puts said word into the queue sorted
+             * a count of 1 means the word was just added to the map, so put
+             * said word into the queue sorted as well
              */
-            if (!s.contains(nextWord.charAt(0))) {
-                data.add(nextWord, 1);
+            if (count == 1) {
                 sorted.enqueue(nextWord);
             }
-            /*
-             * if the map already contains said word simply update the map
-             * value; not necessary to touch the queue since it already exists
-             */
-        } else {
-            data.replaceValue(nextWord, (data.value(nextWord) + 1));
         }
     }
 
@@ -259,7 +254,7 @@ public final class Counter {
         openTags(write, fileName);
 
         Queue<String> sort = new Queue1L<>();
-        Map<String, Integer> data = new Map1L<>();
+        Map4Int<String> data = new Map4Int<>();
         readFile(read, sort, data);
 
         Comparator<String> s = new StringLT();